@@ -0,0 +1,369 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>BatchScorer</code> class is a headless entry point that plays a strategy on many pattern files.
+ * It takes pattern files and directories, whose files are read recursively, then reads, validates and plays
+ * the files in parallel. A result line is printed as soon as a file is finished, so the lines come in
+ * completion order:
+ * <pre>
+ * file	score	remaining	time_ms
+ * </pre>
+ * A file that cannot be read or is not a valid pattern gets the line <code>file	INVALID	-	time_ms</code>.
+ * A summary is printed on the error output at the end, and the exit status is 1 if a file was invalid.
+ * <p>
+ * Usage: <code>java BatchScorer [-s strategy] [-j jobs] [-t ms] [-seed n] [-endgame cells] [-metrics port] path...</code>
+ * <ul>
+ * <li><code>greedy</code> (default): removes the largest group at each move</li>
+ * <li><code>beam:W</code>: <code>BeamSearchSolver</code> of width W (default 100)</li>
+ * <li><code>nmcs:L</code>: <code>NestedMonteCarloSolver</code> of level L (default 2), stopped after the time budget</li>
+ * <li><code>mcts</code>: <code>MonteCarloTreeSearch</code> searching during the time budget</li>
+ * </ul>
+ * Each file is played on a single thread, the files being spread over <code>jobs</code> threads.
+ * With <code>-endgame cells</code>, the beam and nmcs strategies hand the positions with at most that many
+ * remaining cells to an <code>EndgameSolver</code>, which finishes them exactly. Each thread keeps its solver
+ * from one file to the next, so the endgames solved for a file are reused by the following ones.
+ * With <code>-metrics port</code>, the moves, games and solver positions of the run are served
+ * by a <code>MetricsServer</code> on that port while it lasts.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class BatchScorer {
+
+    /** Default time budget of the strategies that search during a given time, in milliseconds */
+    private static final long DEFAULT_TIME_BUDGET = 1000;
+
+    /** Default width of the beam strategy */
+    private static final int DEFAULT_BEAM_WIDTH = 100;
+
+    /** Default level of the nested Monte Carlo strategy */
+    private static final int DEFAULT_NMCS_LEVEL = 2;
+
+    /** Name of the strategy */
+    private final String strategy;
+
+    /** Parameter of the strategy: beam width or search level */
+    private final int strategyParameter;
+
+    /** Time budget of the strategies that search during a given time, in milliseconds */
+    private final long timeBudget;
+
+    /** Seed of the random strategies */
+    private final long seed;
+
+    /** Stream receiving the result lines */
+    private final PrintStream out;
+
+    /** Largest number of remaining cells solved exactly by the beam and nmcs strategies, 0 for none */
+    private int endgameThreshold;
+
+    /** Exact solver of the endgames of each thread, created on the first file of the thread */
+    private final ThreadLocal<EndgameSolver> endgameSolvers;
+
+    /**
+     * Constructor of a scorer.
+     *
+     * @param strategy   strategy, as given on the command line: greedy, beam[:W], nmcs[:L] or mcts
+     * @param timeBudget time budget of the strategies that search during a given time, in milliseconds
+     * @param seed       seed of the random strategies
+     * @param out        stream receiving the result lines
+     * @throws IllegalArgumentException if the strategy is unknown or its parameter invalid
+     */
+    public BatchScorer(String strategy, long timeBudget, long seed, PrintStream out) {
+        String name = strategy;
+        String parameter = null;
+        int colon = strategy.indexOf(':');
+        if (colon != -1) {
+            name = strategy.substring(0, colon);
+            parameter = strategy.substring(colon + 1);
+        }
+
+        if (name.equals("beam")) {
+            this.strategyParameter = parseParameter(parameter, DEFAULT_BEAM_WIDTH, strategy);
+        } else if (name.equals("nmcs")) {
+            this.strategyParameter = parseParameter(parameter, DEFAULT_NMCS_LEVEL, strategy);
+        } else if ((name.equals("greedy") || name.equals("mcts")) && parameter == null) {
+            this.strategyParameter = 0;
+        } else {
+            throw new IllegalArgumentException("unknown strategy " + strategy);
+        }
+        if (timeBudget <= 0) {
+            throw new IllegalArgumentException("invalid time budget " + timeBudget);
+        }
+        this.strategy = name;
+        this.timeBudget = timeBudget;
+        this.seed = seed;
+        this.out = out;
+        this.endgameThreshold = 0;
+        this.endgameSolvers = ThreadLocal.withInitial(() -> new EndgameSolver(this.endgameThreshold));
+    }
+
+    /**
+     * Sets the number of remaining cells below which the beam and nmcs strategies finish a board exactly.
+     * Must be called before the files are played.
+     *
+     * @param endgameThreshold largest number of remaining cells solved exactly, 0 to search every position
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public void setEndgameThreshold(int endgameThreshold) {
+        if (endgameThreshold < 0) {
+            throw new IllegalArgumentException("invalid endgame threshold " + endgameThreshold);
+        }
+        this.endgameThreshold = endgameThreshold;
+    }
+
+    /**
+     * Returns the exact solver of the endgames of the calling thread.
+     *
+     * @return solver, null if the endgames are not solved exactly
+     */
+    private EndgameSolver getEndgameSolver() {
+        return this.endgameThreshold == 0 ? null : this.endgameSolvers.get();
+    }
+
+    /**
+     * Reads the parameter of a strategy.
+     *
+     * @param parameter    text of the parameter, null if absent
+     * @param defaultValue value if the parameter is absent
+     * @param strategy     strategy, for the error message
+     * @return value of the parameter, at least 1
+     * @throws IllegalArgumentException if the parameter is not a positive integer
+     */
+    private static int parseParameter(String parameter, int defaultValue, String strategy) {
+        if (parameter == null) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(parameter);
+            if (value >= 1) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("invalid parameter for strategy " + strategy);
+    }
+
+    /**
+     * Reads and plays files on a number of threads, printing the line of each file as it finishes.
+     *
+     * @param files files to play
+     * @param jobs  number of files played at the same time
+     * @return number of invalid files
+     */
+    public int scoreAll(File[] files, int jobs) {
+        AtomicInteger nbInvalid = new AtomicInteger();
+        AtomicLong totalScore = new AtomicLong();
+        long start = System.nanoTime();
+
+        ForkJoinPool pool = new ForkJoinPool(jobs);
+        try {
+            pool.invoke(new ParallelRange(0, files.length, i -> {
+                int score = scoreFile(files[i]);
+                if (score < 0) {
+                    nbInvalid.incrementAndGet();
+                } else {
+                    totalScore.addAndGet(score);
+                }
+            }));
+        } finally {
+            pool.shutdown();
+        }
+
+        System.err.println(files.length + " files, " + nbInvalid.get() + " invalid, total score "
+                + totalScore.get() + ", " + (System.nanoTime() - start) / 1000000L + " ms");
+        return nbInvalid.get();
+    }
+
+    /**
+     * Reads and plays one file, then prints its line.
+     *
+     * @param file file to play
+     * @return score of the file, -1 if the file is invalid
+     */
+    public int scoreFile(File file) {
+        long start = System.nanoTime();
+        int[][] pattern;
+        try {
+            pattern = PatternFile.read(file);
+        } catch (IOException e) {
+            pattern = null;
+        }
+        if (pattern == null) {
+            printLine(file, "INVALID", "-", start);
+            return -1;
+        }
+
+        GameBoard board = new GameBoard(pattern);
+        board.updateGroups();
+        Solution solution = play(board);
+
+        // the moves are replayed, so the line reports what the rules of the game give
+        MoveMeter meter = new MoveMeter();
+        int score = 0;
+        int[] moves = solution.getMoves();
+        for (int i = 0; i < moves.length; i++) {
+            meter.start();
+            int groupSize = board.play(moves[i]);
+            meter.stop(groupSize);
+            score += GameBoard.getMoveScore(groupSize);
+        }
+        GameMetrics.gameCompleted();
+        printLine(file, String.valueOf(score), String.valueOf(board.getCptCasesAvailable()), start);
+        return score;
+    }
+
+    /**
+     * Plays the strategy on a board.
+     *
+     * @param board board to play, left unchanged
+     * @return moves chosen by the strategy
+     */
+    private Solution play(GameBoard board) {
+        if (this.strategy.equals("greedy")) {
+            return playGreedy(board);
+        }
+        if (this.strategy.equals("beam")) {
+            BeamSearchSolver solver = new BeamSearchSolver(this.strategyParameter, 1);
+            solver.setEndgameSolver(getEndgameSolver());
+            try {
+                return solver.solve(board);
+            } finally {
+                solver.shutdown();
+            }
+        }
+        if (this.strategy.equals("nmcs")) {
+            NestedMonteCarloSolver solver = new NestedMonteCarloSolver(this.strategyParameter, this.timeBudget,
+                    this.seed, 1);
+            solver.setEndgameSolver(getEndgameSolver());
+            try {
+                return solver.solve(board);
+            } finally {
+                solver.shutdown();
+            }
+        }
+        MonteCarloTreeSearch search = new MonteCarloTreeSearch(board, this.seed, 1);
+        try {
+            search.search(this.timeBudget);
+            return search.getBestSolution();
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    /**
+     * Plays the largest group at each move until no group can be removed.
+     *
+     * @param start board to play, left unchanged
+     * @return moves played and their score
+     */
+    private static Solution playGreedy(GameBoard start) {
+        GameBoard board = new GameBoard(start);
+        int[] moves = new int[board.getCptCasesAvailable() / 2];
+        int nbMoves = 0;
+        int score = 0;
+
+        while (board.getNbPlayableGroups() > 0) {
+            int bestGroup = 0;
+            for (int groupID = 1; groupID < board.getNbGroups(); groupID++) {
+                if (board.getGroupSize(groupID) > board.getGroupSize(bestGroup)) {
+                    bestGroup = groupID;
+                }
+            }
+            int move = board.getGroupStart(bestGroup);
+            moves[nbMoves++] = move;
+            score += GameBoard.getMoveScore(board.play(move));
+        }
+        return new Solution(Arrays.copyOf(moves, nbMoves), score);
+    }
+
+    /**
+     * Prints the result line of a file.
+     *
+     * @param file      file played
+     * @param score     score, or INVALID
+     * @param remaining number of remaining cells
+     * @param start     time at which the file was started, in nanoseconds
+     */
+    private void printLine(File file, String score, String remaining, long start) {
+        long time = (System.nanoTime() - start) / 1000000L;
+        String line = file.getPath() + "\t" + score + "\t" + remaining + "\t" + time;
+        synchronized (this.out) {
+            this.out.println(line);
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Prints the usage of the command and exits.
+     */
+    private static void usage() {
+        System.err.println("usage: java BatchScorer [-s greedy|beam[:W]|nmcs[:L]|mcts] [-j jobs] [-t ms] [-seed n] [-endgame cells] [-metrics port] path...");
+        System.exit(2);
+    }
+
+    /**
+     * Entry point of the headless scorer.
+     *
+     * @param args options followed by the files and directories to play
+     */
+    public static void main(String[] args) {
+        String strategy = "greedy";
+        int jobs = Runtime.getRuntime().availableProcessors();
+        long timeBudget = DEFAULT_TIME_BUDGET;
+        long seed = 0;
+        int metricsPort = -1;
+        int endgameThreshold = 0;
+
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i += 2) {
+                if (i + 1 >= args.length) {
+                    usage();
+                }
+                if (args[i].equals("-s")) {
+                    strategy = args[i + 1];
+                } else if (args[i].equals("-j")) {
+                    jobs = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("-t")) {
+                    timeBudget = Long.parseLong(args[i + 1]);
+                } else if (args[i].equals("-seed")) {
+                    seed = Long.parseLong(args[i + 1]);
+                } else if (args[i].equals("-endgame")) {
+                    endgameThreshold = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("-metrics")) {
+                    metricsPort = Integer.parseInt(args[i + 1]);
+                } else {
+                    usage();
+                }
+            }
+        } catch (NumberFormatException e) {
+            usage();
+        }
+        if (i == args.length || jobs < 1) {
+            usage();
+        }
+
+        try {
+            BatchScorer scorer = new BatchScorer(strategy, timeBudget, seed, System.out);
+            scorer.setEndgameThreshold(endgameThreshold);
+            if (metricsPort >= 0) {
+                new MetricsServer(metricsPort);
+            }
+            File[] files = PatternLibrary.listFiles(Arrays.copyOfRange(args, i, args.length));
+            System.out.println("file\tscore\tremaining\ttime_ms");
+            int nbInvalid = scorer.scoreAll(files, jobs);
+            System.exit(nbInvalid == 0 ? 0 : 1);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The <code>BeamSearchSolver</code> class looks for a move sequence with a high score using a beam search.
+ * At each depth, every position of the beam is expanded with all its playable groups, and only
+ * the best children according to an evaluation are kept for the next depth. Both the expansion
+ * and the construction of the kept positions are spread over all the threads of a fork/join pool.
+ * <p>
+ * Different move orders often lead to the same position. A transposition table holds the best score
+ * each position was reached with, and a child whose position was already reached with a score at
+ * least as high is dropped, so the beam holds distinct positions. The threads building the children
+ * look them up in the table, which is then updated in the order of value, so the result only
+ * depends on the board and the beam width, not on the number of threads.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class BeamSearchSolver {
+
+    /** Number of positions kept at each depth */
+    private final int beamWidth;
+
+    /** Pool running the expansion of the beam */
+    private final ForkJoinPool pool;
+
+    /** Table of the positions reached, with the best score they were reached with */
+    private final TranspositionTable transpositionTable;
+
+    /** Number of children dropped by the last resolution because their position was already reached */
+    private long nbDuplicates;
+
+    /** Solver finishing exactly the positions with few cells, null to search them like the others */
+    private EndgameSolver endgameSolver;
+
+    /**
+     * Constructor of a solver using all the cores of the machine.
+     *
+     * @param beamWidth number of positions kept at each depth
+     */
+    public BeamSearchSolver(int beamWidth) {
+        this(beamWidth, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor of a solver.
+     *
+     * @param beamWidth   number of positions kept at each depth
+     * @param parallelism number of threads expanding the beam
+     */
+    public BeamSearchSolver(int beamWidth, int parallelism) {
+        if (beamWidth < 1) {
+            throw new IllegalArgumentException("invalid beam width " + beamWidth);
+        }
+        this.beamWidth = beamWidth;
+        this.pool = new ForkJoinPool(parallelism);
+        this.transpositionTable = new TranspositionTable(Math.max(1 << 16, Math.min(1 << 22, beamWidth * 256)));
+    }
+
+    /**
+     * Returns the number of positions kept at each depth.
+     *
+     * @return beam width
+     */
+    public int getBeamWidth() {
+        return this.beamWidth;
+    }
+
+    /**
+     * Sets the solver finishing the positions with few remaining cells. Such a position is not
+     * expanded further: its best finish is computed exactly and compared to the best sequence.
+     *
+     * @param endgameSolver exact solver, null to search every position with the beam
+     */
+    public void setEndgameSolver(EndgameSolver endgameSolver) {
+        this.endgameSolver = endgameSolver;
+    }
+
+    /**
+     * Returns the number of children dropped by the last resolution because their position
+     * had already been reached with a score at least as high.
+     *
+     * @return number of dropped children
+     */
+    public long getNbDuplicates() {
+        return this.nbDuplicates;
+    }
+
+    /**
+     * Evaluates a position as its score plus half the points of removing each gem type in a single group.
+     * Removing a group lowers the count of its gem type, so the evaluation prefers the moves that keep
+     * the cells of a same type together for a larger group later. The bound is halved because a single
+     * group per type is rarely reached, and the full bound makes the search too reluctant to score.
+     *
+     * @param score     score of the position
+     * @param board     board before the move
+     * @param gemType   gem type of the removed group, -1 if no group is removed
+     * @param nbRemoved number of cells removed
+     * @return evaluation of the position
+     */
+    public static long evaluate(int score, GameBoard board, int gemType, int nbRemoved) {
+        long value = score;
+        for (int type = 0; type < GameBoard.NB_GEM_TYPES; type++) {
+            int count = board.getGemCount(type);
+            if (type == gemType) {
+                count -= nbRemoved;
+            }
+            value += GameBoard.getMoveScore(count) / 2;
+        }
+        return value;
+    }
+
+    /**
+     * Searches for the move sequence with the best score from a board.
+     *
+     * @param start starting board, left unchanged
+     * @return best sequence found, empty if no group can be removed
+     */
+    public Solution solve(GameBoard start) {
+        int width = this.beamWidth;
+        GameBoard[] beam = new GameBoard[width];
+        GameBoard[] next = new GameBoard[width];
+        int[] beamScores = new int[width];
+        int[] nextScores = new int[width];
+
+        beam[0] = new GameBoard(start);
+        beam[0].updateGroups();
+        int beamSize = 1;
+        this.transpositionTable.clear();
+        this.nbDuplicates = 0;
+
+        // parent and move of each position of the beam, for every depth
+        ArrayList<int[]> levelParents = new ArrayList<int[]>();
+        ArrayList<int[]> levelMoves = new ArrayList<int[]>();
+
+        int[] bestMoves = new int[0];
+        int bestScore = 0;
+
+        while (beamSize > 0) {
+            int[][] candidateMoves = new int[beamSize][];
+            int[][] candidateScores = new int[beamSize][];
+            long[][] candidateValues = new long[beamSize][];
+            GameBoard[] parents = beam;
+            int[] parentScores = beamScores;
+
+            this.pool.invoke(new ParallelRange(0, beamSize, i -> {
+                GameBoard board = parents[i];
+                int nbCandidates = board.getNbPlayableGroups();
+                int[] moves = new int[nbCandidates];
+                int[] scores = new int[nbCandidates];
+                long[] values = new long[nbCandidates];
+                int k = 0;
+                for (int groupID = 0; groupID < board.getNbGroups() && k < nbCandidates; groupID++) {
+                    int size = board.getGroupSize(groupID);
+                    if (size >= 2) {
+                        int move = board.getGroupStart(groupID);
+                        moves[k] = move;
+                        scores[k] = parentScores[i] + GameBoard.getMoveScore(size);
+                        values[k] = evaluate(scores[k], board, board.getGemTypeAt(move), size);
+                        k++;
+                    }
+                }
+                candidateMoves[i] = moves;
+                candidateScores[i] = scores;
+                candidateValues[i] = values;
+            }));
+
+            int nbCandidates = 0;
+            for (int i = 0; i < beamSize; i++) {
+                nbCandidates += candidateMoves[i].length;
+            }
+            if (nbCandidates == 0) {
+                break;
+            }
+            GameMetrics.solverNodesSearched(nbCandidates);
+
+            // flatten the candidates, in the order of the beam so that ties are broken the same way on every run
+            long[] values = new long[nbCandidates];
+            int[] owners = new int[nbCandidates];
+            int[] positions = new int[nbCandidates];
+            int n = 0;
+            for (int i = 0; i < beamSize; i++) {
+                for (int k = 0; k < candidateMoves[i].length; k++) {
+                    values[n] = candidateValues[i][k];
+                    owners[n] = i;
+                    positions[n] = k;
+                    n++;
+
+                    if (candidateScores[i][k] > bestScore) {
+                        bestScore = candidateScores[i][k];
+                        bestMoves = getLine(levelParents, levelMoves, i, candidateMoves[i][k]);
+                    }
+                }
+            }
+
+            // children are built in order of value, and a position already reached with a score
+            // at least as high is dropped, until the beam is full or the candidates run out
+            int[] order = sortByValue(values);
+            int[] keptParents = new int[width];
+            int[] keptMoves = new int[width];
+            GameBoard[] children = next;
+            int nextSize = 0;
+            int cursor = 0;
+            while (nextSize < width && cursor < nbCandidates) {
+                int batchSize = Math.min(width - nextSize, nbCandidates - cursor);
+                int batchStart = nextSize;
+                int batchCursor = cursor;
+                boolean[] accepted = new boolean[batchSize];
+                Solution[] finishes = new Solution[batchSize];
+                EndgameSolver endgame = this.endgameSolver;
+
+                this.pool.invoke(new ParallelRange(0, batchSize, b -> {
+                    int candidate = order[batchCursor + b];
+                    GameBoard child = children[batchStart + b];
+                    if (child == null) {
+                        child = new GameBoard(start.getNbCols(), start.getNbRows());
+                        children[batchStart + b] = child;
+                    }
+                    child.copyFrom(parents[owners[candidate]]);
+                    child.play(candidateMoves[owners[candidate]][positions[candidate]]);
+                    int score = candidateScores[owners[candidate]][positions[candidate]];
+                    int stored = this.transpositionTable.get(child.getHash());
+                    accepted[b] = stored == TranspositionTable.MISSING || stored < score;
+                    if (accepted[b] && endgame != null && endgame.canSolve(child)) {
+                        finishes[b] = endgame.solve(child);
+                    }
+                }));
+
+                // the table is only written here, in the order of value, so the beam does not depend on the scheduling
+                for (int b = 0; b < batchSize; b++) {
+                    int candidate = order[cursor + b];
+                    GameBoard child = children[batchStart + b];
+                    int score = candidateScores[owners[candidate]][positions[candidate]];
+                    if (!accepted[b] || !this.transpositionTable.putIfGreater(child.getHash(), score, child.getCptCasesAvailable())) {
+                        this.nbDuplicates++;
+                    } else if (finishes[b] != null) {
+                        // solved exactly, the position does not need a place in the beam
+                        int move = candidateMoves[owners[candidate]][positions[candidate]];
+                        if (score + finishes[b].getScore() > bestScore) {
+                            bestScore = score + finishes[b].getScore();
+                            bestMoves = appendLine(getLine(levelParents, levelMoves, owners[candidate], move), finishes[b].getMoves());
+                        }
+                    } else {
+                        GameBoard swapBoard = children[nextSize];
+                        children[nextSize] = children[batchStart + b];
+                        children[batchStart + b] = swapBoard;
+                        keptParents[nextSize] = owners[candidate];
+                        keptMoves[nextSize] = candidateMoves[owners[candidate]][positions[candidate]];
+                        nextScores[nextSize] = score;
+                        nextSize++;
+                    }
+                }
+                cursor += batchSize;
+            }
+            levelParents.add(Arrays.copyOf(keptParents, nextSize));
+            levelMoves.add(Arrays.copyOf(keptMoves, nextSize));
+
+            next = beam;
+            beam = children;
+            int[] swap = beamScores;
+            beamScores = nextScores;
+            nextScores = swap;
+            beamSize = nextSize;
+        }
+
+        return new Solution(bestMoves, bestScore);
+    }
+
+    /**
+     * Returns the indices of values sorted by decreasing value; equal values keep their order.
+     *
+     * @param values values to sort
+     * @return indices of the values, the index of the largest value first
+     */
+    private static int[] sortByValue(long[] values) {
+        int[] order = new int[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[values.length];
+
+        // bottom-up merge sort, which is stable
+        for (int width = 1; width < order.length; width *= 2) {
+            for (int from = 0; from < order.length - width; from += 2 * width) {
+                int middle = from + width;
+                int to = Math.min(from + 2 * width, order.length);
+                int left = from;
+                int right = middle;
+                for (int k = from; k < to; k++) {
+                    if (right >= to || (left < middle && values[order[left]] >= values[order[right]])) {
+                        buffer[k] = order[left++];
+                    } else {
+                        buffer[k] = order[right++];
+                    }
+                }
+                System.arraycopy(buffer, from, order, from, to - from);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Rebuilds the moves leading to a position of the beam, followed by one more move.
+     *
+     * @param levelParents parent of each position of the beam, for every depth
+     * @param levelMoves   move leading to each position of the beam, for every depth
+     * @param index        index of the position in the last depth of the beam
+     * @param lastMove     move played from this position
+     * @return the moves from the starting board
+     */
+    private static int[] getLine(ArrayList<int[]> levelParents, ArrayList<int[]> levelMoves, int index, int lastMove) {
+        int depth = levelParents.size();
+        int[] line = new int[depth + 1];
+        line[depth] = lastMove;
+        for (int level = depth - 1; level >= 0; level--) {
+            line[level] = levelMoves.get(level)[index];
+            index = levelParents.get(level)[index];
+        }
+        return line;
+    }
+
+    /**
+     * Returns a line followed by other moves.
+     *
+     * @param line  first moves
+     * @param moves moves played after the line
+     * @return the moves of both, in order
+     */
+    private static int[] appendLine(int[] line, int[] moves) {
+        int[] result = Arrays.copyOf(line, line.length + moves.length);
+        System.arraycopy(moves, 0, result, line.length, moves.length);
+        return result;
+    }
+
+    /**
+     * Stops the threads of the solver. The solver cannot be used afterwards.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+}
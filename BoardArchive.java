@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * The <code>BoardArchive</code> class describes the format of a board archive, a file holding many boards
+ * in the binary format of <code>BoardFile</code>. An archive is written by a <code>BoardArchiveWriter</code> as:
+ * <ul>
+ * <li>the magic bytes <code>SGBA</code> and the format version, on one byte</li>
+ * <li>the boards, one after the other</li>
+ * <li>the index: the position of each board in the file, on 8 bytes</li>
+ * <li>the position of the index on 8 bytes, then the number of boards on 4 bytes</li>
+ * </ul>
+ * Numbers are written the highest byte first. A board is found by its identifier, its rank in the archive,
+ * through the index, whatever the number of boards. The archives are read by <code>PuzzleDatabase</code>,
+ * which checks their size, their header, their index and the position of each board with the methods of this class.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class BoardArchive {
+
+    /** Magic bytes starting an archive */
+    public static final byte[] MAGIC = {'S', 'G', 'B', 'A'};
+
+    /** Version of the format */
+    public static final int VERSION = 1;
+
+    /** Size of the header of an archive, before its boards, in bytes */
+    public static final int HEADER_SIZE = 5;
+
+    /** Size of the end of an archive, after its index, in bytes */
+    public static final int TRAILER_SIZE = 12;
+
+    /**
+     * Tells if the content of a file starts like a board archive.
+     *
+     * @param file file to check
+     * @return true if the file starts with the magic bytes of an archive
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static boolean isBoardArchive(Path file) throws IOException {
+        return BoardFile.startsWith(file, MAGIC);
+    }
+
+    /**
+     * Checks that a file is large enough to be an archive, before its header is read.
+     *
+     * @param size size of the file, in bytes
+     * @param file file read, for the error messages
+     * @throws IOException if the file is smaller than an empty archive
+     */
+    public static void checkSize(long size, Path file) throws IOException {
+        if (size < HEADER_SIZE + TRAILER_SIZE) {
+            throw new IOException("not a board archive: " + file);
+        }
+    }
+
+    /**
+     * Checks the header of an archive: its magic bytes and its version.
+     *
+     * @param header bytes of the file from its start, with at least HEADER_SIZE bytes remaining, moved after the header
+     * @param file   file read, for the error messages
+     * @throws IOException if the file is not an archive of this version
+     */
+    public static void checkHeader(ByteBuffer header, Path file) throws IOException {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get() != MAGIC[i]) {
+                throw new IOException("not a board archive: " + file);
+            }
+        }
+        if (header.get() != VERSION) {
+            throw new IOException("unsupported board archive version: " + file);
+        }
+    }
+
+    /**
+     * Checks the end of an archive: the index must lie between the boards and the end of the file,
+     * with an entry per board.
+     *
+     * @param indexPosition position of the index, as read at the end of the file
+     * @param nbBoards      number of boards, as read at the end of the file
+     * @param size          size of the file, in bytes
+     * @param file          file read, for the error messages
+     * @throws IOException if the end of the file does not match its size
+     */
+    public static void checkIndex(long indexPosition, int nbBoards, long size, Path file) throws IOException {
+        if (nbBoards < 0 || indexPosition < HEADER_SIZE
+                || indexPosition + (long) nbBoards * Long.BYTES != size - TRAILER_SIZE) {
+            throw new IOException("corrupted board archive: " + file);
+        }
+    }
+
+    /**
+     * Checks the position of a board read from the index: a board ends where the next one, or the index, starts.
+     *
+     * @param id            identifier of the board
+     * @param start         position of the board
+     * @param end           position of the next board, or of the index for the last board
+     * @param indexPosition position of the index
+     * @throws IOException if the board is not between the header and the index, or cannot hold a board
+     */
+    public static void checkBoard(int id, long start, long end, long indexPosition) throws IOException {
+        if (start < HEADER_SIZE || end > indexPosition || end - start < BoardFile.HEADER_SIZE
+                || end - start > BoardFile.getSize(BoardFile.MAX_SIZE, BoardFile.MAX_SIZE)) {
+            throw new IOException("corrupted board archive index at board " + id);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The <code>BoardArchiveWriter</code> class writes a board archive, in the format described by <code>BoardArchive</code>.
+ * The boards are encoded into a large buffer written to the file when it is full, and the index
+ * is written after the last board, so an archive of any number of boards is written in a single pass.
+ * <p>
+ * Usage: <code>java BoardArchiveWriter archive path...</code> writes the boards of pattern files and
+ * board files into an archive, the directories being read recursively. Invalid files are reported and skipped.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class BoardArchiveWriter implements Closeable {
+
+    /** Size of the write buffer, in bytes */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Channel writing the file */
+    private final FileChannel channel;
+
+    /** Bytes encoded and not written yet */
+    private ByteBuffer buffer;
+
+    /** Positions of the boards in the file */
+    private long[] offsets;
+
+    /** Number of boards written */
+    private int nbBoards;
+
+    /** Position in the file of the next board */
+    private long position;
+
+    /**
+     * Constructor of a writer, creating the archive or replacing its content.
+     *
+     * @param file archive to write
+     * @throws IOException if the file cannot be opened
+     */
+    public BoardArchiveWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.offsets = new long[1024];
+        this.nbBoards = 0;
+        this.buffer.put(BoardArchive.MAGIC);
+        this.buffer.put((byte) BoardArchive.VERSION);
+        this.position = BoardArchive.HEADER_SIZE;
+    }
+
+    /**
+     * Adds a board at the end of the archive.
+     *
+     * @param board board to add
+     * @return identifier of the board in the archive
+     * @throws IOException if the file cannot be written
+     */
+    public int add(GameBoard board) throws IOException {
+        int size = BoardFile.getSize(board.getNbCols(), board.getNbRows());
+        if (this.buffer.remaining() < size) {
+            flush();
+            if (this.buffer.capacity() < size) {
+                this.buffer = ByteBuffer.allocate(size);
+            }
+        }
+        BoardFile.put(this.buffer, board);
+
+        if (this.nbBoards == this.offsets.length) {
+            this.offsets = Arrays.copyOf(this.offsets, 2 * this.nbBoards);
+        }
+        this.offsets[this.nbBoards] = this.position;
+        this.position += size;
+        return this.nbBoards++;
+    }
+
+    /**
+     * Returns the number of boards added.
+     *
+     * @return number of boards
+     */
+    public int getNbBoards() {
+        return this.nbBoards;
+    }
+
+    /**
+     * Writes the buffered bytes to the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Writes the index and closes the file. The archive cannot be read before it is closed.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (int i = 0; i < this.nbBoards; i++) {
+                if (this.buffer.remaining() < Long.BYTES) {
+                    flush();
+                }
+                this.buffer.putLong(this.offsets[i]);
+            }
+            if (this.buffer.remaining() < BoardArchive.TRAILER_SIZE) {
+                flush();
+            }
+            this.buffer.putLong(this.position);
+            this.buffer.putInt(this.nbBoards);
+            flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Entry point writing pattern files and board files into an archive.
+     *
+     * @param args archive to write, followed by the files and directories to add
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: java BoardArchiveWriter archive path...");
+            System.exit(2);
+        }
+        int nbInvalid = 0;
+        try (BoardArchiveWriter writer = new BoardArchiveWriter(Paths.get(args[0]))) {
+            File[] files = PatternLibrary.listFiles(Arrays.copyOfRange(args, 1, args.length));
+            for (int i = 0; i < files.length; i++) {
+                int[][] pattern;
+                try {
+                    pattern = PatternFile.load(files[i].toPath());
+                } catch (IOException e) {
+                    // an unreadable or malformed file is skipped, the archive is still finished
+                    System.err.println(files[i].getPath() + ": " + e.getMessage());
+                    nbInvalid++;
+                    continue;
+                }
+                writer.add(new GameBoard(pattern));
+            }
+            System.err.println(writer.getNbBoards() + " boards written, " + nbInvalid + " invalid files");
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+        System.exit(nbInvalid == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,187 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.SecureRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The <code>BoardExporter</code> class exports boards to files in the background.
+ * <p>
+ * A board is encoded and written by a background thread shared by all the games, so the calling thread
+ * never waits for the disk. The file is first written under a temporary name in the same directory,
+ * then renamed, so a reader never sees a partly written file, and a failed export leaves the previous
+ * file untouched. The file gets the permissions of the file it replaces, or the usual permissions
+ * of a new file. A file whose name ends with <code>.sgb</code> is written in the binary format of
+ * <code>BoardFile</code>, any other one in the text format of <code>PatternFile</code>, where empty cells are written 'E'.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class BoardExporter {
+
+    /** Extension of the files written in the binary format */
+    public static final String BINARY_EXTENSION = ".sgb";
+
+    /** Size of the write buffer, in bytes */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Characters of the gem types in the text format, the empty cell last */
+    private static final byte[] GEM_CHARACTERS = {'R', 'V', 'B', 'E'};
+
+    /** Random generator of the names of the temporary files */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** Background thread encoding and writing the boards */
+    private static final ExecutorService EXPORTER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "board-exporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Exports a board to a file in the background. The board is given by a copy of its cells,
+     * so the game only copies a byte per cell before handing the board over.
+     *
+     * @param nbCols number of columns
+     * @param nbRows number of rows
+     * @param cells  gem types of the cells, as given by <code>GameBoard.copyCells</code>, not modified afterwards
+     * @param file   file to write, replaced if it exists
+     * @return completion of the export, giving the file written, or failing with an <code>UncheckedIOException</code>
+     */
+    public static CompletableFuture<Path> export(int nbCols, int nbRows, byte[] cells, Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                write(nbCols, nbRows, cells, file);
+                return file;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, EXPORTER);
+    }
+
+    /**
+     * Writes a board to a temporary file, then renames it to the file.
+     *
+     * @param nbCols number of columns
+     * @param nbRows number of rows
+     * @param cells  gem types of the cells, as given by <code>GameBoard.copyCells</code>
+     * @param file   file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(int nbCols, int nbRows, byte[] cells, Path file) throws IOException {
+        Path temporary = createTemporary(file);
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                if (file.getFileName().toString().endsWith(BINARY_EXTENSION)) {
+                    writeBinary(nbCols, nbRows, cells, channel);
+                } else {
+                    writeText(nbCols, nbRows, cells, channel);
+                }
+            }
+            copyPermissions(file, temporary);
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Creates an empty temporary file next to a file, under a name no other file has.
+     * The file is created like any other file, so its permissions follow the umask, unlike with
+     * <code>Files.createTempFile</code>, which makes it readable by its owner only.
+     *
+     * @param file file the temporary file will replace
+     * @return temporary file created
+     * @throws IOException if the file cannot be created
+     */
+    private static Path createTemporary(Path file) throws IOException {
+        while (true) {
+            Path temporary = file.resolveSibling("." + file.getFileName() + "." + Long.toHexString(RANDOM.nextLong()) + ".tmp");
+            try {
+                Files.newByteChannel(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+                return temporary;
+            } catch (FileAlreadyExistsException e) {
+                // another name is tried
+            }
+        }
+    }
+
+    /**
+     * Gives a new file the permissions of the file it replaces, if it exists and the file system has POSIX permissions.
+     *
+     * @param file      file replaced
+     * @param temporary new file
+     * @throws IOException if the permissions cannot be read or set
+     */
+    private static void copyPermissions(Path file, Path temporary) throws IOException {
+        if (Files.exists(file) && Files.getFileStore(temporary).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            Files.setPosixFilePermissions(temporary, Files.getPosixFilePermissions(file));
+        }
+    }
+
+    /**
+     * Writes a board in the text format, row by row, through a buffer.
+     *
+     * @param nbCols  number of columns
+     * @param nbRows  number of rows
+     * @param cells   gem types of the cells, column-major
+     * @param channel channel of the file
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeText(int nbCols, int nbRows, byte[] cells, FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        for (int row = 0; row < nbRows; row++) {
+            for (int col = 0; col <= nbCols; col++) {
+                if (!buffer.hasRemaining()) {
+                    flush(buffer, channel);
+                }
+                buffer.put(col < nbCols ? GEM_CHARACTERS[cells[col * nbRows + row]] : (byte) '\n');
+            }
+        }
+        flush(buffer, channel);
+    }
+
+    /**
+     * Writes a board in the binary format.
+     *
+     * @param nbCols  number of columns
+     * @param nbRows  number of rows
+     * @param cells   gem types of the cells, column-major
+     * @param channel channel of the file
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeBinary(int nbCols, int nbRows, byte[] cells, FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BoardFile.getSize(nbCols, nbRows));
+        BoardFile.put(buffer, nbCols, nbRows, cells);
+        flush(buffer, channel);
+    }
+
+    /**
+     * Writes the bytes of a buffer to a channel and empties the buffer.
+     *
+     * @param buffer  buffer, filled from 0 to its position
+     * @param channel channel of the file
+     * @throws IOException if the file cannot be written
+     */
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The <code>BoardFile</code> class reads and writes boards in a compact binary format,
+ * alongside the text format of <code>PatternFile</code>. A board is written as:
+ * <ul>
+ * <li>the magic bytes <code>SGBF</code> and the format version, on one byte</li>
+ * <li>the number of gem types of the board, on one byte</li>
+ * <li>the number of columns and of rows, on two bytes each, the highest first</li>
+ * <li>the cells row by row, packed 4 per byte on 2 bits, the lowest bits first
+ * (0 ruby, 1 emerald, 2 diamond, 3 empty)</li>
+ * </ul>
+ * A 15x10 board takes 48 bytes, against 160 in the text format. The size of a board only depends on its
+ * dimensions, so boards of the same size can be stored one after the other and found by their position,
+ * as in a <code>BoardArchive</code>.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class BoardFile {
+
+    /** Magic bytes starting each board */
+    public static final byte[] MAGIC = {'S', 'G', 'B', 'F'};
+
+    /** Version of the format */
+    public static final int VERSION = 1;
+
+    /** Size of the header of a board, before its cells, in bytes */
+    public static final int HEADER_SIZE = 10;
+
+    /** Largest number of columns or rows of a board */
+    public static final int MAX_SIZE = 0xFFFF;
+
+    /**
+     * Returns the size of a board in the binary format.
+     *
+     * @param nbCols number of columns
+     * @param nbRows number of rows
+     * @return number of bytes of the header and of the cells
+     */
+    public static int getSize(int nbCols, int nbRows) {
+        return HEADER_SIZE + (int) (((long) nbCols * nbRows + 3) / 4);
+    }
+
+    /**
+     * Writes a board into a buffer, from its position.
+     *
+     * @param buffer buffer with at least <code>getSize(nbCols, nbRows)</code> bytes remaining
+     * @param board  board to write
+     * @throws IllegalArgumentException if the board has more than MAX_SIZE columns or rows
+     */
+    public static void put(ByteBuffer buffer, GameBoard board) {
+        put(buffer, board.getNbCols(), board.getNbRows(), board.copyCells());
+    }
+
+    /**
+     * Writes the cells of a board into a buffer, from its position.
+     *
+     * @param buffer buffer with at least <code>getSize(nbCols, nbRows)</code> bytes remaining
+     * @param nbCols number of columns
+     * @param nbRows number of rows
+     * @param cells  gem types of the cells, as given by <code>GameBoard.copyCells</code>
+     * @throws IllegalArgumentException if the board has more than MAX_SIZE columns or rows
+     */
+    public static void put(ByteBuffer buffer, int nbCols, int nbRows, byte[] cells) {
+        if (nbCols > MAX_SIZE || nbRows > MAX_SIZE) {
+            throw new IllegalArgumentException("board too large for the binary format: " + nbCols + "x" + nbRows);
+        }
+        int nbGemTypes = 1;
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != GameBoard.EMPTY && cells[i] >= nbGemTypes) {
+                nbGemTypes = cells[i] + 1;
+            }
+        }
+
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) nbGemTypes);
+        buffer.putShort((short) nbCols);
+        buffer.putShort((short) nbRows);
+        int packed = 0;
+        int nbPacked = 0;
+        for (int row = 0; row < nbRows; row++) {
+            for (int col = 0; col < nbCols; col++) {
+                packed |= cells[col * nbRows + row] << (2 * nbPacked);
+                nbPacked++;
+                if (nbPacked == 4) {
+                    buffer.put((byte) packed);
+                    packed = 0;
+                    nbPacked = 0;
+                }
+            }
+        }
+        if (nbPacked > 0) {
+            buffer.put((byte) packed);
+        }
+    }
+
+    /**
+     * Reads a board from a buffer, from its position. The position is moved after the board,
+     * or left anywhere in the board if it is not valid.
+     *
+     * @param buffer buffer holding the board
+     * @return grid of gem types, indexed by [row][column], or null if the buffer does not hold a valid board,
+     *         for example with an empty cell under a gem or a gem after an empty column
+     */
+    public static int[][] get(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get() != MAGIC[i]) {
+                return null;
+            }
+        }
+        int version = buffer.get() & 0xFF;
+        int nbGemTypes = buffer.get() & 0xFF;
+        int nbCols = buffer.getShort() & 0xFFFF;
+        int nbRows = buffer.getShort() & 0xFFFF;
+        if (version != VERSION || nbGemTypes < 1 || nbGemTypes > GameBoard.NB_GEM_TYPES || nbCols == 0 || nbRows == 0
+                || buffer.remaining() < getSize(nbCols, nbRows) - HEADER_SIZE) {
+            return null;
+        }
+
+        int[][] map = new int[nbRows][nbCols];
+        int packed = 0;
+        int nbPacked = 0;
+        for (int row = 0; row < nbRows; row++) {
+            int[] line = map[row];
+            for (int col = 0; col < nbCols; col++) {
+                if (nbPacked == 0) {
+                    packed = buffer.get() & 0xFF;
+                    nbPacked = 4;
+                }
+                int gemType = packed & 3;
+                if (gemType >= nbGemTypes && gemType != GameBoard.EMPTY) {
+                    return null;
+                }
+                line[col] = gemType;
+                packed >>>= 2;
+                nbPacked--;
+            }
+        }
+        // a board whose gems do not lie on each other cannot be played and undone
+        return GameBoard.findFloatingCell(map) == null ? map : null;
+    }
+
+    /**
+     * Tells if the content of a file starts like a board in the binary format.
+     *
+     * @param file file to check
+     * @return true if the file starts with the magic bytes
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static boolean isBoardFile(Path file) throws IOException {
+        return startsWith(file, MAGIC);
+    }
+
+    /**
+     * Tells if the content of a file starts with given magic bytes.
+     *
+     * @param file  file to check
+     * @param magic magic bytes
+     * @return true if the file starts with the magic bytes
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static boolean startsWith(Path file, byte[] magic) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(magic.length);
+            while (start.hasRemaining() && channel.read(start) != -1) {
+                // reads until the magic bytes are complete or the file ends
+            }
+            return !start.hasRemaining() && start.flip().equals(ByteBuffer.wrap(magic));
+        }
+    }
+
+    /**
+     * Reads a board file.
+     *
+     * @param file file to read
+     * @return grid of gem types, indexed by [row][column], or null if the content of the file is not a valid board
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static int[][] read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > getSize(MAX_SIZE, MAX_SIZE)) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // reads the whole file
+            }
+            buffer.flip();
+            int[][] map = get(buffer);
+            // trailing bytes mean the file is not a single board
+            return map != null && !buffer.hasRemaining() ? map : null;
+        }
+    }
+
+    /**
+     * Writes a board to a file, replacing its content.
+     *
+     * @param file  file to write, created if it does not exist
+     * @param board board to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, GameBoard board) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(getSize(board.getNbCols(), board.getNbRows()));
+        put(buffer, board);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+
+/**
+ * The <code>BoardListener</code> class controls mouse events on the single-panel <code>BoardPanel</code>.
+ * The cell under the mouse is found from the coordinates, then clicks remove groups
+ * and moves highlight the hovered group, like <code>GameListener</code> does for <code>GameCase</code> cells.
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class BoardListener implements MouseListener, MouseMotionListener {
+
+    /** Game logic to manipulate the grid state */
+    private GameLogic gameLogic;
+    /** Game window used to update the display */
+    private GameFrame gameFrame;
+    /** Panel painting the grid */
+    private BoardPanel boardPanel;
+
+    /**
+     * Constructor for the listener.
+     * @param gameLogic the game logic
+     * @param gameFrame the game window associated with the display
+     * @param boardPanel the panel painting the grid
+     */
+    public BoardListener(GameLogic gameLogic, GameFrame gameFrame, BoardPanel boardPanel) {
+        super();
+        this.gameLogic = gameLogic;
+        this.gameFrame = gameFrame;
+        this.boardPanel = boardPanel;
+    }
+
+    /**
+     * Handles clicks on a cell: if it belongs to a group of size > 1 (more than one cell),
+     * the group is deleted, the score is updated and only the modified columns are repainted.
+     *
+     * @param evenement the mouse click event
+     */
+    @Override
+    public void mouseClicked(MouseEvent evenement) {
+        int col = this.boardPanel.getColumnAt(evenement.getX());
+        int row = this.boardPanel.getRowAt(evenement.getY());
+        GameBoard board = this.gameLogic.getBoard();
+        PerformanceMonitor monitor = this.gameFrame.getPerformanceMonitor();
+        monitor.clickStarted();
+        int groupSize = 0;
+
+        if (col != -1 && row != -1 && board.getGemType(col, row) != GameBoard.EMPTY) {
+            int move = board.getIndex(col, row);
+            groupSize = this.gameLogic.play(col, row);
+
+            if (groupSize > 1) {
+                this.gameFrame.updateScore(groupSize);
+                this.gameFrame.movePlayed(move);
+                this.boardPanel.clearHighlightedGroup();
+                this.boardPanel.repaintColumns(board.getLastMoveFirstCol(), board.getLastMoveLastCol());
+                highlightGroupAt(col, row);
+
+                if (this.gameLogic.getGameEnd()) {
+                    this.gameFrame.closeGame();
+                }
+            }
+        }
+        monitor.clickFinished(groupSize > 1);
+    }
+
+    /**
+     * Highlights the group under a cell, or nothing if the cell is outside the grid or empty.
+     * @param col column of the cell, -1 if outside
+     * @param row row of the cell, -1 if outside
+     */
+    private void highlightGroupAt(int col, int row) {
+        GameBoard board = this.gameLogic.getBoard();
+        if (col != -1 && row != -1) {
+            this.boardPanel.setHighlightedGroup(board.getGroupID(board.getIndex(col, row)));
+        } else {
+            this.boardPanel.setHighlightedGroup(-1);
+        }
+    }
+
+    /**
+     * Mouse move: highlights all cells in the same group as the hovered cell.
+     *
+     * @param evenement the mouse move event
+     */
+    @Override
+    public void mouseMoved(MouseEvent evenement) {
+        highlightGroupAt(this.boardPanel.getColumnAt(evenement.getX()), this.boardPanel.getRowAt(evenement.getY()));
+    }
+
+    /**
+     * Mouse exit: removes highlighting.
+     *
+     * @param evenement the mouse exit event
+     */
+    @Override
+    public void mouseExited(MouseEvent evenement) {
+        this.boardPanel.setHighlightedGroup(-1);
+    }
+
+    /** Not used */
+    @Override
+    public void mouseDragged(MouseEvent evenement) {}
+
+    /** Not used */
+    @Override
+    public void mouseEntered(MouseEvent evenement) {}
+
+    /** Not used */
+    @Override
+    public void mousePressed(MouseEvent evenement) {}
+
+    /** Not used */
+    @Override
+    public void mouseReleased(MouseEvent evenement) {}
+}
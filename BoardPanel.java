@@ -0,0 +1,355 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * The <code>BoardPanel</code> class is a single component that paints the whole game grid
+ * from the state of a <code>GameBoard</code>, instead of one <code>GameCase</code> component per cell.
+ * Mouse coordinates are mapped to cells arithmetically and only the modified
+ * columns are repainted. Cells too small to show a gem are painted as plain colors
+ * through an image with one pixel per cell, which keeps very large grids fast to draw. Inside a scroll pane, the cells stretch
+ * to fill the view and scroll only when the grid does not fit at its preferred size.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class BoardPanel extends JPanel implements Scrollable {
+
+    /** Below this size, in pixels, cells are painted as plain colored rectangles */
+    public static final int MIN_DETAILED_CELL_SIZE = 8;
+
+    /** Plain colors of the cells, indexed by gemType * 2 + (highlighted ? 1 : 0) */
+    private static final int[] PLAIN_COLORS = createPlainColors();
+
+    /** Board whose state is painted */
+    private GameBoard board;
+
+    /** Identifier of the highlighted group, -1 if none */
+    private int highlightedGroup;
+
+    /** Image of the grid with one pixel per cell, used when cells are too small to show a gem */
+    private BufferedImage plainImage;
+
+    /** Pixels of the plain image */
+    private int[] plainPixels;
+
+    /** Monitor told of the repaints of the panel, null if they are not measured */
+    private PerformanceMonitor performanceMonitor;
+
+    /**
+     * Constructor of the panel.
+     * @param board board whose state is painted
+     */
+    public BoardPanel(GameBoard board) {
+        super(null);
+        this.board = board;
+        this.highlightedGroup = -1;
+        this.setBackground(GemPainter.BACKGROUND_COLOR);
+    }
+
+    /**
+     * Sets the monitor told of the repaints of the panel.
+     * @param performanceMonitor monitor of the window, null to stop telling it
+     */
+    public void setPerformanceMonitor(PerformanceMonitor performanceMonitor) {
+        this.performanceMonitor = performanceMonitor;
+    }
+
+    /**
+     * Schedules the repaint of a region, and tells the monitor of the request.
+     * Every other <code>repaint</code> method ends here.
+     * @param tm longest time before the repaint, in milliseconds
+     * @param x horizontal position of the region
+     * @param y vertical position of the region
+     * @param width width of the region
+     * @param height height of the region
+     */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        if (this.performanceMonitor != null) {
+            this.performanceMonitor.repaintRequested();
+        }
+        super.repaint(tm, x, y, width, height);
+    }
+
+    /**
+     * Returns the width of a cell.
+     * @return width of a cell in pixels
+     */
+    public int getCellWidth() {
+        return Math.max(1, getWidth() / this.board.getNbCols());
+    }
+
+    /**
+     * Returns the height of a cell.
+     * @return height of a cell in pixels
+     */
+    public int getCellHeight() {
+        return Math.max(1, getHeight() / this.board.getNbRows());
+    }
+
+    /**
+     * Returns the column under a horizontal position.
+     * @param x horizontal position in the panel
+     * @return index of the column, or -1 if outside the grid
+     */
+    public int getColumnAt(int x) {
+        int col = x / getCellWidth();
+        if (x < 0 || col >= this.board.getNbCols()) {
+            return -1;
+        }
+        return col;
+    }
+
+    /**
+     * Returns the row under a vertical position.
+     * @param y vertical position in the panel
+     * @return index of the row, or -1 if outside the grid
+     */
+    public int getRowAt(int y) {
+        int row = y / getCellHeight();
+        if (y < 0 || row >= this.board.getNbRows()) {
+            return -1;
+        }
+        return row;
+    }
+
+    /**
+     * Returns the identifier of the highlighted group.
+     * @return group identifier, -1 if no group is highlighted
+     */
+    public int getHighlightedGroup() {
+        return this.highlightedGroup;
+    }
+
+    /**
+     * Highlights a group, and repaints the columns of the previous and of the new highlighted group.
+     * @param groupID identifier of the group to highlight, -1 for none
+     */
+    public void setHighlightedGroup(int groupID) {
+        if (groupID != this.highlightedGroup) {
+            repaintGroup(this.highlightedGroup);
+            this.highlightedGroup = groupID;
+            repaintGroup(groupID);
+        }
+    }
+
+    /**
+     * Forgets the highlighted group without repainting, used when the groups were recomputed.
+     */
+    public void clearHighlightedGroup() {
+        this.highlightedGroup = -1;
+    }
+
+    /**
+     * Repaints the columns covered by a group.
+     * @param groupID identifier of the group, -1 for none
+     */
+    private void repaintGroup(int groupID) {
+        if (groupID >= 0 && this.board.getGroupSize(groupID) > 0) {
+            repaintColumns(this.board.getGroupMinCol(groupID), this.board.getGroupMaxCol(groupID));
+        }
+    }
+
+    /**
+     * Schedules the repaint of a range of columns only.
+     * @param firstCol first column to repaint
+     * @param lastCol last column to repaint
+     */
+    public void repaintColumns(int firstCol, int lastCol) {
+        if (firstCol > lastCol) {
+            return;
+        }
+        int cellWidth = getCellWidth();
+        repaint(firstCol * cellWidth, 0, (lastCol - firstCol + 1) * cellWidth, this.board.getNbRows() * getCellHeight());
+    }
+
+    /**
+     * Returns the size of the visible area wanted in a scroll pane.
+     * @return the preferred size of the panel
+     */
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    /**
+     * Scrolls by one cell.
+     * @param visibleRect the visible area
+     * @param orientation SwingConstants.VERTICAL or SwingConstants.HORIZONTAL
+     * @param direction less than zero to scroll up or left, greater than zero to scroll down or right
+     * @return size of a cell in the scrolling direction
+     */
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if (orientation == SwingConstants.HORIZONTAL) {
+            return getCellWidth();
+        }
+        return getCellHeight();
+    }
+
+    /**
+     * Scrolls by one visible area.
+     * @param visibleRect the visible area
+     * @param orientation SwingConstants.VERTICAL or SwingConstants.HORIZONTAL
+     * @param direction less than zero to scroll up or left, greater than zero to scroll down or right
+     * @return size of the visible area in the scrolling direction
+     */
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if (orientation == SwingConstants.HORIZONTAL) {
+            return visibleRect.width;
+        }
+        return visibleRect.height;
+    }
+
+    /**
+     * Stretches the panel to the width of the view when the grid fits in it.
+     * @return true if the view is at least as wide as the preferred size
+     */
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport && getParent().getWidth() >= getPreferredSize().width;
+    }
+
+    /**
+     * Stretches the panel to the height of the view when the grid fits in it.
+     * @return true if the view is at least as high as the preferred size
+     */
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() >= getPreferredSize().height;
+    }
+
+    /**
+     * Paints the cells intersecting the area to redraw.
+     * @param g the graphics object.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (this.performanceMonitor != null) {
+            this.performanceMonitor.paintStarted();
+        }
+
+        int cellWidth = getCellWidth();
+        int cellHeight = getCellHeight();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        int firstCol = Math.max(0, clip.x / cellWidth);
+        int lastCol = Math.min(this.board.getNbCols() - 1, (clip.x + clip.width - 1) / cellWidth);
+        int firstRow = Math.max(0, clip.y / cellHeight);
+        int lastRow = Math.min(this.board.getNbRows() - 1, (clip.y + clip.height - 1) / cellHeight);
+
+        MovePhaseEvent repaint = MovePhaseEvent.start(MovePhaseEvent.REPAINT, this.board.getNbCols(), this.board.getNbRows());
+        if (cellWidth < MIN_DETAILED_CELL_SIZE || cellHeight < MIN_DETAILED_CELL_SIZE) {
+            paintPlainCells(g, firstCol, lastCol, firstRow, lastRow, cellWidth, cellHeight);
+        } else {
+            paintDetailedCells(g, firstCol, lastCol, firstRow, lastRow, cellWidth, cellHeight);
+        }
+        MovePhaseEvent.stop(repaint);
+        MovePhaseEvent.record(repaint, 0, Math.max(0, lastCol - firstCol + 1));
+    }
+
+    /**
+     * Paints cells as gem tiles, with their highlighting.
+     * @param g the graphics object
+     * @param firstCol first column to paint
+     * @param lastCol last column to paint
+     * @param firstRow first row to paint
+     * @param lastRow last row to paint
+     * @param cellWidth width of a cell in pixels
+     * @param cellHeight height of a cell in pixels
+     */
+    private void paintDetailedCells(Graphics g, int firstCol, int lastCol, int firstRow, int lastRow, int cellWidth, int cellHeight) {
+
+        for (int col = firstCol; col <= lastCol; col++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                int index = this.board.getIndex(col, row);
+                int gemType = this.board.getGemTypeAt(index);
+                boolean highlighted = isHighlighted(index, gemType);
+
+                int x = col * cellWidth;
+                int y = row * cellHeight;
+                g.translate(x, y);
+                GemPainter.paintTile(g, gemType, highlighted, cellWidth, cellHeight);
+                g.translate(-x, -y);
+            }
+        }
+    }
+
+    /**
+     * Paints cells as plain colors. Each cell is one pixel of an image
+     * the size of the grid, which is then scaled onto the panel in a single copy.
+     * @param g the graphics object
+     * @param firstCol first column to paint
+     * @param lastCol last column to paint
+     * @param firstRow first row to paint
+     * @param lastRow last row to paint
+     * @param cellWidth width of a cell
+     * @param cellHeight height of a cell
+     */
+    private void paintPlainCells(Graphics g, int firstCol, int lastCol, int firstRow, int lastRow, int cellWidth, int cellHeight) {
+        int nbCols = this.board.getNbCols();
+        if (this.plainImage == null) {
+            this.plainImage = new BufferedImage(nbCols, this.board.getNbRows(), BufferedImage.TYPE_INT_RGB);
+            this.plainPixels = ((DataBufferInt) this.plainImage.getRaster().getDataBuffer()).getData();
+        }
+
+        for (int col = firstCol; col <= lastCol; col++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                int index = this.board.getIndex(col, row);
+                int gemType = this.board.getGemTypeAt(index);
+                int key = gemType * 2;
+                if (isHighlighted(index, gemType)) {
+                    key += 1;
+                }
+                this.plainPixels[row * nbCols + col] = PLAIN_COLORS[key];
+            }
+        }
+
+        g.drawImage(this.plainImage,
+                firstCol * cellWidth, firstRow * cellHeight, (lastCol + 1) * cellWidth, (lastRow + 1) * cellHeight,
+                firstCol, firstRow, lastCol + 1, lastRow + 1, null);
+    }
+
+    /**
+     * Computes the plain colors of the cells, indexed by gemType * 2 + (highlighted ? 1 : 0).
+     * A highlighted color is the color of the cell blended with the highlight color.
+     * @return the colors as RGB values
+     */
+    private static int[] createPlainColors() {
+        int[] colors = new int[8];
+        Color highlight = GemPainter.HIGHLIGHT_COLOR;
+        int alpha = highlight.getAlpha();
+        for (int gemType = 0; gemType <= GameBoard.EMPTY; gemType++) {
+            Color color;
+            if (gemType == GameBoard.EMPTY) {
+                color = GemPainter.BACKGROUND_COLOR;
+            } else {
+                color = GameCase.GEM_COLORS[gemType];
+            }
+            colors[gemType * 2] = color.getRGB() & 0xFFFFFF;
+            int red = (highlight.getRed() * alpha + color.getRed() * (255 - alpha)) / 255;
+            int green = (highlight.getGreen() * alpha + color.getGreen() * (255 - alpha)) / 255;
+            int blue = (highlight.getBlue() * alpha + color.getBlue() * (255 - alpha)) / 255;
+            colors[gemType * 2 + 1] = (red << 16) | (green << 8) | blue;
+        }
+        return colors;
+    }
+
+    /**
+     * Returns true if a cell belongs to the highlighted group.
+     * @param index index of the cell
+     * @param gemType gem type of the cell
+     * @return true if the cell is highlighted
+     */
+    private boolean isHighlighted(int index, int gemType) {
+        return gemType != GameBoard.EMPTY && this.highlightedGroup != -1
+                && this.board.getGroupID(index) == this.highlightedGroup;
+    }
+}
@@ -0,0 +1,234 @@
+import java.util.Arrays;
+
+/**
+ * The <code>EndgameSolver</code> class computes the best possible finish of a board with few remaining cells.
+ * It tries every sequence of moves with a depth-first search, and memoizes the best remaining score of each
+ * position it solves in a transposition table, so a position reached through different move orders is
+ * solved once.
+ * <p>
+ * The score of a position only depends on which cells are connected, so the positions are memoized under
+ * a canonical hash: positions that only differ by a permutation of the gem types, or by a horizontal
+ * mirror of the columns, share the same entry. The dimensions of the board are part of the hash, so one solver
+ * may solve boards of different sizes. The table is thread-safe, so several threads may use the
+ * same solver and share the positions they solved.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class EndgameSolver {
+
+    /** Permutations of the gem types giving positions of equal score */
+    private static final int[][] PERMUTATIONS = {
+        {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+    };
+
+    /** Largest number of remaining cells of a board the solver accepts */
+    private final int cellThreshold;
+
+    /** Best remaining score of the positions already solved, indexed by canonical hash */
+    private final TranspositionTable table;
+
+    /**
+     * Constructor of a solver with a table of about a million positions.
+     *
+     * @param cellThreshold largest number of remaining cells of a board the solver accepts
+     */
+    public EndgameSolver(int cellThreshold) {
+        this(cellThreshold, 1 << 20);
+    }
+
+    /**
+     * Constructor of a solver.
+     *
+     * @param cellThreshold largest number of remaining cells of a board the solver accepts
+     * @param tableCapacity number of positions memoized
+     */
+    public EndgameSolver(int cellThreshold, int tableCapacity) {
+        if (cellThreshold < 0) {
+            throw new IllegalArgumentException("invalid cell threshold " + cellThreshold);
+        }
+        this.cellThreshold = cellThreshold;
+        this.table = new TranspositionTable(tableCapacity);
+    }
+
+    /**
+     * Returns the largest number of remaining cells of a board the solver accepts.
+     *
+     * @return cell threshold
+     */
+    public int getCellThreshold() {
+        return this.cellThreshold;
+    }
+
+    /**
+     * Returns true if a board has few enough remaining cells to be solved exactly.
+     *
+     * @param board board to check
+     * @return true if the number of remaining cells is at most the threshold
+     */
+    public boolean canSolve(GameBoard board) {
+        return board.getCptCasesAvailable() <= this.cellThreshold;
+    }
+
+    /**
+     * Computes the best finish of a board.
+     *
+     * @param board board to solve, left unchanged
+     * @return moves reaching the best remaining score, and that score
+     * @throws IllegalArgumentException if the board has more remaining cells than the threshold
+     */
+    public Solution solve(GameBoard board) {
+        if (!canSolve(board)) {
+            throw new IllegalArgumentException(board.getCptCasesAvailable() + " cells remaining, more than "
+                    + this.cellThreshold);
+        }
+        GameBoard[] stack = createStack(board);
+        stack[0].copyFrom(board);
+        stack[0].updateGroups();
+        int best = getBestScore(stack, 0);
+
+        // follow, from each position, a move whose score and best finish add up to the best score of the position
+        GameBoard current = new GameBoard(board);
+        current.updateGroups();
+        int[] line = new int[board.getCptCasesAvailable() / 2];
+        int nbMoves = 0;
+        int remaining = best;
+        boolean found = true;
+        while (remaining > 0 && found) {
+            found = false;
+            for (int groupID = 0; groupID < current.getNbGroups() && !found; groupID++) {
+                int size = current.getGroupSize(groupID);
+                if (size >= 2) {
+                    int move = current.getGroupStart(groupID);
+                    stack[0].copyFrom(current);
+                    stack[0].play(move);
+                    int finish = getBestScore(stack, 0);
+                    if (GameBoard.getMoveScore(size) + finish == remaining) {
+                        line[nbMoves++] = move;
+                        current.play(move);
+                        remaining = finish;
+                        found = true;
+                    }
+                }
+            }
+        }
+        return new Solution(Arrays.copyOf(line, nbMoves), best);
+    }
+
+    /**
+     * Returns the best remaining score of a board.
+     *
+     * @param board board to solve, left unchanged
+     * @return best remaining score
+     * @throws IllegalArgumentException if the board has more remaining cells than the threshold
+     */
+    public int getBestScore(GameBoard board) {
+        if (!canSolve(board)) {
+            throw new IllegalArgumentException(board.getCptCasesAvailable() + " cells remaining, more than "
+                    + this.cellThreshold);
+        }
+        GameBoard[] stack = createStack(board);
+        stack[0].copyFrom(board);
+        stack[0].updateGroups();
+        return getBestScore(stack, 0);
+    }
+
+    /**
+     * Creates the boards used by the search, one per depth: each move removes at least two cells.
+     *
+     * @param board board giving the size and the number of cells
+     * @return the boards, only the first one being created
+     */
+    private static GameBoard[] createStack(GameBoard board) {
+        GameBoard[] stack = new GameBoard[board.getCptCasesAvailable() / 2 + 1];
+        stack[0] = new GameBoard(board.getNbCols(), board.getNbRows());
+        return stack;
+    }
+
+    /**
+     * Returns the best remaining score of the board at a depth of the stack, using the
+     * boards of the following depths for the moves.
+     *
+     * @param stack boards of the search
+     * @param depth depth of the board to solve
+     * @return best remaining score
+     */
+    private int getBestScore(GameBoard[] stack, int depth) {
+        GameBoard position = stack[depth];
+        if (position.getNbPlayableGroups() == 0) {
+            return 0;
+        }
+        long key = getCanonicalHash(position);
+        int stored = this.table.get(key);
+        if (stored != TranspositionTable.MISSING) {
+            return stored;
+        }
+
+        if (stack[depth + 1] == null) {
+            stack[depth + 1] = new GameBoard(position.getNbCols(), position.getNbRows());
+        }
+        GameBoard child = stack[depth + 1];
+        int best = 0;
+        for (int groupID = 0; groupID < position.getNbGroups(); groupID++) {
+            int size = position.getGroupSize(groupID);
+            if (size >= 2) {
+                child.copyFrom(position);
+                child.play(position.getGroupStart(groupID));
+                best = Math.max(best, GameBoard.getMoveScore(size) + getBestScore(stack, depth + 1));
+            }
+        }
+        this.table.put(key, best, position.getCptCasesAvailable());
+        return best;
+    }
+
+    /**
+     * Returns the smallest Zobrist hash of a board among all the permutations of its gem types
+     * and their horizontal mirrors, which have the same best score, mixed with the dimensions of the board:
+     * the keys of the cells only depend on their index, which gives the same cells in grids of other sizes.
+     *
+     * @param board board to hash
+     * @return canonical hash
+     */
+    public static long getCanonicalHash(GameBoard board) {
+        int nbRows = board.getNbRows();
+        int nbColumns = board.getNbColumnsAvailable();
+        long[] hashes = new long[PERMUTATIONS.length * 2];
+
+        for (int col = 0; col < nbColumns; col++) {
+            int mirrorCol = nbColumns - 1 - col;
+            for (int row = 0; row < nbRows; row++) {
+                int gemType = board.getGemType(col, row);
+                if (gemType == GameBoard.EMPTY) {
+                    continue;
+                }
+                for (int p = 0; p < PERMUTATIONS.length; p++) {
+                    int permuted = PERMUTATIONS[p][gemType];
+                    hashes[2 * p] ^= GameBoard.getZobristKey(col * nbRows + row, permuted);
+                    hashes[2 * p + 1] ^= GameBoard.getZobristKey(mirrorCol * nbRows + row, permuted);
+                }
+            }
+        }
+
+        long canonical = hashes[0];
+        for (int i = 1; i < hashes.length; i++) {
+            if (hashes[i] < canonical) {
+                canonical = hashes[i];
+            }
+        }
+        return canonical ^ getDimensionKey(board.getNbCols(), nbRows);
+    }
+
+    /**
+     * Returns the key of the dimensions of a board, mixed with the same function as the keys of the cells.
+     *
+     * @param nbCols number of columns
+     * @param nbRows number of rows
+     * @return key of the dimensions
+     */
+    private static long getDimensionKey(int nbCols, int nbRows) {
+        long z = (((long) nbCols << 32) | nbRows) * 0xD1B54A32D192ED03L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
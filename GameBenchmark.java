@@ -0,0 +1,507 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * The <code>GameBenchmark</code> class measures the time of the game rules on boards of chosen size,
+ * number of gem types and fill, to catch performance regressions and compare implementations.
+ * It runs without any window: the <code>GameLogic</code> methods are measured on a headless board,
+ * so the time of the cells refresh is not included.
+ * <p>
+ * Each benchmark is run for a number of warmup iterations, whose results are dropped so the JIT
+ * compiler has compiled the code, then for a number of measured iterations of a fixed duration.
+ * When a benchmark modifies the board, the board is restored before each operation, out of the
+ * measured time. One tab-separated line is printed per benchmark and parameter set:
+ * <pre>
+ * benchmark	size	colors	fill	ns_per_op	error	ops
+ * </pre>
+ * where <code>error</code> is the standard deviation of the iterations.
+ * <p>
+ * With <code>-allocations n</code>, the benchmarks are replaced by a check that <code>GameBoard.play</code>
+ * does not allocate: <code>-warmup</code> games are played on every board, so the code of every board is
+ * compiled, then n games of random moves are checked on every board. The memory allocated by each move is read
+ * from the thread bean, and the exit status is 1 if a move allocated.
+ * <p>
+ * Usage: <code>java GameBenchmark [-size 15x10,100x100] [-colors 2,3] [-fill uniform,random,checkerboard]
+ * [-bench name,...] [-warmup n] [-iterations n] [-time ms] [-allocations n]</code>
+ * <ul>
+ * <li><code>uniform</code>: a single gem type, so the whole board is one group</li>
+ * <li><code>random</code>: gem types drawn at random with a fixed seed</li>
+ * <li><code>checkerboard</code>: no two neighbors of the same type, the worst case of the labeling</li>
+ * </ul>
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class GameBenchmark {
+
+    /** Names of the benchmarks, in the order they are run */
+    private static final String[] BENCHMARKS = {
+        "getNeighbors", "updateGroupCaseByID", "updateGroupCaseByID.full", "updateFallCase",
+        "updateEmptyCol", "getGameEnd", "click"
+    };
+
+    /** Names of the fills */
+    private static final String[] FILLS = {"uniform", "random", "checkerboard"};
+
+    /** Seed of the random fill */
+    private static final long FILL_SEED = 42;
+
+    /** Largest number of moves played in a game whose allocations are checked */
+    private static final int MAX_CHECKED_MOVES = 10000;
+
+    /** Duration of a batch of operations in nanoseconds, when the operations are timed by batch */
+    private static final long BATCH_DURATION = 100000;
+
+    /** Number of warmup iterations */
+    private final int nbWarmups;
+
+    /** Number of measured iterations */
+    private final int nbIterations;
+
+    /** Duration of an iteration in nanoseconds */
+    private final long iterationDuration;
+
+    /** Combination of the results of the operations, so the compiler cannot drop them */
+    private int sink;
+
+    /**
+     * Constructor of a benchmark runner.
+     *
+     * @param nbWarmups     number of warmup iterations
+     * @param nbIterations  number of measured iterations, at least 1
+     * @param iterationTime duration of an iteration in milliseconds
+     */
+    public GameBenchmark(int nbWarmups, int nbIterations, long iterationTime) {
+        if (nbWarmups < 0 || nbIterations < 1 || iterationTime < 1) {
+            throw new IllegalArgumentException("invalid iterations " + nbWarmups + "/" + nbIterations + "/" + iterationTime);
+        }
+        this.nbWarmups = nbWarmups;
+        this.nbIterations = nbIterations;
+        this.iterationDuration = iterationTime * 1000000L;
+    }
+
+    /**
+     * Creates a board filled with a pattern.
+     *
+     * @param nbCols   number of columns
+     * @param nbRows   number of rows
+     * @param nbColors number of gem types used
+     * @param fill     uniform, random or checkerboard
+     * @return board, with its groups up to date
+     * @throws IllegalArgumentException if the fill is unknown
+     */
+    public static GameBoard createBoard(int nbCols, int nbRows, int nbColors, String fill) {
+        Random random = new Random(FILL_SEED);
+        int[][] map = new int[nbRows][nbCols];
+        for (int row = 0; row < nbRows; row++) {
+            for (int col = 0; col < nbCols; col++) {
+                if (fill.equals("uniform")) {
+                    map[row][col] = 0;
+                } else if (fill.equals("random")) {
+                    map[row][col] = random.nextInt(nbColors);
+                } else if (fill.equals("checkerboard")) {
+                    map[row][col] = (col + row) % nbColors;
+                } else {
+                    throw new IllegalArgumentException("unknown fill " + fill);
+                }
+            }
+        }
+        GameBoard board = new GameBoard(map);
+        board.updateGroups();
+        return board;
+    }
+
+    /**
+     * Runs a benchmark on a board and prints its line.
+     *
+     * @param benchmark name of the benchmark
+     * @param base      board the benchmark starts from, left unchanged
+     * @param colors    number of gem types, for the line
+     * @param fill      fill of the board, for the line
+     */
+    public void run(String benchmark, GameBoard base, int colors, String fill) {
+        int nbCols = base.getNbCols();
+        int nbRows = base.getNbRows();
+        GameBoard board = new GameBoard(base);
+        GameLogic logic = new GameLogic(board, null);
+
+        // the operations target the largest group, the first cell of the grid being used if all groups are single cells
+        int group = 0;
+        for (int groupID = 1; groupID < base.getNbGroups(); groupID++) {
+            if (base.getGroupSize(groupID) > base.getGroupSize(group)) {
+                group = groupID;
+            }
+        }
+        int target = base.getNbGroups() == 0 ? 0 : base.getGroupStart(group);
+        int targetX = base.getColumn(target);
+        int targetY = base.getRow(target);
+        int[] groupCells = new int[nbCols * nbRows];
+        int groupSize = base.getGroup(target, groupCells);
+        int[] groupColumns = getColumns(base, groupCells, groupSize);
+        int middle = nbCols / 2;
+        int[] middleCells = new int[nbRows];
+        for (int row = 0; row < nbRows; row++) {
+            middleCells[row] = base.getIndex(middle, row);
+        }
+        int[] emptyColumns = new int[1];
+
+        double[] result;
+        if (benchmark.equals("getNeighbors")) {
+            GameCase targetCase = new GameCase(targetX, targetY, base.getGemTypeAt(target));
+            result = measure(null, () -> logic.getNeighbors(targetCase).length);
+        } else if (benchmark.equals("updateGroupCaseByID") || benchmark.equals("updateGroupCaseByID.full")) {
+            board.setIncrementalGroups(benchmark.equals("updateGroupCaseByID"));
+            result = measure(() -> {
+                board.copyFrom(base);
+                board.removeCells(groupCells, groupSize);
+                for (int i = 0; i < groupColumns.length; i++) {
+                    board.updateFall(groupColumns[i]);
+                }
+            }, () -> {
+                logic.updateGroupCaseByID();
+                return board.getNbGroups();
+            });
+        } else if (benchmark.equals("updateFallCase")) {
+            result = measure(() -> {
+                board.copyFrom(base);
+                board.removeCells(groupCells, groupSize);
+            }, () -> {
+                logic.updateFallCase(groupColumns);
+                return board.getCptCasesAvailable();
+            });
+        } else if (benchmark.equals("updateEmptyCol")) {
+            result = measure(() -> {
+                board.copyFrom(base);
+                board.removeCells(middleCells, nbRows);
+                emptyColumns[0] = middle;
+            }, () -> {
+                logic.updateEmptyCol(emptyColumns);
+                return board.getNbColumnsAvailable();
+            });
+        } else if (benchmark.equals("getGameEnd")) {
+            result = measure(null, () -> logic.getGameEnd() ? 1 : 0);
+        } else if (benchmark.equals("click")) {
+            // as in GameListener.mouseClicked: the group is played, then the end of the game is checked
+            result = measure(() -> board.copyFrom(base), () -> {
+                int removed = logic.play(targetX, targetY);
+                return logic.getGameEnd() ? removed + 1 : removed;
+            });
+        } else {
+            throw new IllegalArgumentException("unknown benchmark " + benchmark);
+        }
+
+        System.out.printf("%s\t%dx%d\t%d\t%s\t%.1f\t%.1f\t%d%n", benchmark, nbCols, nbRows, colors, fill,
+                result[0], result[1], (long) result[2]);
+        System.out.flush();
+    }
+
+    /**
+     * Returns the distinct columns of a set of cells, in increasing order.
+     *
+     * @param board board of the cells
+     * @param cells indices of the cells
+     * @param count number of cells
+     * @return columns of the cells
+     */
+    private static int[] getColumns(GameBoard board, int[] cells, int count) {
+        boolean[] used = new boolean[board.getNbCols()];
+        int nbColumns = 0;
+        for (int i = 0; i < count; i++) {
+            int col = board.getColumn(cells[i]);
+            if (!used[col]) {
+                used[col] = true;
+                nbColumns++;
+            }
+        }
+        int[] columns = new int[nbColumns];
+        int k = 0;
+        for (int col = 0; col < used.length; col++) {
+            if (used[col]) {
+                columns[k++] = col;
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Measures an operation: warmup iterations, then measured iterations.
+     * Without setup, the operation is timed by batches, so the cost of reading the clock is negligible;
+     * with a setup, each operation is timed alone, after its setup.
+     *
+     * @param setup     action run before each operation, out of the measured time, or null
+     * @param operation operation to measure
+     * @return mean time of an operation in nanoseconds, standard deviation of the iterations, number of operations measured
+     */
+    private double[] measure(Runnable setup, IntSupplier operation) {
+        for (int i = 0; i < this.nbWarmups; i++) {
+            runIteration(setup, operation, new long[2]);
+        }
+
+        double[] times = new double[this.nbIterations];
+        long totalOps = 0;
+        double mean = 0;
+        for (int i = 0; i < this.nbIterations; i++) {
+            long[] measured = new long[2];
+            runIteration(setup, operation, measured);
+            times[i] = (double) measured[0] / measured[1];
+            totalOps += measured[1];
+            mean += times[i];
+        }
+        mean /= this.nbIterations;
+
+        double variance = 0;
+        for (int i = 0; i < this.nbIterations; i++) {
+            variance += (times[i] - mean) * (times[i] - mean);
+        }
+        double deviation = this.nbIterations > 1 ? Math.sqrt(variance / (this.nbIterations - 1)) : 0;
+        return new double[] {mean, deviation, totalOps};
+    }
+
+    /**
+     * Runs an operation repeatedly for the duration of an iteration.
+     *
+     * @param setup     action run before each operation, out of the measured time, or null
+     * @param operation operation to measure
+     * @param measured  array receiving the measured time in nanoseconds and the number of operations
+     */
+    private void runIteration(Runnable setup, IntSupplier operation, long[] measured) {
+        long end = System.nanoTime() + this.iterationDuration;
+        long elapsed = 0;
+        long nbOps = 0;
+        int batch = 1;
+        int result = 0;
+
+        do {
+            if (setup == null) {
+                long start = System.nanoTime();
+                for (int i = 0; i < batch; i++) {
+                    result += operation.getAsInt();
+                }
+                long duration = System.nanoTime() - start;
+                elapsed += duration;
+                nbOps += batch;
+                if (duration < BATCH_DURATION && batch < (1 << 30)) {
+                    batch *= 2;
+                }
+            } else {
+                setup.run();
+                long start = System.nanoTime();
+                result += operation.getAsInt();
+                elapsed += System.nanoTime() - start;
+                nbOps++;
+            }
+        } while (System.nanoTime() - end < 0);
+
+        this.sink += result;
+        measured[0] = elapsed;
+        measured[1] = nbOps;
+    }
+
+    /**
+     * Plays games of random moves on a board and prints the memory allocated by <code>GameBoard.play</code>,
+     * unless the games are played to warm up. The line printed is:
+     * <pre>
+     * play	size	colors	fill	moves	allocating_moves	bytes
+     * </pre>
+     *
+     * @param base    board the games start from, left unchanged
+     * @param colors  number of gem types, for the line
+     * @param fill    fill of the board, for the line
+     * @param nbGames number of games checked
+     * @param warmup  true if the games are played to warm up, and nothing is printed
+     * @return number of moves checked which allocated memory
+     */
+    public int checkAllocations(GameBoard base, int colors, String fill, int nbGames, boolean warmup) {
+        GameBoard board = new GameBoard(base);
+        Random random = new Random(FILL_SEED);
+        long nbMoves = 0;
+        int nbAllocatingMoves = 0;
+        long totalBytes = 0;
+        for (int game = 0; game < nbGames; game++) {
+            board.copyFrom(base);
+            for (int move = 0; move < MAX_CHECKED_MOVES && board.getNbPlayableGroups() > 0; move++) {
+                int cell = getRandomMove(board, random);
+                long startBytes = GameMetrics.getThreadAllocatedBytes();
+                this.sink += board.play(cell);
+                long bytes = GameMetrics.getThreadAllocatedBytes() - startBytes;
+                nbMoves++;
+                totalBytes += bytes;
+                if (bytes > 0) {
+                    nbAllocatingMoves++;
+                }
+            }
+        }
+        if (warmup) {
+            return 0;
+        }
+        System.out.println("play\t" + base.getNbCols() + "x" + base.getNbRows() + "\t" + colors + "\t" + fill
+                + "\t" + nbMoves + "\t" + nbAllocatingMoves + "\t" + totalBytes);
+        return nbAllocatingMoves;
+    }
+
+    /**
+     * Draws a move among the groups of at least two cells of a board, without allocating.
+     *
+     * @param board  board with at least one group to remove
+     * @param random generator of the move
+     * @return index of the first cell of the group
+     */
+    private static int getRandomMove(GameBoard board, Random random) {
+        int rank = random.nextInt(board.getNbPlayableGroups());
+        for (int groupID = 0; ; groupID++) {
+            if (board.getGroupSize(groupID) >= 2 && rank-- == 0) {
+                return board.getGroupStart(groupID);
+            }
+        }
+    }
+
+    /**
+     * Returns the combination of the results of the operations measured.
+     *
+     * @return combined results
+     */
+    public int getSink() {
+        return this.sink;
+    }
+
+    /**
+     * Splits a comma-separated option.
+     *
+     * @param value value of the option
+     * @return the values
+     */
+    private static String[] split(String value) {
+        return value.split(",");
+    }
+
+    /**
+     * Prints the usage of the command and exits.
+     */
+    private static void usage() {
+        System.err.println("usage: java GameBenchmark [-size CxR,...] [-colors n,...] [-fill uniform,random,checkerboard]"
+                + " [-bench name,...] [-warmup n] [-iterations n] [-time ms] [-allocations n]");
+        System.err.print("benchmarks:");
+        for (int i = 0; i < BENCHMARKS.length; i++) {
+            System.err.print(" " + BENCHMARKS[i]);
+        }
+        System.err.println();
+        System.exit(2);
+    }
+
+    /**
+     * Entry point of the benchmarks: runs every selected benchmark on every combination of parameters.
+     *
+     * @param args options
+     */
+    public static void main(String[] args) {
+        String[] sizes = {"15x10", "100x100", "1000x1000"};
+        String[] colors = {"2", "3"};
+        String[] fills = FILLS;
+        String[] benchmarks = BENCHMARKS;
+        int nbWarmups = 2;
+        int nbIterations = 5;
+        long iterationTime = 100;
+        int nbAllocationGames = 0;
+
+        ArrayList<int[]> dimensions = new ArrayList<int[]>();
+        int[] colorCounts;
+        GameBenchmark runner;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    usage();
+                }
+                if (args[i].equals("-size")) {
+                    sizes = split(args[i + 1]);
+                } else if (args[i].equals("-colors")) {
+                    colors = split(args[i + 1]);
+                } else if (args[i].equals("-fill")) {
+                    fills = split(args[i + 1]);
+                } else if (args[i].equals("-bench")) {
+                    benchmarks = split(args[i + 1]);
+                } else if (args[i].equals("-warmup")) {
+                    nbWarmups = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("-iterations")) {
+                    nbIterations = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("-time")) {
+                    iterationTime = Long.parseLong(args[i + 1]);
+                } else if (args[i].equals("-allocations")) {
+                    nbAllocationGames = Integer.parseInt(args[i + 1]);
+                } else {
+                    usage();
+                }
+            }
+
+            for (int i = 0; i < sizes.length; i++) {
+                String[] size = sizes[i].split("x");
+                if (size.length != 2) {
+                    usage();
+                }
+                dimensions.add(new int[] {Integer.parseInt(size[0]), Integer.parseInt(size[1])});
+            }
+            colorCounts = new int[colors.length];
+            for (int i = 0; i < colors.length; i++) {
+                colorCounts[i] = Integer.parseInt(colors[i]);
+                if (colorCounts[i] < 1 || colorCounts[i] > GameBoard.NB_GEM_TYPES) {
+                    usage();
+                }
+            }
+            runner = new GameBenchmark(nbWarmups, nbIterations, iterationTime);
+        } catch (IllegalArgumentException e) {
+            usage();
+            return;
+        }
+
+        if (nbAllocationGames > 0) {
+            if (GameMetrics.getThreadAllocatedBytes() < 0) {
+                System.err.println("the virtual machine cannot measure the memory allocated by a thread");
+                System.exit(2);
+            }
+            System.out.println("benchmark\tsize\tcolors\tfill\tmoves\tallocating_moves\tbytes");
+            int nbAllocatingMoves = 0;
+            try {
+                // the warmup games are played on all the boards before any move is checked
+                for (int pass = 0; pass < 2; pass++) {
+                    for (int[] dimension : dimensions) {
+                        for (int nbColors : colorCounts) {
+                            for (String fill : fills) {
+                                GameBoard base = createBoard(dimension[0], dimension[1], nbColors, fill);
+                                nbAllocatingMoves += runner.checkAllocations(base, nbColors, fill,
+                                        pass == 0 ? nbWarmups : nbAllocationGames, pass == 0);
+                            }
+                        }
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.exit(2);
+            }
+            System.err.println("sink " + runner.getSink());
+            if (nbAllocatingMoves > 0) {
+                System.err.println(nbAllocatingMoves + " moves allocated memory");
+                System.exit(1);
+            }
+            return;
+        }
+
+        System.out.println("benchmark\tsize\tcolors\tfill\tns_per_op\terror\tops");
+        try {
+            for (int[] dimension : dimensions) {
+                for (int nbColors : colorCounts) {
+                    for (String fill : fills) {
+                        GameBoard base = createBoard(dimension[0], dimension[1], nbColors, fill);
+                        for (String benchmark : benchmarks) {
+                            runner.run(benchmark, base, nbColors, fill);
+                        }
+                    }
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+        // printed so the results of the operations are used
+        System.err.println("sink " + runner.getSink());
+    }
+}
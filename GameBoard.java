@@ -0,0 +1,1366 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * The <code>GameBoard</code> class is the headless engine of the SameGame.
+ * It stores the grid as a packed array of bytes, column by column, and applies
+ * the game rules (group lookup, removal, gravity and column shift) without any
+ * graphical component, so games can be simulated without building the window.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class GameBoard {
+
+    /** Gem type of an empty cell */
+    public static final byte EMPTY = 3;
+
+    /** Number of distinct gem types (ruby, emerald, diamond) */
+    public static final int NB_GEM_TYPES = 3;
+
+    /** Number of columns in the grid */
+    private final int nbCols;
+
+    /** Number of rows in the grid */
+    private final int nbRows;
+
+    /** Gem types of the cells, column-major: the cell (x, y) is at index x * nbRows + y */
+    private final byte[] cells;
+
+    /** Number of non-empty columns remaining */
+    private int nbColumnsAvailable;
+
+    /** Number of remaining cells on the grid */
+    private int cptCasesAvailable;
+
+    /** Number of remaining cells of each gem type */
+    private final int[] gemCounts;
+
+    /**
+     * Zobrist hash of the grid: the exclusive or of the key of every gem at its index.
+     * It is updated as gems are removed, fall and shift, so equal grids reached by
+     * different moves have the same hash without being compared cell by cell.
+     */
+    private long hash;
+
+    /** Stamp of the last group lookup that visited each cell */
+    private final int[] visitStamps;
+
+    /** Current group lookup stamp */
+    private int currentStamp;
+
+    /** Group identifier of each cell, -1 for an empty cell */
+    private final int[] labels;
+
+    /** Number of cells of each group, indexed by group identifier */
+    private final int[] groupSizes;
+
+    /** One cell of each group, as columnId * nbRows + row, indexed by group identifier */
+    private final int[] groupStarts;
+
+    /** Number of groups found by the last labeling */
+    private int nbGroups;
+
+    /** Number of groups with more than one cell */
+    private int nbPlayableGroups;
+
+    /** Queue used by the labeling pass */
+    private final int[] labelQueue;
+
+    /** First column of each group as a column identifier, indexed by group identifier */
+    private final int[] groupMinCols;
+
+    /** Last column of each group as a column identifier, indexed by group identifier */
+    private final int[] groupMaxCols;
+
+    /**
+     * Identifier of the column at each position. A column keeps its identifier when the
+     * columns on its left are removed, so group bounds stay valid without being updated.
+     */
+    private final int[] columnIds;
+
+    /** Current position of each column identifier, -1 once the column was removed */
+    private final int[] columnPositions;
+
+    /** Group identifiers released by an incremental labeling and available for new groups */
+    private final int[] freeGroupIDs;
+
+    /** Number of identifiers in <code>freeGroupIDs</code> */
+    private int nbFreeGroupIDs;
+
+    /** Stamp of the last labeling cycle that invalidated each group */
+    private final int[] groupStamps;
+
+    /** Stamp of the current labeling cycle */
+    private int groupStamp;
+
+    /** Group identifiers invalidated since the last labeling */
+    private final int[] invalidatedGroupIDs;
+
+    /** Number of identifiers in <code>invalidatedGroupIDs</code> */
+    private int nbInvalidatedGroups;
+
+    /** true if the labels match the grid, except in the dirty columns */
+    private boolean labelsValid;
+
+    /** true if labeling may only recompute the groups around the dirty columns */
+    private boolean incrementalGroups;
+
+    /** First column modified since the last labeling, nbCols if none */
+    private int dirtyFirstCol;
+
+    /** Last column modified since the last labeling, -1 if none */
+    private int dirtyLastCol;
+
+    /** First column relabeled by the last labeling */
+    private int relabeledFirstCol;
+
+    /** Last column relabeled by the last labeling */
+    private int relabeledLastCol;
+
+    /** Scratch buffer receiving the cells of the group removed by a move */
+    private final int[] moveCells;
+
+    /** Scratch buffer receiving the columns affected by a move */
+    private final int[] moveColumns;
+
+    /** Scratch buffer receiving the columns removed by a move */
+    private final int[] removedColumns;
+
+    /** Scratch buffer receiving the identifiers of the columns removed by a move */
+    private final int[] removedColumnIds;
+
+    /** Number of columns removed by the last removal of empty columns */
+    private int nbRemovedColumns;
+
+    /** First column modified by the last move */
+    private int lastMoveFirstCol;
+
+    /** Last column modified by the last move */
+    private int lastMoveLastCol;
+
+    /**
+     * Constructor of an empty board.
+     *
+     * @param nbCols number of columns
+     * @param nbRows number of rows
+     */
+    public GameBoard(int nbCols, int nbRows) {
+        if (nbCols <= 0 || nbRows <= 0) {
+            throw new IllegalArgumentException("invalid board size " + nbCols + "x" + nbRows);
+        }
+        this.nbCols = nbCols;
+        this.nbRows = nbRows;
+        this.cells = new byte[nbCols * nbRows];
+        this.gemCounts = new int[NB_GEM_TYPES];
+        this.visitStamps = new int[nbCols * nbRows];
+        this.currentStamp = 0;
+        this.labels = new int[nbCols * nbRows];
+        this.groupSizes = new int[nbCols * nbRows];
+        this.groupStarts = new int[nbCols * nbRows];
+        this.labelQueue = new int[nbCols * nbRows];
+        this.nbGroups = 0;
+        this.nbPlayableGroups = 0;
+        this.groupMinCols = new int[nbCols * nbRows];
+        this.groupMaxCols = new int[nbCols * nbRows];
+        this.freeGroupIDs = new int[nbCols * nbRows];
+        this.nbFreeGroupIDs = 0;
+        this.groupStamps = new int[nbCols * nbRows];
+        this.groupStamp = 1;
+        this.invalidatedGroupIDs = new int[nbCols * nbRows];
+        this.nbInvalidatedGroups = 0;
+        this.columnIds = new int[nbCols];
+        this.columnPositions = new int[nbCols];
+        for (int col = 0; col < nbCols; col++) {
+            this.columnIds[col] = col;
+            this.columnPositions[col] = col;
+        }
+        this.labelsValid = false;
+        this.incrementalGroups = true;
+        this.dirtyFirstCol = nbCols;
+        this.dirtyLastCol = -1;
+        this.moveCells = new int[nbCols * nbRows];
+        this.moveColumns = new int[nbCols];
+        this.removedColumns = new int[nbCols];
+        this.removedColumnIds = new int[nbCols];
+
+        Arrays.fill(this.cells, EMPTY);
+        Arrays.fill(this.labels, -1);
+        this.nbColumnsAvailable = 0;
+        this.cptCasesAvailable = 0;
+    }
+
+    /**
+     * Constructor of a board filled with random gems.
+     *
+     * @param nbCols number of columns
+     * @param nbRows number of rows
+     * @param rand   random generator used to pick the gems
+     */
+    public GameBoard(int nbCols, int nbRows, Random rand) {
+        this(nbCols, nbRows);
+        for (int i = 0; i < this.cells.length; i++) {
+            this.cells[i] = (byte) rand.nextInt(NB_GEM_TYPES);
+            this.gemCounts[this.cells[i]]++;
+            this.hash ^= getZobristKey(i, this.cells[i]);
+        }
+        this.nbColumnsAvailable = nbCols;
+        this.cptCasesAvailable = nbCols * nbRows;
+    }
+
+    /**
+     * Copy constructor: creates a board in the same state as another one.
+     *
+     * @param other board to copy
+     */
+    public GameBoard(GameBoard other) {
+        this(other.nbCols, other.nbRows);
+        copyFrom(other);
+    }
+
+    /**
+     * Constructor of a board filled from a map.
+     *
+     * @param map grid of gem types, indexed by [row][column]
+     */
+    public GameBoard(int[][] map) {
+        this(map[0].length, map.length);
+        for (int row = 0; row < this.nbRows; row++) {
+            for (int col = 0; col < this.nbCols; col++) {
+                this.cells[getIndex(col, row)] = (byte) map[row][col];
+            }
+        }
+        recount();
+    }
+
+    /**
+     * Finds the first cell of a map that no game can reach: an empty cell under a gem,
+     * or a gem in a column after an empty column. Maps read from files are checked with it,
+     * because undoing a move relies on the gems resting on the bottom and on the empty columns being last.
+     *
+     * @param map grid of gem types, indexed by [row][column]
+     * @return row and column of the first misplaced cell, column by column, or null if the map is reachable
+     */
+    public static int[] findFloatingCell(int[][] map) {
+        boolean emptyColumnSeen = false;
+        for (int col = 0; col < map[0].length; col++) {
+            boolean gemSeen = false;
+            for (int row = 0; row < map.length; row++) {
+                if (map[row][col] != EMPTY) {
+                    if (emptyColumnSeen) {
+                        return new int[] {row, col};
+                    }
+                    gemSeen = true;
+                } else if (gemSeen) {
+                    return new int[] {row, col};
+                }
+            }
+            if (!gemSeen) {
+                emptyColumnSeen = true;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Recomputes the number of remaining cells and non-empty columns from the grid.
+     */
+    private void recount() {
+        this.cptCasesAvailable = 0;
+        this.nbColumnsAvailable = 0;
+        this.hash = 0;
+        Arrays.fill(this.gemCounts, 0);
+        for (int col = 0; col < this.nbCols; col++) {
+            boolean emptyColumn = true;
+            for (int row = 0; row < this.nbRows; row++) {
+                if (this.cells[getIndex(col, row)] != EMPTY) {
+                    this.cptCasesAvailable++;
+                    this.gemCounts[this.cells[getIndex(col, row)]]++;
+                    this.hash ^= getZobristKey(getIndex(col, row), this.cells[getIndex(col, row)]);
+                    emptyColumn = false;
+                }
+            }
+            if (!emptyColumn) {
+                this.nbColumnsAvailable = col + 1;
+            }
+        }
+    }
+
+    /**
+     * Puts this board in the same state as another board of the same size, groups included,
+     * without allocating. Search algorithms use it to reuse boards instead of creating them.
+     *
+     * @param other board to copy
+     */
+    public void copyFrom(GameBoard other) {
+        if (other.nbCols != this.nbCols || other.nbRows != this.nbRows) {
+            throw new IllegalArgumentException("cannot copy a " + other.nbCols + "x" + other.nbRows
+                    + " board into a " + this.nbCols + "x" + this.nbRows + " board");
+        }
+        System.arraycopy(other.cells, 0, this.cells, 0, this.cells.length);
+        System.arraycopy(other.gemCounts, 0, this.gemCounts, 0, NB_GEM_TYPES);
+        System.arraycopy(other.labels, 0, this.labels, 0, this.labels.length);
+        System.arraycopy(other.groupSizes, 0, this.groupSizes, 0, other.nbGroups);
+        System.arraycopy(other.groupStarts, 0, this.groupStarts, 0, other.nbGroups);
+        System.arraycopy(other.groupMinCols, 0, this.groupMinCols, 0, other.nbGroups);
+        System.arraycopy(other.groupMaxCols, 0, this.groupMaxCols, 0, other.nbGroups);
+        System.arraycopy(other.groupStamps, 0, this.groupStamps, 0, this.groupStamps.length);
+        System.arraycopy(other.freeGroupIDs, 0, this.freeGroupIDs, 0, other.nbFreeGroupIDs);
+        System.arraycopy(other.invalidatedGroupIDs, 0, this.invalidatedGroupIDs, 0, other.nbInvalidatedGroups);
+        System.arraycopy(other.columnIds, 0, this.columnIds, 0, this.nbCols);
+        System.arraycopy(other.columnPositions, 0, this.columnPositions, 0, this.nbCols);
+
+        this.nbColumnsAvailable = other.nbColumnsAvailable;
+        this.cptCasesAvailable = other.cptCasesAvailable;
+        this.hash = other.hash;
+        this.nbGroups = other.nbGroups;
+        this.nbPlayableGroups = other.nbPlayableGroups;
+        this.nbFreeGroupIDs = other.nbFreeGroupIDs;
+        this.groupStamp = other.groupStamp;
+        this.nbInvalidatedGroups = other.nbInvalidatedGroups;
+        this.labelsValid = other.labelsValid;
+        this.incrementalGroups = other.incrementalGroups;
+        this.dirtyFirstCol = other.dirtyFirstCol;
+        this.dirtyLastCol = other.dirtyLastCol;
+        this.relabeledFirstCol = other.relabeledFirstCol;
+        this.relabeledLastCol = other.relabeledLastCol;
+        this.lastMoveFirstCol = other.lastMoveFirstCol;
+        this.lastMoveLastCol = other.lastMoveLastCol;
+    }
+
+    /**
+     * Returns a copy of the gem types of the cells, column-major like the grid: the cell (x, y) is at
+     * index x * nbRows + y. It is much smaller than a copy of the board, which also copies the groups,
+     * so a game can hand its cells to another thread without making the player wait.
+     *
+     * @return gem types of the cells
+     */
+    public byte[] copyCells() {
+        return this.cells.clone();
+    }
+
+    /**
+     * Puts in this board the cells of a board of the same size, as given by <code>copyCells</code>.
+     * The groups are forgotten: the next <code>updateGroups</code> labels the whole grid.
+     *
+     * @param cells gem types of the cells, column-major
+     * @throws IllegalArgumentException if the cells are not those of a board of this size
+     */
+    public void copyCellsFrom(byte[] cells) {
+        if (cells.length != this.cells.length) {
+            throw new IllegalArgumentException("cannot copy " + cells.length + " cells into a "
+                    + this.nbCols + "x" + this.nbRows + " board");
+        }
+        System.arraycopy(cells, 0, this.cells, 0, this.cells.length);
+        for (int col = 0; col < this.nbCols; col++) {
+            this.columnIds[col] = col;
+            this.columnPositions[col] = col;
+        }
+        this.nbInvalidatedGroups = 0;
+        this.labelsValid = false;
+        this.dirtyFirstCol = this.nbCols;
+        this.dirtyLastCol = -1;
+        recount();
+    }
+
+    /**
+     * Returns the number of points earned by removing a group, as counted by the game:
+     * (n - 2) * (n - 2) for a group of n cells, nothing for a group of two cells or less.
+     *
+     * @param nbCells number of cells removed
+     * @return points earned
+     */
+    public static int getMoveScore(int nbCells) {
+        if (nbCells > 2) {
+            return (nbCells - 2) * (nbCells - 2);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the Zobrist key of a gem at an index. Keys are computed by mixing the bits of the
+     * index and the gem type, so boards of the same size share the same keys without storing them.
+     *
+     * @param index   index of the cell
+     * @param gemType gem type of the cell
+     * @return key of the gem
+     */
+    public static long getZobristKey(int index, int gemType) {
+        long z = (index * 4L + gemType) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the Zobrist hash of the grid. Two boards of the same size with the same gems
+     * have the same hash; different grids have different hashes with a very high probability.
+     *
+     * @return hash of the grid
+     */
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return number of columns
+     */
+    public int getNbCols() {
+        return this.nbCols;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return number of rows
+     */
+    public int getNbRows() {
+        return this.nbRows;
+    }
+
+    /**
+     * Returns the number of non-empty columns remaining.
+     *
+     * @return number of non-empty columns
+     */
+    public int getNbColumnsAvailable() {
+        return this.nbColumnsAvailable;
+    }
+
+    /**
+     * Returns the number of remaining cells.
+     *
+     * @return number of remaining cells
+     */
+    public int getCptCasesAvailable() {
+        return this.cptCasesAvailable;
+    }
+
+    /**
+     * Returns the number of remaining cells of a gem type.
+     *
+     * @param gemType gem type (0: ruby, 1: emerald, 2: diamond)
+     * @return number of cells
+     */
+    public int getGemCount(int gemType) {
+        return this.gemCounts[gemType];
+    }
+
+    /**
+     * Checks if the coordinates are inside the grid.
+     *
+     * @param x Column.
+     * @param y Row.
+     * @return true if inside the grid, false otherwise
+     */
+    public boolean isInside(int x, int y) {
+        return x >= 0 && x < this.nbCols && y >= 0 && y < this.nbRows;
+    }
+
+    /**
+     * Returns the index of a cell in the packed grid.
+     *
+     * @param x Column.
+     * @param y Row.
+     * @return index of the cell
+     */
+    public int getIndex(int x, int y) {
+        return x * this.nbRows + y;
+    }
+
+    /**
+     * Returns the column of a cell index.
+     *
+     * @param index index of the cell
+     * @return column of the cell
+     */
+    public int getColumn(int index) {
+        return index / this.nbRows;
+    }
+
+    /**
+     * Returns the row of a cell index.
+     *
+     * @param index index of the cell
+     * @return row of the cell
+     */
+    public int getRow(int index) {
+        return index % this.nbRows;
+    }
+
+    /**
+     * Returns the gem type of a cell.
+     *
+     * @param x Column.
+     * @param y Row.
+     * @return an integer among 0: ruby, 1: emerald, 2: diamond, 3: empty
+     */
+    public int getGemType(int x, int y) {
+        return this.cells[getIndex(x, y)];
+    }
+
+    /**
+     * Returns the gem type of a cell index.
+     *
+     * @param index index of the cell
+     * @return an integer among 0: ruby, 1: emerald, 2: diamond, 3: empty
+     */
+    public int getGemTypeAt(int index) {
+        return this.cells[index];
+    }
+
+    /**
+     * Exchanges the gems of two cells.
+     *
+     * @param index1 index of the first cell
+     * @param index2 index of the second cell
+     */
+    public void swapCells(int index1, int index2) {
+        byte temp = this.cells[index1];
+        toggleHash(index1, temp);
+        toggleHash(index2, this.cells[index2]);
+        this.cells[index1] = this.cells[index2];
+        this.cells[index2] = temp;
+        toggleHash(index1, this.cells[index1]);
+        toggleHash(index2, this.cells[index2]);
+        markDirty(index1 / this.nbRows);
+        markDirty(index2 / this.nbRows);
+    }
+
+    /**
+     * Adds a gem to the hash, or removes it since the keys are combined with an exclusive or.
+     *
+     * @param index   index of the cell
+     * @param gemType gem type of the cell, nothing is done for an empty cell
+     */
+    private void toggleHash(int index, byte gemType) {
+        if (gemType != EMPTY) {
+            this.hash ^= getZobristKey(index, gemType);
+        }
+    }
+
+    /**
+     * Records that a column was modified since the last labeling.
+     *
+     * @param col index of the column
+     */
+    private void markDirty(int col) {
+        if (col < this.dirtyFirstCol) {
+            this.dirtyFirstCol = col;
+        }
+        if (col > this.dirtyLastCol) {
+            this.dirtyLastCol = col;
+        }
+    }
+
+    /**
+     * Enables or disables incremental labeling.
+     * When disabled, every labeling recomputes the groups of the whole grid.
+     *
+     * @param incremental true to only recompute the groups around the modified columns
+     */
+    public void setIncrementalGroups(boolean incremental) {
+        this.incrementalGroups = incremental;
+    }
+
+    /**
+     * Checks if incremental labeling is enabled.
+     *
+     * @return true if incremental labeling is enabled
+     */
+    public boolean isIncrementalGroups() {
+        return this.incrementalGroups;
+    }
+
+    /**
+     * Stores in <code>group</code> the indices of all cells connected to a given cell by the same gem type.
+     * The starting cell is always the first one.
+     *
+     * @param index index of the starting cell
+     * @param group array receiving the indices, at least as large as the grid
+     * @return number of cells in the group, 0 if the cell is empty
+     */
+    public int getGroup(int index, int[] group) {
+        byte gemType = this.cells[index];
+        if (gemType == EMPTY) {
+            return 0;
+        }
+
+        int stamp = nextStamp();
+        this.visitStamps[index] = stamp;
+        group[0] = index;
+        int groupSize = 1;
+        int currentIndex = 0;
+
+        while (currentIndex < groupSize) {
+            int cell = group[currentIndex];
+            int row = cell % this.nbRows;
+
+            // up, down, left, right
+            if (row > 0) {
+                groupSize = visit(cell - 1, gemType, stamp, group, groupSize);
+            }
+            if (row < this.nbRows - 1) {
+                groupSize = visit(cell + 1, gemType, stamp, group, groupSize);
+            }
+            if (cell >= this.nbRows) {
+                groupSize = visit(cell - this.nbRows, gemType, stamp, group, groupSize);
+            }
+            if (cell < this.cells.length - this.nbRows) {
+                groupSize = visit(cell + this.nbRows, gemType, stamp, group, groupSize);
+            }
+            currentIndex++;
+        }
+        return groupSize;
+    }
+
+    /**
+     * Adds a neighbor to the group being built if it has the same gem type and was not visited yet.
+     *
+     * @param cell      index of the neighbor
+     * @param gemType   gem type of the group
+     * @param stamp     stamp of the current lookup
+     * @param group     group being built
+     * @param groupSize current size of the group
+     * @return the new size of the group
+     */
+    private int visit(int cell, byte gemType, int stamp, int[] group, int groupSize) {
+        if (this.cells[cell] == gemType && this.visitStamps[cell] != stamp) {
+            this.visitStamps[cell] = stamp;
+            group[groupSize] = cell;
+            return groupSize + 1;
+        }
+        return groupSize;
+    }
+
+    /**
+     * Returns a new lookup stamp, clearing the stamps when the counter wraps around.
+     *
+     * @return the new stamp
+     */
+    private int nextStamp() {
+        this.currentStamp++;
+        if (this.currentStamp == Integer.MAX_VALUE) {
+            Arrays.fill(this.visitStamps, 0);
+            this.currentStamp = 1;
+        }
+        return this.currentStamp;
+    }
+
+    /**
+     * Reassigns group identifiers after the grid was modified.
+     * In incremental mode, only the groups touching the modified columns (or their direct
+     * neighbors) are recomputed and the other groups keep their identifier; the whole grid
+     * is relabeled when the first labeling is needed or when the cells to relabel are more
+     * than half of the grid.
+     */
+    public void updateGroups() {
+        if (this.dirtyLastCol < this.dirtyFirstCol && this.nbInvalidatedGroups == 0 && this.labelsValid) {
+            this.relabeledFirstCol = 0;
+            this.relabeledLastCol = -1;
+            return;
+        }
+        if (!this.incrementalGroups || !this.labelsValid || !updateGroupsInRange()) {
+            updateAllGroups();
+        }
+        this.labelsValid = true;
+        this.dirtyFirstCol = this.nbCols;
+        this.dirtyLastCol = -1;
+
+        // start a new labeling cycle
+        this.nbInvalidatedGroups = 0;
+        this.groupStamp++;
+        if (this.groupStamp == Integer.MAX_VALUE) {
+            Arrays.fill(this.groupStamps, 0);
+            this.groupStamp = 1;
+        }
+    }
+
+    /**
+     * Invalidates the group of a cell about to be modified, and marks all the columns of the
+     * group as dirty, so its remaining cells are relabeled even if the columns are shifted.
+     *
+     * @param index index of the cell
+     */
+    private void invalidateGroupOf(int index) {
+        int groupID = this.labels[index];
+        if (this.labelsValid && groupID != -1 && this.groupStamps[groupID] != this.groupStamp) {
+            this.groupStamps[groupID] = this.groupStamp;
+            this.invalidatedGroupIDs[this.nbInvalidatedGroups++] = groupID;
+            markDirty(getGroupMinCol(groupID));
+            markDirty(getGroupMaxCol(groupID));
+        }
+    }
+
+    /**
+     * Reassigns a group identifier to every cell in a single pass over the grid.
+     * Each cell is enqueued at most once, so the cost is linear in the number of cells.
+     */
+    private void updateAllGroups() {
+        Arrays.fill(this.labels, -1);
+        this.nbGroups = 0;
+        this.nbPlayableGroups = 0;
+        this.nbFreeGroupIDs = 0;
+
+        int stamp = nextStamp();
+        int end = this.nbColumnsAvailable * this.nbRows;
+        for (int index = 0; index < end; index++) {
+            if (this.visitStamps[index] != stamp && this.cells[index] != EMPTY) {
+                labelGroup(index, this.nbGroups, stamp);
+                this.nbGroups++;
+            }
+        }
+        this.relabeledFirstCol = 0;
+        this.relabeledLastCol = this.nbCols - 1;
+    }
+
+    /**
+     * Recomputes only the groups that intersect the dirty columns or the columns next to them.
+     * The cells of these columns are relabeled from scratch; the flood fill started from them
+     * also relabels the cells of the invalidated groups lying outside, which stay connected to
+     * the relabeled columns through the unchanged columns on each side. The other groups keep
+     * their cells and their identifier.
+     *
+     * @return true if the groups were recomputed, false if a full labeling is cheaper
+     */
+    private boolean updateGroupsInRange() {
+        int first = Math.max(0, this.dirtyFirstCol - 1);
+        int last = Math.min(this.nbCols - 1, this.dirtyLastCol + 1);
+        int from = first * this.nbRows;
+        int to = (last + 1) * this.nbRows;
+
+        int nbInvalidated = this.nbInvalidatedGroups;
+        for (int index = from; index < to; index++) {
+            int groupID = this.labels[index];
+            if (groupID != -1 && this.groupStamps[groupID] != this.groupStamp) {
+                this.groupStamps[groupID] = this.groupStamp;
+                this.invalidatedGroupIDs[nbInvalidated++] = groupID;
+            }
+        }
+
+        long work = Math.max(0, to - from);
+        for (int i = 0; i < nbInvalidated; i++) {
+            work += this.groupSizes[this.invalidatedGroupIDs[i]];
+        }
+        if (work * 2 > (long) this.nbColumnsAvailable * this.nbRows) {
+            return false;
+        }
+
+        for (int i = 0; i < nbInvalidated; i++) {
+            int groupID = this.invalidatedGroupIDs[i];
+            if (this.groupSizes[groupID] > 1) {
+                this.nbPlayableGroups--;
+            }
+            this.groupSizes[groupID] = 0;
+            this.freeGroupIDs[this.nbFreeGroupIDs++] = groupID;
+        }
+
+        this.relabeledFirstCol = first;
+        this.relabeledLastCol = last;
+        if (from >= to) {
+            return true;
+        }
+        Arrays.fill(this.labels, from, to, -1);
+        int stamp = nextStamp();
+        for (int index = from; index < to; index++) {
+            if (this.visitStamps[index] != stamp && this.cells[index] != EMPTY) {
+                int groupID;
+                if (this.nbFreeGroupIDs > 0) {
+                    groupID = this.freeGroupIDs[--this.nbFreeGroupIDs];
+                } else {
+                    groupID = this.nbGroups++;
+                }
+                labelGroup(index, groupID, stamp);
+                this.relabeledFirstCol = Math.min(this.relabeledFirstCol, getGroupMinCol(groupID));
+                this.relabeledLastCol = Math.max(this.relabeledLastCol, getGroupMaxCol(groupID));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first column whose labels changed during the last labeling.
+     *
+     * @return index of the first relabeled column
+     */
+    public int getRelabeledFirstCol() {
+        return this.relabeledFirstCol;
+    }
+
+    /**
+     * Returns the last column whose labels changed during the last labeling.
+     *
+     * @return index of the last relabeled column, lower than the first one if nothing changed
+     */
+    public int getRelabeledLastCol() {
+        return this.relabeledLastCol;
+    }
+
+    /**
+     * Assigns a group identifier to all cells connected to a starting cell.
+     *
+     * @param start   index of the starting cell, not yet visited
+     * @param groupID identifier to assign
+     * @param stamp   stamp marking the cells visited by the current labeling
+     */
+    private void labelGroup(int start, int groupID, int stamp) {
+        byte gemType = this.cells[start];
+        int[] queue = this.labelQueue;
+        int[] visited = this.visitStamps;
+
+        visited[start] = stamp;
+        queue[0] = start;
+        int size = 1;
+        int currentIndex = 0;
+        // cells are stored column by column, so the extreme indexes lie in the extreme columns
+        int minIndex = start;
+        int maxIndex = start;
+
+        while (currentIndex < size) {
+            int cell = queue[currentIndex];
+            int row = cell % this.nbRows;
+            this.labels[cell] = groupID;
+            if (cell < minIndex) {
+                minIndex = cell;
+            } else if (cell > maxIndex) {
+                maxIndex = cell;
+            }
+
+            if (row > 0 && this.cells[cell - 1] == gemType && visited[cell - 1] != stamp) {
+                visited[cell - 1] = stamp;
+                queue[size++] = cell - 1;
+            }
+            if (row < this.nbRows - 1 && this.cells[cell + 1] == gemType && visited[cell + 1] != stamp) {
+                visited[cell + 1] = stamp;
+                queue[size++] = cell + 1;
+            }
+            if (cell >= this.nbRows && this.cells[cell - this.nbRows] == gemType && visited[cell - this.nbRows] != stamp) {
+                visited[cell - this.nbRows] = stamp;
+                queue[size++] = cell - this.nbRows;
+            }
+            if (cell < this.cells.length - this.nbRows && this.cells[cell + this.nbRows] == gemType && visited[cell + this.nbRows] != stamp) {
+                visited[cell + this.nbRows] = stamp;
+                queue[size++] = cell + this.nbRows;
+            }
+            currentIndex++;
+        }
+
+        this.groupSizes[groupID] = size;
+        this.groupStarts[groupID] = this.columnIds[start / this.nbRows] * this.nbRows + start % this.nbRows;
+        this.groupMinCols[groupID] = this.columnIds[minIndex / this.nbRows];
+        this.groupMaxCols[groupID] = this.columnIds[maxIndex / this.nbRows];
+        if (size > 1) {
+            this.nbPlayableGroups++;
+        }
+    }
+
+    /**
+     * Returns the group identifier of a cell, as computed by the last labeling.
+     *
+     * @param index index of the cell
+     * @return group identifier, -1 for an empty cell
+     */
+    public int getGroupID(int index) {
+        return this.labels[index];
+    }
+
+    /**
+     * Returns the number of cells of a group.
+     *
+     * @param groupID group identifier
+     * @return size of the group
+     */
+    public int getGroupSize(int groupID) {
+        return this.groupSizes[groupID];
+    }
+
+    /**
+     * Returns the first column of a group.
+     *
+     * @param groupID group identifier
+     * @return index of the leftmost column of the group
+     */
+    public int getGroupMinCol(int groupID) {
+        return this.columnPositions[this.groupMinCols[groupID]];
+    }
+
+    /**
+     * Returns the last column of a group.
+     *
+     * @param groupID group identifier
+     * @return index of the rightmost column of the group
+     */
+    public int getGroupMaxCol(int groupID) {
+        return this.columnPositions[this.groupMaxCols[groupID]];
+    }
+
+    /**
+     * Returns the number of group identifiers in use: every identifier is lower than this value.
+     * After an incremental labeling, some identifiers below it may belong to no group (size 0).
+     *
+     * @return number of group identifiers
+     */
+    public int getNbGroups() {
+        return this.nbGroups;
+    }
+
+    /**
+     * Returns one cell of a group, as computed by the last labeling.
+     * Playing this cell removes the whole group.
+     *
+     * @param groupID group identifier
+     * @return index of a cell of the group
+     */
+    public int getGroupStart(int groupID) {
+        return this.columnPositions[this.groupStarts[groupID] / this.nbRows] * this.nbRows
+                + this.groupStarts[groupID] % this.nbRows;
+    }
+
+    /**
+     * Chooses a playable group at random, each with the same probability.
+     *
+     * @param random random generator choosing the group
+     * @return index of a cell of the chosen group, -1 if no group can be removed
+     */
+    public int getRandomMove(SplittableRandom random) {
+        if (this.nbPlayableGroups == 0) {
+            return -1;
+        }
+        int chosen = random.nextInt(this.nbPlayableGroups);
+        int groupID = 0;
+        while (this.groupSizes[groupID] < 2 || chosen-- > 0) {
+            groupID++;
+        }
+        return getGroupStart(groupID);
+    }
+
+    /**
+     * Returns the number of groups with more than one cell.
+     *
+     * @return number of playable groups
+     */
+    public int getNbPlayableGroups() {
+        return this.nbPlayableGroups;
+    }
+
+    /**
+     * Stores in <code>group</code> the indices of the cells of a group, as computed by the last labeling.
+     *
+     * @param groupID group identifier
+     * @param group   array receiving the indices, at least as large as the group
+     * @return number of cells in the group
+     */
+    public int getGroupCells(int groupID, int[] group) {
+        int start = getGroupStart(groupID);
+        group[0] = start;
+        int size = 1;
+        int currentIndex = 0;
+        int stamp = nextStamp();
+        this.visitStamps[start] = stamp;
+
+        while (currentIndex < size) {
+            int cell = group[currentIndex];
+            int row = cell % this.nbRows;
+
+            if (row > 0) {
+                size = visitLabel(cell - 1, groupID, stamp, group, size);
+            }
+            if (row < this.nbRows - 1) {
+                size = visitLabel(cell + 1, groupID, stamp, group, size);
+            }
+            if (cell >= this.nbRows) {
+                size = visitLabel(cell - this.nbRows, groupID, stamp, group, size);
+            }
+            if (cell < this.cells.length - this.nbRows) {
+                size = visitLabel(cell + this.nbRows, groupID, stamp, group, size);
+            }
+            currentIndex++;
+        }
+        return size;
+    }
+
+    /**
+     * Adds a neighbor to the group being collected if it carries the same group identifier.
+     *
+     * @param cell      index of the neighbor
+     * @param groupID   group identifier
+     * @param stamp     stamp of the current lookup
+     * @param group     group being collected
+     * @param groupSize current size of the group
+     * @return the new size of the group
+     */
+    private int visitLabel(int cell, int groupID, int stamp, int[] group, int groupSize) {
+        if (this.labels[cell] == groupID && this.visitStamps[cell] != stamp) {
+            this.visitStamps[cell] = stamp;
+            group[groupSize] = cell;
+            return groupSize + 1;
+        }
+        return groupSize;
+    }
+
+    /**
+     * Empties a set of cells.
+     *
+     * @param indices indices of the cells to remove
+     * @param count   number of indices to read from the array
+     */
+    public void removeCells(int[] indices, int count) {
+        for (int i = 0; i < count; i++) {
+            if (this.cells[indices[i]] != EMPTY) {
+                invalidateGroupOf(indices[i]);
+                this.gemCounts[this.cells[indices[i]]]--;
+                toggleHash(indices[i], this.cells[indices[i]]);
+                this.cells[indices[i]] = EMPTY;
+                this.cptCasesAvailable--;
+                markDirty(indices[i] / this.nbRows);
+            }
+        }
+    }
+
+    /**
+     * Causes the gems of a column to fall downward.
+     * The column is compacted in a single pass: a read pointer goes up the column and
+     * every gem is copied down to a write pointer, then the top of the column is emptied.
+     *
+     * @param col index of the column
+     */
+    public void updateFall(int col) {
+        int base = col * this.nbRows;
+        int write = base + this.nbRows - 1;
+
+        for (int read = write; read >= base; read--) {
+            byte gemType = this.cells[read];
+            if (gemType != EMPTY) {
+                if (read != write) {
+                    this.cells[write] = gemType;
+                    this.hash ^= getZobristKey(read, gemType) ^ getZobristKey(write, gemType);
+                }
+                write--;
+            }
+        }
+        if (write >= base) {
+            Arrays.fill(this.cells, base, write + 1, EMPTY);
+            markDirty(col);
+        }
+    }
+
+    /**
+     * Checks if a column is completely empty.
+     *
+     * @param col index of the column
+     * @return true if empty, false otherwise
+     */
+    public boolean isEmptyColumn(int col) {
+        int base = col * this.nbRows;
+        for (int y = 0; y < this.nbRows; y++) {
+            if (this.cells[base + y] != EMPTY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Swaps the contents of two columns.
+     *
+     * @param col1 first column
+     * @param col2 second column
+     */
+    public void swapColumns(int col1, int col2) {
+        int base1 = col1 * this.nbRows;
+        int base2 = col2 * this.nbRows;
+        for (int y = 0; y < this.nbRows; y++) {
+            byte temp = this.cells[base1 + y];
+            toggleHash(base1 + y, temp);
+            toggleHash(base2 + y, this.cells[base2 + y]);
+            this.cells[base1 + y] = this.cells[base2 + y];
+            this.cells[base2 + y] = temp;
+            toggleHash(base1 + y, this.cells[base1 + y]);
+            toggleHash(base2 + y, this.cells[base2 + y]);
+        }
+        markDirty(col1);
+        markDirty(col2);
+    }
+
+    /**
+     * Removes the columns that have become empty by shifting the following ones to the left.
+     * The columns are compacted in a single stable pass: each block of columns between two
+     * removed columns is copied once to its final place, then the freed columns on the right are emptied.
+     * The labels are shifted with the cells, so the groups that did not change stay valid.
+     *
+     * @param affectedColumns columns to check, sorted in ascending order
+     * @param count           number of columns to read from the array
+     * @return index of the first shifted column, or -1 if no column was removed
+     */
+    public int removeEmptyColumns(int[] affectedColumns, int count) {
+        int nbRemoved = 0;
+        for (int i = 0; i < count; i++) {
+            int column = affectedColumns[i];
+            boolean after = nbRemoved == 0 || column > this.removedColumns[nbRemoved - 1];
+
+            if (after && column < this.nbColumnsAvailable && isEmptyColumn(column)) {
+                this.removedColumns[nbRemoved] = column;
+                this.removedColumnIds[nbRemoved] = this.columnIds[column];
+                nbRemoved++;
+                this.columnPositions[this.columnIds[column]] = -1;
+            }
+        }
+        this.nbRemovedColumns = nbRemoved;
+        if (nbRemoved == 0) {
+            return -1;
+        }
+
+        int write = this.removedColumns[0];
+        for (int i = 0; i < nbRemoved; i++) {
+            int removed = this.removedColumns[i];
+            int next = this.nbColumnsAvailable;
+            if (i + 1 < nbRemoved) {
+                next = this.removedColumns[i + 1];
+            }
+            shiftColumns(removed + 1, write, next - removed - 1);
+            write += next - removed - 1;
+        }
+        Arrays.fill(this.cells, write * this.nbRows, this.nbColumnsAvailable * this.nbRows, EMPTY);
+        Arrays.fill(this.labels, write * this.nbRows, this.nbColumnsAvailable * this.nbRows, -1);
+        Arrays.fill(this.columnIds, write, this.nbColumnsAvailable, -1);
+
+        // the dirty columns follow the shift, and the columns on each side of a removed one become neighbors
+        if (this.dirtyLastCol != -1) {
+            int removedBeforeFirst = 0;
+            int removedUpToLast = 0;
+            for (int i = 0; i < nbRemoved; i++) {
+                if (this.removedColumns[i] < this.dirtyFirstCol) {
+                    removedBeforeFirst++;
+                }
+                if (this.removedColumns[i] <= this.dirtyLastCol) {
+                    removedUpToLast++;
+                }
+            }
+            this.dirtyFirstCol -= removedBeforeFirst;
+            this.dirtyLastCol -= removedUpToLast;
+        }
+        for (int i = 0; i < nbRemoved; i++) {
+            int gap = this.removedColumns[i] - i;
+            if (gap > 0) {
+                markDirty(gap - 1);
+            }
+            if (gap < write) {
+                markDirty(gap);
+            }
+        }
+
+        this.nbColumnsAvailable = write;
+        return this.removedColumns[0];
+    }
+
+    /**
+     * Copies a block of columns to another position, with their labels and column identifiers, and moves
+     * their gems in the hash. The old and new positions may overlap.
+     *
+     * @param from   first column of the block
+     * @param to     new position of the first column
+     * @param length number of columns in the block
+     */
+    private void shiftColumns(int from, int to, int length) {
+        if (length <= 0) {
+            return;
+        }
+        int shift = (from - to) * this.nbRows;
+        int end = (from + length) * this.nbRows;
+        for (int index = from * this.nbRows; index < end; index++) {
+            byte gemType = this.cells[index];
+            if (gemType != EMPTY) {
+                this.hash ^= getZobristKey(index, gemType) ^ getZobristKey(index - shift, gemType);
+            }
+        }
+        System.arraycopy(this.cells, from * this.nbRows, this.cells, to * this.nbRows, length * this.nbRows);
+        if (this.labelsValid) {
+            System.arraycopy(this.labels, from * this.nbRows, this.labels, to * this.nbRows, length * this.nbRows);
+        }
+        for (int k = 0; k < length; k++) {
+            // a block moving to the right is copied from its end, so no column is overwritten before being read
+            int i = to > from ? length - 1 - k : k;
+            int columnID = this.columnIds[from + i];
+            this.columnIds[to + i] = columnID;
+            this.columnPositions[columnID] = to + i;
+        }
+    }
+
+    /**
+     * Plays a move: removes the group containing a cell, makes the gems fall, removes the
+     * empty columns and updates the groups. The whole pipeline works in buffers owned by the
+     * board and does not allocate.
+     *
+     * @param index index of a cell of the group to remove
+     * @return number of cells removed, 0 if the group has less than two cells
+     */
+    public int play(int index) {
+        // the events are only committed when a Flight Recorder recording enables them
+        MovePhaseEvent lookup = MovePhaseEvent.start(MovePhaseEvent.GROUP_LOOKUP, this.nbCols, this.nbRows);
+        int groupSize = getGroup(index, this.moveCells);
+        MovePhaseEvent.stop(lookup);
+        if (groupSize < 2) {
+            MovePhaseEvent.record(lookup, groupSize, 0);
+            return 0;
+        }
+        MovePhaseEvent removal = MovePhaseEvent.start(MovePhaseEvent.REMOVAL, this.nbCols, this.nbRows);
+        removeCells(this.moveCells, groupSize);
+
+        // a group is connected, so the columns it covers form a range
+        int firstCol = this.nbCols;
+        int lastCol = -1;
+        for (int i = 0; i < groupSize; i++) {
+            int col = this.moveCells[i] / this.nbRows;
+            if (col < firstCol) {
+                firstCol = col;
+            }
+            if (col > lastCol) {
+                lastCol = col;
+            }
+        }
+        MovePhaseEvent.stop(removal);
+        MovePhaseEvent gravity = MovePhaseEvent.start(MovePhaseEvent.GRAVITY, this.nbCols, this.nbRows);
+        int nbAffected = 0;
+        for (int col = firstCol; col <= lastCol; col++) {
+            updateFall(col);
+            this.moveColumns[nbAffected++] = col;
+        }
+        MovePhaseEvent.stop(gravity);
+
+        MovePhaseEvent compaction = MovePhaseEvent.start(MovePhaseEvent.COLUMN_COMPACTION, this.nbCols, this.nbRows);
+        int nbColumnsBefore = this.nbColumnsAvailable;
+        if (removeEmptyColumns(this.moveColumns, nbAffected) != -1) {
+            lastCol = nbColumnsBefore - 1;
+        }
+        this.lastMoveFirstCol = firstCol;
+        this.lastMoveLastCol = lastCol;
+        MovePhaseEvent.stop(compaction);
+
+        MovePhaseEvent relabel = MovePhaseEvent.start(MovePhaseEvent.RELABEL, this.nbCols, this.nbRows);
+        updateGroups();
+        MovePhaseEvent.stop(relabel);
+
+        MovePhaseEvent.record(lookup, groupSize, nbAffected);
+        MovePhaseEvent.record(removal, groupSize, nbAffected);
+        MovePhaseEvent.record(gravity, groupSize, nbAffected);
+        MovePhaseEvent.record(compaction, groupSize, lastCol - firstCol + 1);
+        MovePhaseEvent.record(relabel, groupSize, Math.max(0, this.relabeledLastCol - this.relabeledFirstCol + 1));
+        return groupSize;
+    }
+
+    /**
+     * Plays a move like <code>play</code>, and returns the changes it made so it can be undone.
+     * Unlike <code>play</code>, the record is allocated, with a size proportional to the move.
+     *
+     * @param index index of a cell of the group to remove
+     * @return changes made by the move, null if the group has less than two cells
+     */
+    public MoveRecord playRecorded(int index) {
+        byte gemType = this.cells[index];
+        int groupSize = play(index);
+        if (groupSize < 2) {
+            return null;
+        }
+        // the buffers still hold the group and the removed columns of the move
+        return new MoveRecord(gemType, Arrays.copyOf(this.moveCells, groupSize),
+                Arrays.copyOf(this.removedColumns, this.nbRemovedColumns),
+                Arrays.copyOf(this.removedColumnIds, this.nbRemovedColumns));
+    }
+
+    /**
+     * Undoes the last move played on the board, in time proportional to the move: the removed columns are
+     * put back by shifting the following ones to the right, then the columns of the group are rebuilt
+     * from their fallen gems and the removed cells, and the groups around them are updated.
+     *
+     * @param record changes made by the last move played, as returned by <code>playRecorded</code>
+     */
+    public void undo(MoveRecord record) {
+        updateGroups();
+        int[] removedCells = record.getCells();
+        int[] removed = record.getRemovedColumns();
+        int[] removedIds = record.getRemovedColumnIds();
+        int nbRemoved = removed.length;
+        byte gemType = record.getGemType();
+
+        // put the removed columns back, from the right so no block is overwritten before being moved
+        int nbColumnsBefore = this.nbColumnsAvailable + nbRemoved;
+        for (int i = nbRemoved - 1; i >= 0; i--) {
+            int next = i + 1 < nbRemoved ? removed[i + 1] : nbColumnsBefore;
+            shiftColumns(removed[i] - i, removed[i] + 1, next - removed[i] - 1);
+        }
+        for (int i = 0; i < nbRemoved; i++) {
+            int base = removed[i] * this.nbRows;
+            Arrays.fill(this.cells, base, base + this.nbRows, EMPTY);
+            Arrays.fill(this.labels, base, base + this.nbRows, -1);
+            this.columnIds[removed[i]] = removedIds[i];
+            this.columnPositions[removedIds[i]] = removed[i];
+            markDirty(removed[i]);
+        }
+        this.nbColumnsAvailable = nbColumnsBefore;
+
+        // a group is connected, so the columns it covers form a range
+        int stamp = nextStamp();
+        int firstCol = this.nbCols;
+        int lastCol = -1;
+        for (int i = 0; i < removedCells.length; i++) {
+            this.visitStamps[removedCells[i]] = stamp;
+            firstCol = Math.min(firstCol, removedCells[i] / this.nbRows);
+            lastCol = Math.max(lastCol, removedCells[i] / this.nbRows);
+        }
+
+        // the gems that fell are at the bottom of their column, in their order before the move: each column is
+        // rebuilt from the top, so a gem is always read before its cell is written
+        for (int col = firstCol; col <= lastCol; col++) {
+            int base = col * this.nbRows;
+            int nbRemovedInCol = 0;
+            int top = base + this.nbRows;
+            for (int index = base; index < base + this.nbRows; index++) {
+                if (this.visitStamps[index] == stamp) {
+                    nbRemovedInCol++;
+                }
+                if (this.cells[index] != EMPTY && index < top) {
+                    top = index;
+                }
+            }
+            int read = top;
+            int height = base + this.nbRows - top + nbRemovedInCol;
+            for (int index = base + this.nbRows - height; index < base + this.nbRows; index++) {
+                byte restored = this.visitStamps[index] == stamp ? gemType : this.cells[read++];
+                if (this.cells[index] != restored) {
+                    invalidateGroupOf(index);
+                    toggleHash(index, this.cells[index]);
+                    toggleHash(index, restored);
+                    this.cells[index] = restored;
+                }
+            }
+            markDirty(col);
+        }
+        this.gemCounts[gemType] += removedCells.length;
+        this.cptCasesAvailable += removedCells.length;
+
+        this.lastMoveFirstCol = firstCol;
+        this.lastMoveLastCol = nbRemoved > 0 ? this.nbColumnsAvailable - 1 : lastCol;
+        updateGroups();
+    }
+
+    /**
+     * Returns the first column modified by the last move.
+     *
+     * @return index of the first modified column
+     */
+    public int getLastMoveFirstCol() {
+        return this.lastMoveFirstCol;
+    }
+
+    /**
+     * Returns the last column modified by the last move, including the columns shifted to the left.
+     *
+     * @return index of the last modified column
+     */
+    public int getLastMoveLastCol() {
+        return this.lastMoveLastCol;
+    }
+}
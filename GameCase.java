@@ -19,6 +19,8 @@ public class GameCase extends JComponent {
     private boolean highlighted;
     /** group identifier of the tile */
     private int groupID; // groupID>=0, -1: no group
+    /** monitor told of the repaints of the tile, null if they are not measured */
+    private PerformanceMonitor performanceMonitor;
     
     /** Colors corresponding to gem types */
     public static final Color[] GEM_COLORS = {
@@ -103,6 +105,14 @@ public class GameCase extends JComponent {
         repaint(); 
     }
 
+    /**
+     * Returns true if the tile is highlighted.
+     * @return true if the tile is highlighted, false otherwise
+     */
+    public boolean isHighlighted() {
+        return this.highlighted;
+    }
+
     /**
      * Returns the group identifier of the tile.
      * @return the groupID of the tile
@@ -119,6 +129,31 @@ public class GameCase extends JComponent {
         this.groupID = groupID;
     }
 
+    /**
+     * Sets the monitor told of the repaints of the tile.
+     * @param performanceMonitor monitor of the window, null to stop telling it
+     */
+    public void setPerformanceMonitor(PerformanceMonitor performanceMonitor) {
+        this.performanceMonitor = performanceMonitor;
+    }
+
+    /**
+     * Schedules the repaint of a region of the tile, and tells the monitor of the request.
+     * Every other <code>repaint</code> method ends here.
+     * @param tm longest time before the repaint, in milliseconds
+     * @param x horizontal position of the region
+     * @param y vertical position of the region
+     * @param width width of the region
+     * @param height height of the region
+     */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        if (this.performanceMonitor != null) {
+            this.performanceMonitor.repaintRequested();
+        }
+        super.repaint(tm, x, y, width, height);
+    }
+
     /**
      * Redraws the tile with its colors and gem based on its type.
      * @param g the graphics object.
@@ -126,31 +161,10 @@ public class GameCase extends JComponent {
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        
-        int width = getWidth();
-        int height = getHeight();
-        
-        int padding;
-        if (width < height) {
-            padding = width / 8;
-        } else {
-            padding = height / 8;
-        }
-        
-        if (this.highlighted) {
-            g.setColor(new Color(255, 255, 0, 140)); 
-        } else {
-            g.setColor(new Color(240, 240, 240)); 
-        }
-        g.fillRect(0, 0, width, height);
-        
-        if (this.gemType == 0) {
-            drawRuby(g, width, height, padding);
-        } else if (this.gemType == 1) {
-            drawEmerald(g, width, height, padding);
-        } else if (this.gemType == 2) {
-            drawDiamond(g, width, height, padding);
+        if (this.performanceMonitor != null) {
+            this.performanceMonitor.paintStarted();
         }
+        GemPainter.paintTile(g, this.gemType, this.highlighted, getWidth(), getHeight());
     }
     
     /**
@@ -161,42 +175,7 @@ public class GameCase extends JComponent {
      * @param padding inner space between the ruby and the tile border
      */
     public void drawRuby(Graphics g, int width, int height, int padding) {
-        
-        int[] xPoints = new int[8];
-        int[] yPoints = new int[8];
-
-        int left = padding;
-        int right = width - padding;
-        int top = padding;
-        int bottom = height - padding;
-        int cutSize = Math.min(width, height) / 3;
-        
-        xPoints[0] = left + cutSize;
-        yPoints[0] = top;
-        
-        xPoints[1] = right - cutSize;
-        yPoints[1] = top;
-        
-        xPoints[2] = right;
-        yPoints[2] = top + cutSize;
-        
-        xPoints[3] = right;
-        yPoints[3] = bottom - cutSize;
-        
-        xPoints[4] = right - cutSize;
-        yPoints[4] = bottom;
-        
-        xPoints[5] = left + cutSize;
-        yPoints[5] = bottom;
-        
-        xPoints[6] = left;
-        yPoints[6] = bottom - cutSize;
-        
-        xPoints[7] = left;
-        yPoints[7] = top + cutSize;
-        
-        g.setColor(GEM_COLORS[this.gemType]);
-        g.fillPolygon(xPoints, yPoints, 8);
+        GemPainter.drawRuby(g, GEM_COLORS[this.gemType], width, height, padding);
     }
     
     /**
@@ -207,42 +186,7 @@ public class GameCase extends JComponent {
      * @param padding inner space between the emerald and the tile border
      */
     public void drawEmerald(Graphics g, int width, int height, int padding) {
-        
-        int[] xPoints = new int[8];
-        int[] yPoints = new int[8];
-
-        int left = padding;
-        int right = width - padding;
-        int top = padding;
-        int bottom = height - padding;
-        int cutSize = Math.min(width, height) / 6;
-        
-        xPoints[0] = left + cutSize;
-        yPoints[0] = top;
-        
-        xPoints[1] = right - cutSize;
-        yPoints[1] = top;
-        
-        xPoints[2] = right;
-        yPoints[2] = top + cutSize;
-        
-        xPoints[3] = right;
-        yPoints[3] = bottom - cutSize;
-        
-        xPoints[4] = right - cutSize;
-        yPoints[4] = bottom;
-        
-        xPoints[5] = left + cutSize;
-        yPoints[5] = bottom;
-        
-        xPoints[6] = left;
-        yPoints[6] = bottom - cutSize;
-        
-        xPoints[7] = left;
-        yPoints[7] = top + cutSize;
-        
-        g.setColor(GEM_COLORS[this.gemType]);
-        g.fillPolygon(xPoints, yPoints, 8);
+        GemPainter.drawEmerald(g, GEM_COLORS[this.gemType], width, height, padding);
     }
     
     /**
@@ -253,41 +197,7 @@ public class GameCase extends JComponent {
      * @param padding inner space between the diamond and the tile border
      */
     public void drawDiamond(Graphics g, int width, int height, int padding) {
-        
-        int[] xPoints = new int[8];
-        int[] yPoints = new int[8];
-        
-        int centerX = width / 2;
-        int centerY = height / 2;
-        int horizontalRadius = (width - 2 * padding) / 2;
-        int verticalRadius = (height - 2 * padding) / 2;
-        
-        xPoints[0] = centerX;
-        yPoints[0] = padding;
-        
-        xPoints[1] = centerX + horizontalRadius / 2;
-        yPoints[1] = centerY - verticalRadius / 3;
-        
-        xPoints[2] = centerX + horizontalRadius;
-        yPoints[2] = centerY;
-        
-        xPoints[3] = centerX + horizontalRadius / 2;
-        yPoints[3] = centerY + verticalRadius / 3;
-        
-        xPoints[4] = centerX;
-        yPoints[4] = height - padding;
-
-        xPoints[5] = centerX - horizontalRadius / 2;
-        yPoints[5] = centerY + verticalRadius / 3;
-
-        xPoints[6] = centerX - horizontalRadius;
-        yPoints[6] = centerY;
-        
-        xPoints[7] = centerX - horizontalRadius / 2;
-        yPoints[7] = centerY - verticalRadius / 3;
-        
-        g.setColor(GEM_COLORS[this.gemType]);
-        g.fillPolygon(xPoints, yPoints, 8);
+        GemPainter.drawDiamond(g, GEM_COLORS[this.gemType], width, height, padding);
     }
     
     /**
@@ -1,6 +1,9 @@
 import javax.swing.*;
 import java.awt.*;
-import java.io.*;
+import java.awt.event.KeyEvent;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
 
 /**
  * The <code>GameFrame</code> class represents the main window of the SameGame game.
@@ -36,18 +39,30 @@ public class GameFrame extends JFrame {
      * Button allowing export of the current grid.
      */
     private JButton importButton;
+    /**
+     * Button showing the best move found by the hint engine.
+     */
+    private JButton hintButton;
+    /**
+     * Button undoing the last move.
+     */
+    private JButton undoButton;
+    /**
+     * Button playing again the last move undone.
+     */
+    private JButton redoButton;
     /**
      * Current player's score.
      */
     private int score;
     /**
-     * Grid of cases displayed on screen.
+     * Headless board holding the state of the game.
      */
-    private GameCase[][] casesGrid;
+    private GameBoard board;
     /**
-     * Current representation of the grid in characters (R, V, B, E).
+     * Grid of cases displayed on screen.
      */
-    private static char[][] patternMapCurrentGame;
+    private GameCase[][] casesGrid;
     /**
      * Game logic, used for group detection and grid management.
      */
@@ -56,24 +71,51 @@ public class GameFrame extends JFrame {
      * Listener managing clicks on game cells.
      */
     private GameListener gameListener;
+    /**
+     * true if the grid is painted by a single <code>BoardPanel</code> instead of <code>GameCase</code> components.
+     */
+    private boolean singlePanel;
+    /**
+     * Panel painting the grid in single-panel mode, null otherwise.
+     */
+    private BoardPanel boardPanel;
+    /**
+     * Engine searching for the best move in the background.
+     */
+    private HintEngine hintEngine;
+    /**
+     * Writer recording the game in the replay file given by the system property <code>samegame.replays</code>,
+     * null if the game is not recorded or once it is written.
+     */
+    private ReplayWriter replayWriter;
+    /**
+     * Monitor measuring the repaints and the latency of the moves, fed by the listeners and the cells.
+     */
+    private PerformanceMonitor performanceMonitor;
+    /**
+     * Overlay showing the measures of the monitor on top of the grid, created when it is first shown.
+     */
+    private PerformanceOverlay performanceOverlay;
 
     private final int SCORE_PANEL_HEIGHT = 55;
-    private final int CASE_SIZE = 70;
-    private final int NB_COLS = 15;
-    private final int NB_ROWS = 10;
+    /** Largest size of a cell, in pixels */
+    private final int MAX_CASE_SIZE = 70;
+    /** Smallest width of the window, so that the score and the export button stay readable */
+    private final int MIN_FRAME_WIDTH = 700;
+    /** Largest number of cells displayed with one <code>GameCase</code> component each */
+    private final int MAX_CASE_COMPONENTS = 2500;
+    /** Time during which the export button shows the result of an export, in milliseconds */
+    private final int EXPORT_MESSAGE_TIME = 2000;
+    /** Size of a cell, in pixels, chosen so that the grid fits on the screen */
+    private final int CASE_SIZE;
+    private final int NB_COLS;
+    private final int NB_ROWS;
 
     /**
      * Default constructor, creates a random grid
      */
     public GameFrame() {
-        this.casesGrid = new GameCase[this.NB_ROWS][this.NB_COLS];
-        this.gameLogic = new GameLogic(this.casesGrid, this.NB_ROWS, this.NB_COLS);
-        this.gameListener = new GameListener(this.gameLogic,this);
-
-        this.setFrame();
-
-        this.setRandomGameGrid();
-        this.patternMapCurrentGame = getCurrentMap();
+        this(new GameBoard(15, 10, new Random()), false);
     }
 
     /**
@@ -81,14 +123,56 @@ public class GameFrame extends JFrame {
      * @param map predefined grid containing integers representing colors
      */
     public GameFrame(int[][] map) {
-        this.casesGrid = new GameCase[this.NB_ROWS][this.NB_COLS];
-        this.gameLogic = new GameLogic(this.casesGrid, this.NB_ROWS, this.NB_COLS);
+        this(new GameBoard(map), false);
+    }
+
+    /**
+     * Constructor with a given board.
+     * @param board board holding the initial state of the game
+     * @param singlePanel true to paint the grid with a single <code>BoardPanel</code>,
+     *                    false to use one <code>GameCase</code> component per cell
+     */
+    public GameFrame(GameBoard board, boolean singlePanel) {
+        this.board = board;
+        this.NB_COLS = board.getNbCols();
+        this.NB_ROWS = board.getNbRows();
+        this.CASE_SIZE = computeCaseSize();
+        // one component per cell does not scale to large grids
+        if (this.NB_COLS * this.NB_ROWS > this.MAX_CASE_COMPONENTS) {
+            singlePanel = true;
+        }
+        this.singlePanel = singlePanel;
+        if (!singlePanel) {
+            this.casesGrid = new GameCase[this.NB_ROWS][this.NB_COLS];
+        }
+        this.gameLogic = new GameLogic(this.board, this.casesGrid);
+        this.gameLogic.setHistory(new MoveHistory());
+        this.performanceMonitor = new PerformanceMonitor();
         this.gameListener = new GameListener(this.gameLogic,this);
 
         this.setFrame();
 
-        this.setGridFromMap(map);
-        this.patternMapCurrentGame = getCurrentMap();
+        if (singlePanel) {
+            this.setBoardPanel();
+        } else {
+            this.setCasesGrid();
+        }
+        this.hintEngine = new HintEngine(this.board);
+        String replayFile = System.getProperty("samegame.replays");
+        if (replayFile != null) {
+            this.replayWriter = new ReplayWriter(Paths.get(replayFile), this.board);
+        }
+    }
+
+    /**
+     * Computes the size of a cell so that the whole grid fits in the usable area of the screen.
+     * @return size of a cell in pixels, between 1 and MAX_CASE_SIZE
+     */
+    private int computeCaseSize() {
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        int caseWidth = screen.width / this.NB_COLS;
+        int caseHeight = (screen.height - this.SCORE_PANEL_HEIGHT) / this.NB_ROWS;
+        return Math.max(1, Math.min(this.MAX_CASE_SIZE, Math.min(caseWidth, caseHeight)));
     }
 
     /**
@@ -97,7 +181,8 @@ public class GameFrame extends JFrame {
     public void setFrame() {
         this.setTitle("SameGame");
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        this.setSize(this.NB_COLS * this.CASE_SIZE, this.NB_ROWS * this.CASE_SIZE + this.SCORE_PANEL_HEIGHT);
+        int frameWidth = Math.max(this.MIN_FRAME_WIDTH, this.NB_COLS * this.CASE_SIZE);
+        this.setSize(frameWidth, this.NB_ROWS * this.CASE_SIZE + this.SCORE_PANEL_HEIGHT);
 
         this.setLocationRelativeTo(null);
         
@@ -106,7 +191,7 @@ public class GameFrame extends JFrame {
         
         // top panel
         this.topPanel = new JPanel();
-        this.topPanel.setPreferredSize(new Dimension(this.NB_COLS * this.CASE_SIZE, this.SCORE_PANEL_HEIGHT));
+        this.topPanel.setPreferredSize(new Dimension(frameWidth, this.SCORE_PANEL_HEIGHT));
         this.topPanel.setLayout(new BorderLayout());
         
         // score 
@@ -118,18 +203,37 @@ public class GameFrame extends JFrame {
         this.topPanel.add(this.scorePanel, BorderLayout.CENTER);
 
         this.buttonPanel = new JPanel(new GridBagLayout());
-        this.buttonPanel.setPreferredSize(new Dimension((int)(this.NB_COLS * this.CASE_SIZE * 0.3), this.SCORE_PANEL_HEIGHT)); // 30% of topPanel
+        this.buttonPanel.setPreferredSize(new Dimension((int)(frameWidth * 0.5), this.SCORE_PANEL_HEIGHT)); // 50% of topPanel
         this.buttonPanel.setBackground(new Color(210, 210, 210));
         this.importButton = new JButton("export current map");
         buttonPanel.add(this.importButton);
+        this.hintButton = new JButton("hint");
+        buttonPanel.add(this.hintButton);
+        this.undoButton = new JButton("undo");
+        buttonPanel.add(this.undoButton);
+        this.redoButton = new JButton("redo");
+        buttonPanel.add(this.redoButton);
         this.topPanel.add(buttonPanel, BorderLayout.EAST);
 
         
         ExportButtonListener exportListener = new ExportButtonListener(this);
         this.importButton.addActionListener(exportListener);
+        this.hintButton.addActionListener(new HintButtonListener(this));
+        HistoryButtonListener undoListener = new HistoryButtonListener(this, false);
+        HistoryButtonListener redoListener = new HistoryButtonListener(this, true);
+        this.undoButton.addActionListener(undoListener);
+        this.redoButton.addActionListener(redoListener);
+        // Ctrl+Z and Ctrl+Y work wherever the focus is in the window
+        this.getRootPane().registerKeyboardAction(undoListener,
+                KeyStroke.getKeyStroke(KeyEvent.VK_Z, KeyEvent.CTRL_DOWN_MASK), JComponent.WHEN_IN_FOCUSED_WINDOW);
+        this.getRootPane().registerKeyboardAction(redoListener,
+                KeyStroke.getKeyStroke(KeyEvent.VK_Y, KeyEvent.CTRL_DOWN_MASK), JComponent.WHEN_IN_FOCUSED_WINDOW);
+        // F3 shows or hides the performance overlay
+        this.getRootPane().registerKeyboardAction(new OverlayKeyListener(this),
+                KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), JComponent.WHEN_IN_FOCUSED_WINDOW);
         
         // game panel
-        this.gamePanel = new JPanel(new GridLayout(this.NB_ROWS, this.NB_COLS));
+        this.gamePanel = new JPanel();
         
 
         contentPanel.add(this.topPanel, BorderLayout.NORTH);
@@ -138,13 +242,15 @@ public class GameFrame extends JFrame {
     }
 
     /**
-     * Generates a random game grid.
+     * Fills the grid with one <code>GameCase</code> component per cell of the board.
      */
-    public void setRandomGameGrid() {
+    public void setCasesGrid() {
+        this.gamePanel.setLayout(new GridLayout(this.NB_ROWS, this.NB_COLS));
         for (int row = 0; row < this.NB_ROWS; row++) {
             for (int col = 0; col < this.NB_COLS; col++) {
-                GameCase newGameCase = new GameCase(col, row);
+                GameCase newGameCase = new GameCase(col, row, this.board.getGemType(col, row));
                 newGameCase.addMouseListener(this.gameListener);
+                newGameCase.setPerformanceMonitor(this.performanceMonitor);
                 
                 this.casesGrid[row][col] = newGameCase;
                 this.gamePanel.add(newGameCase);
@@ -154,20 +260,24 @@ public class GameFrame extends JFrame {
     }
 
     /**
-     * Fills the grid with a given map.
-     * @param map Map defining colors for each cell.
+     * Fills the grid with a single <code>BoardPanel</code> painting the whole board.
+     * The panel is placed in a scroll pane, used only when the grid does not fit in the window.
      */
-    public void setGridFromMap(int[][] map) {
-        for (int row = 0; row < this.NB_ROWS; row++) {
-            for (int col = 0; col < this.NB_COLS; col++) {
-                GameCase newGameCase = new GameCase(col, row, map[row][col]);
-                newGameCase.addMouseListener(this.gameListener);
-                
-                this.casesGrid[row][col] = newGameCase;
-                this.gamePanel.add(newGameCase);
-            }
-        }
+    public void setBoardPanel() {
         this.gameLogic.updateGroupCaseByID();
+
+        BoardPanel boardPanel = new BoardPanel(this.board);
+        this.boardPanel = boardPanel;
+        boardPanel.setPerformanceMonitor(this.performanceMonitor);
+        boardPanel.setPreferredSize(new Dimension(this.NB_COLS * this.CASE_SIZE, this.NB_ROWS * this.CASE_SIZE));
+        BoardListener boardListener = new BoardListener(this.gameLogic, this, boardPanel);
+        boardPanel.addMouseListener(boardListener);
+        boardPanel.addMouseMotionListener(boardListener);
+
+        this.gamePanel.setLayout(new BorderLayout());
+        JScrollPane scrollPane = new JScrollPane(boardPanel);
+        scrollPane.setBorder(null);
+        this.gamePanel.add(scrollPane, BorderLayout.CENTER);
     }
 
     /**
@@ -175,14 +285,102 @@ public class GameFrame extends JFrame {
      * @param nbrCase number of cells deleted in a single move
      */
     public void updateScore(int nbrCase) {
-        int points;
-        if (nbrCase > 2) {
-            points = (nbrCase - 2) * (nbrCase - 2);
+        this.score += GameBoard.getMoveScore(nbrCase);
+        this.scoreLabel.setText("Score: " + this.score);
+    }
+
+    /**
+     * Tells the hint engine that a move was played, so it searches the new position.
+     * @param move index of a cell of the removed group, on the board before the move
+     */
+    public void movePlayed(int move) {
+        this.hintEngine.movePlayed(move);
+        if (this.replayWriter != null) {
+            this.replayWriter.movePlayed(move);
+        }
+    }
+
+    /**
+     * Highlights the group of the best move found so far by the hint engine.
+     * The engine answers at once, so the window never waits for the search.
+     */
+    public void showHint() {
+        int move = this.hintEngine.getHint();
+        if (move == -1) {
+            return;
+        }
+        if (this.singlePanel) {
+            this.boardPanel.setHighlightedGroup(this.board.getGroupID(move));
         } else {
-            points = 0;
+            GameCase hintCase = this.casesGrid[this.board.getRow(move)][this.board.getColumn(move)];
+            this.gameLogic.setHighlightCaseGroup(hintCase, true);
         }
-        this.score += points;
+    }
+
+    /**
+     * Undoes the last move: the board and the score are restored, and only the modified columns are repainted.
+     */
+    public void undoMove() {
+        MoveRecord record = this.gameLogic.undo();
+        if (record == null) {
+            return;
+        }
+        this.score -= record.getScore();
         this.scoreLabel.setText("Score: " + this.score);
+        repaintLastMove();
+        this.hintEngine.positionChanged();
+        if (this.replayWriter != null) {
+            this.replayWriter.moveUndone();
+        }
+    }
+
+    /**
+     * Plays again the last move undone.
+     */
+    public void redoMove() {
+        MoveRecord record = this.gameLogic.redo();
+        if (record == null) {
+            return;
+        }
+        updateScore(record.getNbCells());
+        repaintLastMove();
+        movePlayed(record.getMove());
+        if (this.gameLogic.getGameEnd()) {
+            closeGame();
+        }
+    }
+
+    /**
+     * Repaints the columns modified by the last move played or undone, in single-panel mode.
+     * The <code>GameCase</code> components repaint themselves when their gem changes.
+     */
+    private void repaintLastMove() {
+        if (this.singlePanel) {
+            this.boardPanel.clearHighlightedGroup();
+            this.boardPanel.repaintColumns(this.board.getLastMoveFirstCol(), this.board.getLastMoveLastCol());
+        }
+    }
+
+    /**
+     * Returns the monitor measuring the repaints and the latency of the moves.
+     * @return performance monitor of the window
+     */
+    public PerformanceMonitor getPerformanceMonitor() {
+        return this.performanceMonitor;
+    }
+
+    /**
+     * Shows the performance overlay in the top left corner of the grid, or hides it.
+     * The measures start when the overlay is shown.
+     */
+    public void togglePerformanceOverlay() {
+        if (this.performanceOverlay == null) {
+            this.performanceOverlay = new PerformanceOverlay(this.performanceMonitor);
+            this.getLayeredPane().add(this.performanceOverlay, JLayeredPane.PALETTE_LAYER);
+        }
+        Point corner = SwingUtilities.convertPoint(this.gamePanel, 0, 0, this.getLayeredPane());
+        this.performanceOverlay.setLocation(corner);
+        this.performanceOverlay.setShown(!this.performanceOverlay.isVisible());
     }
 
     /**
@@ -203,19 +401,14 @@ public class GameFrame extends JFrame {
         
         for (int row = 0; row < this.NB_ROWS; row++) {
             for (int col = 0; col < this.NB_COLS; col++) {
-                GameCase currentCase = this.gameLogic.getCaseAt(col, row);
-                if (currentCase != null) {
-                    int gemType = currentCase.getGemType();
-                    
-                    if (gemType == 0) {
-                        map[row][col] = 'R';
-                    } else if (gemType == 1) {
-                        map[row][col] = 'V';
-                    } else if (gemType == 2) {
-                        map[row][col] = 'B';
-                    } else {
-                        map[row][col] = 'E';
-                    }
+                int gemType = this.board.getGemType(col, row);
+
+                if (gemType == 0) {
+                    map[row][col] = 'R';
+                } else if (gemType == 1) {
+                    map[row][col] = 'V';
+                } else if (gemType == 2) {
+                    map[row][col] = 'B';
                 } else {
                     map[row][col] = 'E';
                 }
@@ -226,46 +419,38 @@ public class GameFrame extends JFrame {
     }
 
     /**
-     * Returns the last saved map.
-     * @return patternMapCurrentGame
-     */
-    public char[][] getPatternMapCurrentGame() {
-        return this.patternMapCurrentGame;
-    }
-    
-    /**
-     * Exports the current map to a given text file.
+     * Exports the current map to a given file in the background, in the text format, or in the binary
+     * format if the name ends with <code>.sgb</code>. The cells are copied at once, so the moves played
+     * during the export do not change the file. The export button shows the progress and the result.
      * @param exportFile path of the file to which to export the grid
      */
     public void writePattern(String exportFile) {
-        char[][] patternMapCurrentGame = getPatternMapCurrentGame();
-        
-        try {
-            FileWriter writer = new FileWriter(exportFile);
-
-            try {
-                for (int i = 0; i < patternMapCurrentGame.length; i++) {
-                    for (int j = 0; j < patternMapCurrentGame[i].length; j++) {
-                        writer.write(patternMapCurrentGame[i][j]);
-                    }
-                writer.write('\n');
-                }
-
-                try {
-                    writer.close();
-                    PopUpFrame ExportFrame = new PopUpFrame("Export file", "Pattern export at ~/exportPattern.txt");
-                    ExportFrame.setVisible(true);
-                } catch (IOException ex) {
-                    System.out.println("err close export file");
-                }
-                
-            } catch (IOException ex) {
-                System.out.println("err write pattern file");
-            }
+        this.importButton.setEnabled(false);
+        this.importButton.setText("exporting...");
+        BoardExporter.export(this.board.getNbCols(), this.board.getNbRows(), this.board.copyCells(), Paths.get(exportFile))
+                .whenComplete((file, error) -> SwingUtilities.invokeLater(() -> exportFinished(file, error)));
+    }
 
-        } catch (IOException ex) {
-            System.out.println("err open pattern file");
+    /**
+     * Shows the result of an export on the export button, then restores the button after EXPORT_MESSAGE_TIME.
+     * Runs on the Swing event thread.
+     * @param file file written, null if the export failed
+     * @param error error of the export, null if it succeeded
+     */
+    private void exportFinished(Path file, Throwable error) {
+        if (error == null) {
+            this.importButton.setText("map exported");
+            this.importButton.setToolTipText(file.toAbsolutePath().toString());
+        } else {
+            System.out.println("err export pattern file: " + error.getCause());
+            this.importButton.setText("export failed");
         }
+        Timer restore = new Timer(this.EXPORT_MESSAGE_TIME, event -> {
+            this.importButton.setText("export current map");
+            this.importButton.setEnabled(true);
+        });
+        restore.setRepeats(false);
+        restore.start();
     }
 
     /**
@@ -280,6 +465,11 @@ public class GameFrame extends JFrame {
      * Closes the game window.
      */
     public void closeGameFrame() {
+        this.hintEngine.shutdown();
+        if (this.performanceOverlay != null) {
+            this.performanceOverlay.dispose();
+        }
+        finishReplay();
         this.dispose();
     }
 
@@ -287,9 +477,22 @@ public class GameFrame extends JFrame {
      * Displays a pop-up window at the end of the game with the final score and the number of remaining cells.
      */
     public void closeGame() {
+        GameMetrics.gameCompleted();
+        finishReplay();
         String message = "score: " + getScore() + ", remaining case : " + this.gameLogic.getCptCasesAvailable();
         PopUpFrame end = new PopUpFrame("Game over", message, this);
         end.setVisible(true);
     }
 
+    /**
+     * Writes the game to the replay file, with the current score, if it is recorded.
+     * The writing runs in the background; a game left before its end is written with the score reached.
+     */
+    private void finishReplay() {
+        if (this.replayWriter != null) {
+            this.replayWriter.finish(this.score);
+            this.replayWriter = null;
+        }
+    }
+
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import java.awt.Point;
 /**
  * The <code>GameListener</code> class is used to control mouse events for SameGame game cells.
  * Handles mouse clicks and hover events to trigger group deletion actions and group highlighting.
+ * Clicks are reported to the performance monitor of the window, which measures them until their repaint.
  * @version 1.1
  * @author Loic Sainton and Mathis Pauron
  */
@@ -38,22 +39,17 @@ public class GameListener implements MouseListener {
     @Override
     public void mouseClicked(MouseEvent evenement) {
         GameCase Case = (GameCase) evenement.getSource();
+        PerformanceMonitor monitor = this.gameFrame.getPerformanceMonitor();
+        monitor.clickStarted();
+        int groupSize = 0;
 
         if (Case.getGemType() != 3) {
-            GameCase[] groupCases = this.gameLogic.getNeighborsByGroupID(Case.getGroupID());
+            int move = this.gameLogic.getBoard().getIndex(Case.getPositionX(), Case.getPositionY());
+            groupSize = this.gameLogic.playCase(Case);
 
-            if (groupCases.length > 1) {
-                for (GameCase tcase : groupCases) {
-                    tcase.setGemType(3);
-                }
-                this.gameFrame.updateScore(groupCases.length);
-                this.gameLogic.updateCasesAvailable(groupCases.length);
-
-                int[] affectedColumns = this.gameLogic.getAffectedColumns(groupCases);
-                this.gameLogic.updateFallCase(affectedColumns);
-                this.gameLogic.updateEmptyCol(affectedColumns);
-
-                this.gameLogic.updateGroupCaseByID();
+            if (groupSize > 1) {
+                this.gameFrame.updateScore(groupSize);
+                this.gameFrame.movePlayed(move);
                 this.gameLogic.setHighlightCaseGroup(Case, true);
 
                 if (this.gameLogic.getGameEnd()) {
@@ -61,6 +57,7 @@ public class GameListener implements MouseListener {
                 }
             }
         }
+        monitor.clickFinished(groupSize > 1);
     }       
 
     /**
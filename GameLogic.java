@@ -1,12 +1,11 @@
-import javax.swing.*;
-import java.awt.*;
-import java.io.*;
 import java.util.Arrays;
 
 /**
  * The <code>GameLogic</code> class contains the main logic of the SameGame.
  * It manages interactions with the grid, group detection,
  * column updates, and game end verification.
+ * The rules themselves are applied by a headless {@link GameBoard}; the
+ * <code>GameCase</code> grid, when present, only renders its state.
  * @version 1.1
  * @author Loic Sainton and Mathis Pauron
  */
@@ -18,32 +17,73 @@ public class GameLogic {
     /** Number of rows in the grid */
     private final int NB_ROWS;
     
-    /** Number of non-empty columns remaining */
-    private int NbColumnsAvailable;
+    /** Headless board holding the state of the game */
+    private GameBoard board;
     
-    /** Number of remaining cells on the grid */
-    private int cptCasesAvailable;
-    
-    /** Grid containing GameCase objects */
+    /** Grid containing GameCase objects, null when the game runs without a window */
     private GameCase[][] casesGrid;
     
-    /** Array containing groups of adjacent cells of the same type */
-    private GameCase[][] neighborGroups;
+    /** Scratch buffer receiving the cell indices of a group */
+    private int[] groupBuffer;
+
+    /** First column whose cells were shifted since their group identifiers were refreshed */
+    private int shiftedFirstCol;
+
+    /** Last column whose cells were shifted since their group identifiers were refreshed */
+    private int shiftedLastCol;
+
+    /** History of the moves played, null if the moves are not recorded */
+    private MoveHistory history;
+
+    /** Meter recording the moves played in the metrics of the games */
+    private MoveMeter moveMeter;
+
+    /** Offsets (x, y) of the direct neighbors: up, down, left, right */
+    private static final int[][] DIRECTIONS = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}};
 
     /**
      * GameLogic constructor
      * 
-     * @param casesGrid initial grid
-     * @param NB_ROWS number of rows
-     * @param NB_COLS number of columns
+     * @param board headless board holding the state of the game
+     * @param casesGrid grid of cells rendering the board, or null
      */
-    public GameLogic(GameCase[][] casesGrid, int NB_ROWS, int NB_COLS) {
+    public GameLogic(GameBoard board, GameCase[][] casesGrid) {
+        this.board = board;
         this.casesGrid = casesGrid;
-        this.NB_ROWS = NB_ROWS;
-        this.NB_COLS = NB_COLS;
-        this.NbColumnsAvailable = NB_COLS;
-        this.cptCasesAvailable = NB_ROWS * NB_COLS;
-        this.neighborGroups = new GameCase[NB_ROWS * NB_COLS][];
+        this.NB_ROWS = board.getNbRows();
+        this.NB_COLS = board.getNbCols();
+        this.groupBuffer = new int[NB_ROWS * NB_COLS];
+        this.shiftedFirstCol = NB_COLS;
+        this.shiftedLastCol = -1;
+        this.moveMeter = new MoveMeter();
+    }
+
+    /**
+     * Sets the history recording the moves played, so they can be undone.
+     * Recording a move allocates a record proportional to the move.
+     *
+     * @param history history of the moves, null to stop recording
+     */
+    public void setHistory(MoveHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Returns the history recording the moves played.
+     *
+     * @return history of the moves, null if the moves are not recorded
+     */
+    public MoveHistory getHistory() {
+        return this.history;
+    }
+
+    /**
+     * Returns the headless board holding the state of the game.
+     *
+     * @return the board
+     */
+    public GameBoard getBoard() {
+        return this.board;
     }
 
     /**
@@ -57,44 +97,13 @@ public class GameLogic {
             return new GameCase[0];
         }
         
-        int gemType = startCase.getGemType();
-
-        if (gemType == 3) {
-            return new GameCase[0];
-        }
-        
-        GameCase[] connectedCases = new GameCase[NB_ROWS * NB_COLS]; // Maximum number of connected cells possible
-        connectedCases[0] = startCase;
-        int connectedcpt = 1;
- 
-        int currentIndex = 0;
-        
-        while (currentIndex < connectedcpt) {
-            GameCase currentCase = connectedCases[currentIndex];
-            
-            GameCase[] directNeighbors = findDirectNeighbors(currentCase, gemType);
-            
-            for (int i = 0; i < directNeighbors.length; i++) {
-                GameCase tempCase = directNeighbors[i];
-                boolean inConnectedCases = false;
-                
-                for (int j = 0; j < connectedcpt; j++) {
-                    if (connectedCases[j] == tempCase) {
-                        inConnectedCases = true;
-                    }
-                }
-                
-                if (!inConnectedCases) {
-                    connectedCases[connectedcpt] = tempCase;
-                    connectedcpt += 1;
-                }
-            }
-            currentIndex++;
-        }
+        int index = this.board.getIndex(startCase.getPositionX(), startCase.getPositionY());
+        int connectedcpt = this.board.getGroup(index, this.groupBuffer);
         
         GameCase[] finalConnectedCases = new GameCase[connectedcpt];
         for (int i = 0; i < connectedcpt; i++) {
-            finalConnectedCases[i] = connectedCases[i];
+            int cell = this.groupBuffer[i];
+            finalConnectedCases[i] = getCaseAt(this.board.getColumn(cell), this.board.getRow(cell));
         }
         return finalConnectedCases;
     }
@@ -113,15 +122,13 @@ public class GameLogic {
         int x = caseJeu.getPositionX();
         int y = caseJeu.getPositionY();
 
-        int[][] directions = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}};
-        
-        for (int[] direction : directions) {
+        for (int[] direction : DIRECTIONS) {
             int newX = x + direction[0];
             int newY = y + direction[1];
             
             if (newX >= 0 && newX < this.NB_COLS && newY >= 0 && newY < this.NB_ROWS) {
                 GameCase tempCase = getCaseAt(newX, newY);
-                if (tempCase != null && tempCase.getGemType() == Type) {
+                if (tempCase != null && this.board.getGemType(newX, newY) == Type) {
                     tab[cpt] = tempCase;
                     cpt += 1;
                 }
@@ -143,7 +150,7 @@ public class GameLogic {
      * @return The cell or null if outside the grid.
      */
     public GameCase getCaseAt(int x, int y) {
-        if (x >= 0 && x < this.NB_COLS && y >= 0 && y < this.NB_ROWS) {
+        if (this.casesGrid != null && x >= 0 && x < this.NB_COLS && y >= 0 && y < this.NB_ROWS) {
             return casesGrid[y][x];
         }
         return null;
@@ -156,11 +163,108 @@ public class GameLogic {
      * @param target Target cell.
      */
     public void moveCase(GameCase source, GameCase target) {
-        int sourceGemType = source.getGemType();
-        int targetGemType = target.getGemType();
+        int sourceIndex = this.board.getIndex(source.getPositionX(), source.getPositionY());
+        int targetIndex = this.board.getIndex(target.getPositionX(), target.getPositionY());
+        this.board.swapCells(sourceIndex, targetIndex);
+        
+        source.setGemType(this.board.getGemTypeAt(sourceIndex));
+        target.setGemType(this.board.getGemTypeAt(targetIndex));
+    }
+
+    /**
+     * Plays the group containing a cell: removes it, makes the cells fall, removes the empty
+     * columns and updates the groups, then refreshes only the cells that changed.
+     * Nothing is allocated, whatever the size of the grid, unless the moves are recorded.
+     *
+     * @param caseJeu Cell of the group to remove.
+     * @return Number of cells removed, 0 if the group has less than two cells.
+     */
+    public int playCase(GameCase caseJeu) {
+        return play(caseJeu.getPositionX(), caseJeu.getPositionY());
+    }
+
+    /**
+     * Plays the group containing the cell at the given coordinates.
+     *
+     * @param x Column.
+     * @param y Row.
+     * @return Number of cells removed, 0 if the group has less than two cells.
+     * @see #playCase(GameCase)
+     */
+    public int play(int x, int y) {
+        this.moveMeter.start();
+        int groupSize;
+        if (this.history != null) {
+            MoveRecord record = this.board.playRecorded(this.board.getIndex(x, y));
+            groupSize = record == null ? 0 : record.getNbCells();
+            if (record != null) {
+                this.history.add(record);
+            }
+        } else {
+            groupSize = this.board.play(this.board.getIndex(x, y));
+        }
+        
+        if (groupSize > 1) {
+            refreshLastMove();
+        }
+        this.moveMeter.stop(groupSize);
+        return groupSize;
+    }
+
+    /**
+     * Undoes the last move recorded in the history, then refreshes only the cells that changed.
+     *
+     * @return the move undone, null if there is none
+     */
+    public MoveRecord undo() {
+        MoveRecord record = this.history == null ? null : this.history.undo(this.board);
+        if (record != null) {
+            refreshLastMove();
+        }
+        return record;
+    }
+
+    /**
+     * Plays again the last move undone, then refreshes only the cells that changed.
+     *
+     * @return the move redone, null if there is none
+     */
+    public MoveRecord redo() {
+        MoveRecord record = this.history == null ? null : this.history.redo(this.board);
+        if (record != null) {
+            refreshLastMove();
+        }
+        return record;
+    }
+
+    /**
+     * Refreshes the cells of the columns modified by the last move played or undone on the board.
+     */
+    private void refreshLastMove() {
+        MovePhaseEvent repaint = MovePhaseEvent.start(MovePhaseEvent.REPAINT, NB_COLS, NB_ROWS);
+        refreshColumns(this.board.getLastMoveFirstCol(), this.board.getLastMoveLastCol());
+        markShifted(this.board.getLastMoveFirstCol(), this.board.getLastMoveLastCol());
+        refreshGroupIDs();
+        MovePhaseEvent.stop(repaint);
+        MovePhaseEvent.record(repaint, 0, this.board.getLastMoveLastCol() - this.board.getLastMoveFirstCol() + 1);
+    }
+
+    /**
+     * Removes a set of cells from the grid and updates the number of remaining cells.
+     *
+     * @param Cases Cells to remove.
+     */
+    public void removeCases(GameCase[] Cases) {
+        int cpt = 0;
+        for (GameCase caseJeu : Cases) {
+            this.groupBuffer[cpt] = this.board.getIndex(caseJeu.getPositionX(), caseJeu.getPositionY());
+            cpt++;
+        }
+        this.board.removeCells(this.groupBuffer, cpt);
         
-        source.setGemType(targetGemType);
-        target.setGemType(sourceGemType);
+        for (GameCase caseJeu : Cases) {
+            caseJeu.setGemType(GameBoard.EMPTY);
+        }
     }
 
     /**
@@ -204,26 +308,17 @@ public class GameLogic {
      * @param affectedColumns Columns where cells have been removed.
      */
     public void updateFallCase(int[] affectedColumns) {
+        if (affectedColumns.length == 0) {
+            return;
+        }
+        int firstCol = affectedColumns[0];
+        int lastCol = affectedColumns[0];
         for (int col : affectedColumns) {
-            for (int y = NB_ROWS - 1; y >= 0; y--) {    
-                GameCase bottomCase = getCaseAt(col, y);
-
-                if (bottomCase.getGemType() == 3) {
-                    int y2 = y;
-                    boolean temp = false;
-                    
-                    while (y2 >= 0 && !temp) {
-                        GameCase topCase = getCaseAt(col, y2);
-
-                        if (topCase.getGemType() != 3) {
-                            moveCase(bottomCase, topCase);
-                            temp = true;
-                        }
-                        y2 -= 1;
-                    }
-                }
-            }
+            this.board.updateFall(col);
+            firstCol = Math.min(firstCol, col);
+            lastCol = Math.max(lastCol, col);
         }
+        refreshColumns(firstCol, lastCol);
     }
 
     /**
@@ -233,13 +328,7 @@ public class GameLogic {
      * @return true if empty, false otherwise.
      */
     public boolean isEmptyColumns(int nbColumn) {
-        boolean isEmptyColumn = true;
-        for (int i = 0; i < NB_ROWS; i++) {
-            if (getCaseAt(nbColumn, i).getGemType() != 3) {
-                return false;
-            }
-        }
-        return true;
+        return this.board.isEmptyColumn(nbColumn);
     }
 
     /**
@@ -249,11 +338,9 @@ public class GameLogic {
      * @param col2 Second column.
      */
     public void inverseColumn(int col1, int col2) {
-        for (int row = 0; row < NB_ROWS; row++) {
-            GameCase case1 = getCaseAt(col1, row);
-            GameCase case2 = getCaseAt(col2, row);
-            moveCase(case1, case2);
-        }
+        this.board.swapColumns(col1, col2);
+        refreshColumns(col1, col1);
+        refreshColumns(col2, col2);
     }
 
     /**
@@ -264,66 +351,83 @@ public class GameLogic {
     public void updateEmptyCol(int[] affectedColumns) {
         Arrays.sort(affectedColumns);
         
-        int index = 0;
-        
-        for (int column : affectedColumns) {
-            int reelColumn = column - index;
-            
-            if (reelColumn < NbColumnsAvailable && isEmptyColumns(reelColumn)) {
-                for (int j = reelColumn; j < NbColumnsAvailable - 1; j++) {
-                    inverseColumn(j, j + 1);
-                }
+        int firstShifted = this.board.removeEmptyColumns(affectedColumns, affectedColumns.length);
+        if (firstShifted != -1) {
+            refreshColumns(firstShifted, NB_COLS - 1);
+            markShifted(firstShifted, NB_COLS - 1);
+        }
+    }
 
-                NbColumnsAvailable -= 1;
-                index += 1;
+    /**
+     * Copies the state of the board into the cells of a range of columns.
+     * Only the cells whose gem changed (or that are highlighted) are updated and repainted.
+     *
+     * @param firstCol First column to refresh.
+     * @param lastCol  Last column to refresh.
+     */
+    private void refreshColumns(int firstCol, int lastCol) {
+        if (this.casesGrid == null) {
+            return;
+        }
+        for (int col = firstCol; col <= lastCol; col++) {
+            for (int row = 0; row < NB_ROWS; row++) {
+                GameCase caseJeu = this.casesGrid[row][col];
+                int gemType = this.board.getGemType(col, row);
+                if (caseJeu.getGemType() != gemType || caseJeu.isHighlighted()) {
+                    caseJeu.setGemType(gemType);
+                }
             }
         }
     }
 
     /**
      * Reassigns group identifiers to each connected cell.
+     * The board only recomputes the groups around the columns modified since the last call,
+     * then the identifiers of the relabeled columns are copied into the cells.
      */
     public void updateGroupCaseByID() {
-        GameCase[][] tempCasesNotVisited = new GameCase[this.NB_ROWS][this.NB_COLS];
-        for (int i = 0; i < this.NB_ROWS; i++) {
-            for (int j = 0; j < this.NB_COLS; j++) {
-                tempCasesNotVisited[i][j] = this.casesGrid[i][j];
-            }
-        }
-        
-        GameCase[][] tempNeighborGroups = new GameCase[NB_ROWS * NB_COLS][];
-        int CptGroupID = 0;
-        
-        for (int i = 0; i < this.NB_ROWS; i++) {
-            for (int j = 0; j < this.NB_COLS; j++) {
-                GameCase currentCase = tempCasesNotVisited[i][j];
-                
-                if (currentCase != null && currentCase.getGemType() != 3) {
-                    GameCase[] group = getNeighbors(currentCase);
-                    
-                    tempNeighborGroups[CptGroupID] = group;
-                    
-                    for (GameCase caseTemp : group) {
-                        caseTemp.setGroupID(CptGroupID);
-                        int x = caseTemp.getPositionX();
-                        int y = caseTemp.getPositionY();
-                        tempCasesNotVisited[y][x] = null;
-                    }
-                    
-                    CptGroupID++;
-                } else if (currentCase != null && currentCase.getGemType() == 3) {
-                    currentCase.setGroupID(-1);
-                    tempCasesNotVisited[i][j] = null;
+        this.board.updateGroups();
+        refreshGroupIDs();
+    }
+
+    /**
+     * Records columns whose cells moved, so their group identifiers are refreshed even if
+     * the board did not relabel them.
+     *
+     * @param firstCol First shifted column.
+     * @param lastCol  Last shifted column.
+     */
+    private void markShifted(int firstCol, int lastCol) {
+        this.shiftedFirstCol = Math.min(this.shiftedFirstCol, firstCol);
+        this.shiftedLastCol = Math.max(this.shiftedLastCol, lastCol);
+    }
+
+    /**
+     * Copies the group identifiers of the columns relabeled by the board, or shifted, into the cells.
+     */
+    private void refreshGroupIDs() {
+        int firstCol = Math.min(this.board.getRelabeledFirstCol(), this.shiftedFirstCol);
+        int lastCol = Math.max(this.board.getRelabeledLastCol(), this.shiftedLastCol);
+        this.shiftedFirstCol = NB_COLS;
+        this.shiftedLastCol = -1;
+
+        if (this.casesGrid != null) {
+            for (int i = 0; i < this.NB_ROWS; i++) {
+                for (int j = firstCol; j <= lastCol; j++) {
+                    this.casesGrid[i][j].setGroupID(this.board.getGroupID(this.board.getIndex(j, i)));
                 }
             }
         }
+    }
 
-        GameCase[][] finalNeighborGroups = new GameCase[CptGroupID][];
-        for (int i = 0; i < CptGroupID; i++) {
-            finalNeighborGroups[i] = tempNeighborGroups[i];
-        }
-        
-        this.neighborGroups = finalNeighborGroups;
+    /**
+     * Returns the group identifier of a cell.
+     *
+     * @param caseJeu The cell.
+     * @return Group identifier, -1 if the cell is empty.
+     */
+    public int getGroupID(GameCase caseJeu) {
+        return this.board.getGroupID(this.board.getIndex(caseJeu.getPositionX(), caseJeu.getPositionY()));
     }
 
     /**
@@ -333,7 +437,14 @@ public class GameLogic {
      * @return Array of cells belonging to the group.
      */
     public GameCase[] getNeighborsByGroupID(int groupID) {
-        return this.neighborGroups[groupID];
+        int groupSize = this.board.getGroupCells(groupID, this.groupBuffer);
+        
+        GameCase[] groupCases = new GameCase[groupSize];
+        for (int i = 0; i < groupSize; i++) {
+            int cell = this.groupBuffer[i];
+            groupCases[i] = getCaseAt(this.board.getColumn(cell), this.board.getRow(cell));
+        }
+        return groupCases;
     }
 
     /**
@@ -342,21 +453,11 @@ public class GameLogic {
      * @return true if the game is over, false otherwise.
      */
     public boolean getGameEnd() {
-        for (GameCase[] group : this.neighborGroups) {
-            if (group.length > 1) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Updates the number of remaining cells after removal.
-     *
-     * @param CasesDeleted Number of removed cells.
-     */
-    public void updateCasesAvailable(int CasesDeleted) {
-        this.cptCasesAvailable -= CasesDeleted;
+        MovePhaseEvent endCheck = MovePhaseEvent.start(MovePhaseEvent.END_CHECK, NB_COLS, NB_ROWS);
+        boolean gameEnd = this.board.getNbPlayableGroups() == 0;
+        MovePhaseEvent.stop(endCheck);
+        MovePhaseEvent.record(endCheck, 0, this.board.getNbColumnsAvailable());
+        return gameEnd;
     }
 
     /**
@@ -365,7 +466,7 @@ public class GameLogic {
      * @return Number of remaining cells.
      */
     public int getCptCasesAvailable() {
-        return this.cptCasesAvailable;
+        return this.board.getCptCasesAvailable();
     }
 
     /**
@@ -375,10 +476,11 @@ public class GameLogic {
      * @param bool    true to highlight, false to deactivate.
      */
     public void setHighlightCaseGroup(GameCase caseJeu, boolean bool) {
-        if (caseJeu.getGemType() != 3) {
-            GameCase[] groupCases = getNeighborsByGroupID(caseJeu.getGroupID());
-            for (GameCase tcase : groupCases) {
-                tcase.setHighlighted(bool);
+        if (this.board.getGemType(caseJeu.getPositionX(), caseJeu.getPositionY()) != GameBoard.EMPTY) {
+            int groupSize = this.board.getGroupCells(caseJeu.getGroupID(), this.groupBuffer);
+            for (int i = 0; i < groupSize; i++) {
+                int cell = this.groupBuffer[i];
+                getCaseAt(this.board.getColumn(cell), this.board.getRow(cell)).setHighlighted(bool);
             }
         }
     }
@@ -0,0 +1,234 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The <code>GameMetrics</code> class is the registry of the metrics of the games played by the process:
+ * moves played, their duration and group size, memory allocated by the moves, games completed
+ * and positions searched by the solvers. It is written in the Prometheus text format by <code>MetricsServer</code>.
+ * <p>
+ * Nothing is recorded until the registry is enabled, so the games pay a single test per move when
+ * no one reads the metrics. Once enabled, the counters are lock-free adders, which the threads
+ * playing games and running solvers update without waiting for each other.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class GameMetrics {
+
+    /** Upper bounds of the buckets of the move durations, in nanoseconds: from 1 microsecond to 1 second */
+    private static final long[] DURATION_BOUNDS = {
+        1000L, 2500L, 5000L, 10000L, 25000L, 50000L, 100000L, 250000L, 500000L,
+        1000000L, 2500000L, 5000000L, 10000000L, 25000000L, 50000000L, 100000000L, 250000000L, 1000000000L
+    };
+
+    /** Upper bounds of the buckets of the group sizes, in cells */
+    private static final long[] GROUP_SIZE_BOUNDS = {2, 3, 4, 5, 6, 8, 10, 15, 20, 30, 50, 100, 200, 500, 1000};
+
+    /** Nanoseconds in a second */
+    private static final double NANOSECONDS = 1e9;
+
+    /** Minimum time over which the rates are averaged, in nanoseconds */
+    private static final long RATE_INTERVAL = 1000000000L;
+
+    /** True once the metrics are recorded */
+    private static volatile boolean enabled;
+
+    /** Number of moves played */
+    private static final LongAdder MOVES = new LongAdder();
+
+    /** Durations of the moves, in nanoseconds */
+    private static final MetricsHistogram MOVE_DURATIONS = new MetricsHistogram(DURATION_BOUNDS);
+
+    /** Sizes of the groups removed */
+    private static final MetricsHistogram GROUP_SIZES = new MetricsHistogram(GROUP_SIZE_BOUNDS);
+
+    /** Bytes allocated by the moves whose allocation was measured */
+    private static final LongAdder ALLOCATED_BYTES = new LongAdder();
+
+    /** Number of moves whose allocation was measured */
+    private static final LongAdder ALLOCATION_SAMPLES = new LongAdder();
+
+    /** Number of games completed */
+    private static final LongAdder GAMES = new LongAdder();
+
+    /** Number of positions searched by the solvers */
+    private static final LongAdder SOLVER_NODES = new LongAdder();
+
+    /** Thread bean measuring the memory allocated by a thread, null if the virtual machine cannot */
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = getAllocationBean();
+
+    /** Time from which the rates are averaged, in nanoseconds */
+    private static long rateStartTime;
+
+    /** Number of moves at the time from which the rates are averaged */
+    private static long rateStartMoves;
+
+    /** Number of solver positions at the time from which the rates are averaged */
+    private static long rateStartSolverNodes;
+
+    /** Time of the writing from which the next rates will be averaged, in nanoseconds */
+    private static long nextRateStartTime;
+
+    /** Number of moves at the writing from which the next rates will be averaged */
+    private static long nextRateStartMoves;
+
+    /** Number of solver positions at the writing from which the next rates will be averaged */
+    private static long nextRateStartSolverNodes;
+
+    /**
+     * Returns the thread bean measuring the memory allocated by a thread.
+     *
+     * @return thread bean, null if the virtual machine cannot measure the allocated memory
+     */
+    private static com.sun.management.ThreadMXBean getAllocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+            if (threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled()) {
+                return threadBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts recording the metrics. The previous games and searches are not counted.
+     */
+    public static synchronized void enable() {
+        if (!enabled) {
+            rateStartTime = System.nanoTime();
+            nextRateStartTime = rateStartTime;
+            enabled = true;
+        }
+    }
+
+    /**
+     * Returns true if the metrics are recorded.
+     *
+     * @return true once <code>enable</code> is called
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the calling thread since it started.
+     *
+     * @return number of bytes, -1 if the virtual machine cannot measure it
+     */
+    public static long getThreadAllocatedBytes() {
+        return ALLOCATION_BEAN == null ? -1 : ALLOCATION_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Records a move, if the metrics are recorded.
+     *
+     * @param groupSize      number of cells removed
+     * @param duration       duration of the move, in nanoseconds
+     * @param allocatedBytes number of bytes allocated by the move, -1 if it was not measured
+     */
+    public static void movePlayed(int groupSize, long duration, long allocatedBytes) {
+        if (!enabled) {
+            return;
+        }
+        MOVES.increment();
+        MOVE_DURATIONS.observe(duration);
+        GROUP_SIZES.observe(groupSize);
+        if (allocatedBytes >= 0) {
+            ALLOCATED_BYTES.add(allocatedBytes);
+            ALLOCATION_SAMPLES.increment();
+        }
+    }
+
+    /**
+     * Records a game finished, if the metrics are recorded.
+     */
+    public static void gameCompleted() {
+        if (enabled) {
+            GAMES.increment();
+        }
+    }
+
+    /**
+     * Records positions searched by a solver, if the metrics are recorded.
+     * A solver adds its positions in batches, rather than one by one.
+     *
+     * @param nbNodes number of positions reached by playing a move
+     */
+    public static void solverNodesSearched(long nbNodes) {
+        if (enabled) {
+            SOLVER_NODES.add(nbNodes);
+        }
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format. The rates are averaged since a previous writing
+     * at least one second old, so that scrapes close to each other give rates close to each other.
+     *
+     * @param out text receiving the metrics
+     */
+    public static synchronized void write(StringBuilder out) {
+        long now = System.nanoTime();
+        long nbMoves = MOVES.sum();
+        long nbNodes = SOLVER_NODES.sum();
+        if (now - nextRateStartTime >= RATE_INTERVAL) {
+            rateStartTime = nextRateStartTime;
+            rateStartMoves = nextRateStartMoves;
+            rateStartSolverNodes = nextRateStartSolverNodes;
+            nextRateStartTime = now;
+            nextRateStartMoves = nbMoves;
+            nextRateStartSolverNodes = nbNodes;
+        }
+        double elapsed = Math.max(1, now - rateStartTime) / NANOSECONDS;
+
+        writeCounter(out, "samegame_moves_total", "Moves played", nbMoves);
+        writeGauge(out, "samegame_moves_per_second", "Moves played per second over the last seconds",
+                (nbMoves - rateStartMoves) / elapsed);
+        MOVE_DURATIONS.write(out, "samegame_move_duration_seconds", "Duration of the moves, grid refresh included",
+                NANOSECONDS, 0.5, 0.99);
+        GROUP_SIZES.write(out, "samegame_move_group_size", "Number of cells removed by the moves", 1, 0.5, 0.99);
+
+        long nbSamples = ALLOCATION_SAMPLES.sum();
+        long bytes = ALLOCATED_BYTES.sum();
+        out.append("# HELP samegame_move_allocated_bytes Bytes allocated by a sample of the moves\n");
+        out.append("# TYPE samegame_move_allocated_bytes summary\n");
+        out.append("samegame_move_allocated_bytes_sum ").append(bytes).append('\n');
+        out.append("samegame_move_allocated_bytes_count ").append(nbSamples).append('\n');
+        writeGauge(out, "samegame_allocated_bytes_per_move", "Mean bytes allocated per move sampled",
+                nbSamples == 0 ? 0 : (double) bytes / nbSamples);
+
+        writeCounter(out, "samegame_games_completed_total", "Games finished", GAMES.sum());
+        writeCounter(out, "samegame_solver_nodes_total", "Positions searched by the solvers", nbNodes);
+        writeGauge(out, "samegame_solver_nodes_per_second", "Positions searched per second over the last seconds",
+                (nbNodes - rateStartSolverNodes) / elapsed);
+    }
+
+    /**
+     * Writes a counter in the Prometheus text format.
+     *
+     * @param out   text receiving the metric
+     * @param name  name of the metric
+     * @param help  description of the metric
+     * @param value value of the counter
+     */
+    private static void writeCounter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Writes a gauge in the Prometheus text format.
+     *
+     * @param out   text receiving the metric
+     * @param name  name of the metric
+     * @param help  description of the metric
+     * @param value value of the gauge
+     */
+    private static void writeGauge(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
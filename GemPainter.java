@@ -0,0 +1,246 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * The <code>GemPainter</code> class draws the content of a tile (background and gem).
+ * It is shared by the <code>GameCase</code> components and by the single-panel <code>BoardPanel</code>,
+ * so both views render the gems the same way.
+ * Each tile is rendered once per gem type and highlight state into an image, then copied.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class GemPainter {
+
+    /** Background color of a highlighted tile */
+    public static final Color HIGHLIGHT_COLOR = new Color(255, 255, 0, 140);
+
+    /** Background color of a tile */
+    public static final Color BACKGROUND_COLOR = new Color(240, 240, 240);
+
+    /** Largest tile side, in pixels, for which images are cached */
+    public static final int MAX_SPRITE_SIZE = 256;
+
+    /** Cached tile images, indexed by gemType * 2 + (highlighted ? 1 : 0) */
+    private static BufferedImage[] sprites = new BufferedImage[8];
+
+    /** Width of the cached tile images */
+    private static int spriteWidth = -1;
+
+    /** Height of the cached tile images */
+    private static int spriteHeight = -1;
+
+    /**
+     * Draws a tile at the origin of the graphics object, copying its cached image.
+     * The cache holds a single tile size: when the tiles are resized, it is cleared,
+     * so it never holds more than eight images.
+     * @param g graphics object
+     * @param gemType type of the gem (0: ruby, 1: emerald, 2: diamond, 3: empty)
+     * @param highlighted true if the tile is highlighted
+     * @param width width of the tile
+     * @param height height of the tile
+     */
+    public static void paintTile(Graphics g, int gemType, boolean highlighted, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (width > MAX_SPRITE_SIZE || height > MAX_SPRITE_SIZE) {
+            renderTile(g, gemType, highlighted, width, height);
+            return;
+        }
+        if (width != spriteWidth || height != spriteHeight) {
+            clearSprites();
+            spriteWidth = width;
+            spriteHeight = height;
+        }
+
+        int key = gemType * 2;
+        if (highlighted) {
+            key += 1;
+        }
+        BufferedImage sprite = sprites[key];
+        if (sprite == null) {
+            sprite = createSprite(g, width, height);
+            Graphics spriteGraphics = sprite.createGraphics();
+            renderTile(spriteGraphics, gemType, highlighted, width, height);
+            spriteGraphics.dispose();
+            sprites[key] = sprite;
+        }
+        g.drawImage(sprite, 0, 0, null);
+    }
+
+    /**
+     * Empties the cache of tile images.
+     */
+    public static void clearSprites() {
+        for (int i = 0; i < sprites.length; i++) {
+            sprites[i] = null;
+        }
+        spriteWidth = -1;
+        spriteHeight = -1;
+    }
+
+    /**
+     * Creates an empty translucent image compatible with the device the tiles are painted on.
+     * @param g graphics object of the device
+     * @param width width of the image
+     * @param height height of the image
+     * @return the new image
+     */
+    private static BufferedImage createSprite(Graphics g, int width, int height) {
+        if (g instanceof Graphics2D) {
+            GraphicsConfiguration configuration = ((Graphics2D) g).getDeviceConfiguration();
+            if (configuration != null) {
+                return configuration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+            }
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Renders a tile at the origin of the graphics object, without using the cache.
+     * @param g graphics object
+     * @param gemType type of the gem (0: ruby, 1: emerald, 2: diamond, 3: empty)
+     * @param highlighted true if the tile is highlighted
+     * @param width width of the tile
+     * @param height height of the tile
+     */
+    public static void renderTile(Graphics g, int gemType, boolean highlighted, int width, int height) {
+        int padding;
+        if (width < height) {
+            padding = width / 8;
+        } else {
+            padding = height / 8;
+        }
+
+        if (highlighted) {
+            g.setColor(HIGHLIGHT_COLOR);
+        } else {
+            g.setColor(BACKGROUND_COLOR);
+        }
+        g.fillRect(0, 0, width, height);
+
+        if (gemType == 0) {
+            drawRuby(g, GameCase.GEM_COLORS[gemType], width, height, padding);
+        } else if (gemType == 1) {
+            drawEmerald(g, GameCase.GEM_COLORS[gemType], width, height, padding);
+        } else if (gemType == 2) {
+            drawDiamond(g, GameCase.GEM_COLORS[gemType], width, height, padding);
+        }
+    }
+
+    /**
+     * Draws a ruby.
+     * @param g graphics object
+     * @param color color of the gem
+     * @param width width of the tile
+     * @param height height of the tile
+     * @param padding inner space between the ruby and the tile border
+     */
+    public static void drawRuby(Graphics g, Color color, int width, int height, int padding) {
+        drawOctagon(g, color, width, height, padding, Math.min(width, height) / 3);
+    }
+
+    /**
+     * Draws an emerald.
+     * @param g graphics object
+     * @param color color of the gem
+     * @param width width of the tile
+     * @param height height of the tile
+     * @param padding inner space between the emerald and the tile border
+     */
+    public static void drawEmerald(Graphics g, Color color, int width, int height, int padding) {
+        drawOctagon(g, color, width, height, padding, Math.min(width, height) / 6);
+    }
+
+    /**
+     * Draws an octagon with cut corners, the shape of the ruby and the emerald.
+     * @param g graphics object
+     * @param color color of the gem
+     * @param width width of the tile
+     * @param height height of the tile
+     * @param padding inner space between the gem and the tile border
+     * @param cutSize size of the cut corners
+     */
+    private static void drawOctagon(Graphics g, Color color, int width, int height, int padding, int cutSize) {
+        int[] xPoints = new int[8];
+        int[] yPoints = new int[8];
+
+        int left = padding;
+        int right = width - padding;
+        int top = padding;
+        int bottom = height - padding;
+
+        xPoints[0] = left + cutSize;
+        yPoints[0] = top;
+
+        xPoints[1] = right - cutSize;
+        yPoints[1] = top;
+
+        xPoints[2] = right;
+        yPoints[2] = top + cutSize;
+
+        xPoints[3] = right;
+        yPoints[3] = bottom - cutSize;
+
+        xPoints[4] = right - cutSize;
+        yPoints[4] = bottom;
+
+        xPoints[5] = left + cutSize;
+        yPoints[5] = bottom;
+
+        xPoints[6] = left;
+        yPoints[6] = bottom - cutSize;
+
+        xPoints[7] = left;
+        yPoints[7] = top + cutSize;
+
+        g.setColor(color);
+        g.fillPolygon(xPoints, yPoints, 8);
+    }
+
+    /**
+     * Draws a diamond.
+     * @param g graphics object
+     * @param color color of the gem
+     * @param width width of the tile
+     * @param height height of the tile
+     * @param padding inner space between the diamond and the tile border
+     */
+    public static void drawDiamond(Graphics g, Color color, int width, int height, int padding) {
+        int[] xPoints = new int[8];
+        int[] yPoints = new int[8];
+
+        int centerX = width / 2;
+        int centerY = height / 2;
+        int horizontalRadius = (width - 2 * padding) / 2;
+        int verticalRadius = (height - 2 * padding) / 2;
+
+        xPoints[0] = centerX;
+        yPoints[0] = padding;
+
+        xPoints[1] = centerX + horizontalRadius / 2;
+        yPoints[1] = centerY - verticalRadius / 3;
+
+        xPoints[2] = centerX + horizontalRadius;
+        yPoints[2] = centerY;
+
+        xPoints[3] = centerX + horizontalRadius / 2;
+        yPoints[3] = centerY + verticalRadius / 3;
+
+        xPoints[4] = centerX;
+        yPoints[4] = height - padding;
+
+        xPoints[5] = centerX - horizontalRadius / 2;
+        yPoints[5] = centerY + verticalRadius / 3;
+
+        xPoints[6] = centerX - horizontalRadius;
+        yPoints[6] = centerY;
+
+        xPoints[7] = centerX - horizontalRadius / 2;
+        yPoints[7] = centerY - verticalRadius / 3;
+
+        g.setColor(color);
+        g.fillPolygon(xPoints, yPoints, 8);
+    }
+}
@@ -0,0 +1,33 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+/**
+ * The <code>HintButtonListener</code> class contains the listener for the hint button of the SameGame game window.
+ * It highlights the group of the best move found so far by the hint engine of the window.
+ * 
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class HintButtonListener implements ActionListener {
+    /** reference to the game window showing the hint */
+    private GameFrame gameFrame;
+
+    /** 
+     * Constructor of the hint button listener associated with a given game window.
+     * @param gameFrame the game window whose best move must be shown
+     */ 
+    public HintButtonListener(GameFrame gameFrame) {
+        super();
+        this.gameFrame = gameFrame;
+    }
+    
+    /** 
+     * Method triggered when the button is clicked.
+     * Shows the best move found so far.
+     * @param e the element that was clicked
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        this.gameFrame.showHint();
+    }
+}
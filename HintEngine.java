@@ -0,0 +1,211 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The <code>HintEngine</code> class searches for the best move of a game in the background, so a hint
+ * can be given to the player at any time without freezing the window.
+ * <p>
+ * The search is a <code>MonteCarloTreeSearch</code> run by a background thread, in slices, for at most a
+ * given time per position. It starts on the first hint asked for, so a game without hints costs nothing.
+ * When a move is played, the running search is stopped and a new one starts from the new position,
+ * keeping the subtree of the move. Every thread of the search copies the board, and a position of a large
+ * board is searched by fewer threads, for a shorter time. A hint is the first move of the best game found so far;
+ * it is returned at once, the largest group being given if the search has no answer yet.
+ * <p>
+ * <code>movePlayed</code>, <code>positionChanged</code> and <code>getHint</code> must be called from the same thread,
+ * the Swing event thread in the game window.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class HintEngine {
+
+    /** Default time of search per position, in milliseconds */
+    public static final long DEFAULT_SEARCH_TIME = 10000;
+
+    /** Duration of a slice of search, in milliseconds: the search checks between slices if the position changed */
+    private static final long SLICE_TIME = 100;
+
+    /** Shortest time of search per position, in milliseconds, however large the board */
+    private static final long MIN_SEARCH_TIME = 1000;
+
+    /** Largest number of cells searched for the whole time of search per position, 100x100 */
+    private static final int FULL_TIME_CELLS = 10000;
+
+    /** Largest number of cells of all the copies of the board made by the threads of the search */
+    private static final int PARALLEL_CELLS = 100000;
+
+    /** Seed of the random games */
+    private static final long SEED = 0;
+
+    /** Board of the game, owned by the calling thread */
+    private final GameBoard board;
+
+    /** Search of the best move, run by the background thread, null until the first hint */
+    private MonteCarloTreeSearch search;
+
+    /** Background thread running the search, null until the first hint */
+    private ExecutorService executor;
+
+    /** Time of search per position, in milliseconds */
+    private final long searchTime;
+
+    /** Number of moves played in the game */
+    private volatile int positionVersion;
+
+    /** Number of moves played on the root of the search */
+    private volatile int searchedVersion;
+
+    /**
+     * Constructor of an engine, which searches for at most DEFAULT_SEARCH_TIME per position.
+     *
+     * @param board board of the game, read but never modified by the engine
+     */
+    public HintEngine(GameBoard board) {
+        this(board, DEFAULT_SEARCH_TIME);
+    }
+
+    /**
+     * Constructor of an engine, which waits for the first hint to start searching.
+     *
+     * @param board      board of the game, read but never modified by the engine
+     * @param searchTime longest time of search per position, in milliseconds
+     */
+    public HintEngine(GameBoard board, long searchTime) {
+        this.board = board;
+        int nbCells = board.getNbCols() * board.getNbRows();
+        if (nbCells <= FULL_TIME_CELLS) {
+            this.searchTime = searchTime;
+        } else {
+            this.searchTime = Math.min(searchTime, Math.max(MIN_SEARCH_TIME, searchTime * FULL_TIME_CELLS / nbCells));
+        }
+        this.positionVersion = 0;
+        this.searchedVersion = 0;
+    }
+
+    /**
+     * Starts searching from the current position of the game.
+     * The search leaves one core to the calling thread, and copies the board at most PARALLEL_CELLS cells in all.
+     */
+    private void start() {
+        int nbCells = this.board.getNbCols() * this.board.getNbRows();
+        int nbThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, PARALLEL_CELLS / nbCells));
+        this.search = new MonteCarloTreeSearch(this.board, SEED, nbThreads);
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "hint-engine");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        int version = this.positionVersion;
+        this.executor.execute(() -> searchPosition(version, -1));
+    }
+
+    /**
+     * Records a move played on the board of the game: the running search is stopped,
+     * and a search of the new position starts.
+     *
+     * @param move index of a cell of the removed group, on the board before the move
+     */
+    public void movePlayed(int move) {
+        int version = this.positionVersion + 1;
+        this.positionVersion = version;
+        if (this.search == null) {
+            return;
+        }
+        this.search.stop();
+        this.executor.execute(() -> searchPosition(version, move));
+    }
+
+    /**
+     * Records that the board of the game changed otherwise than by a move, for example when a move
+     * is undone: the running search is stopped, and a new search starts from a copy of the cells of the board.
+     */
+    public void positionChanged() {
+        int version = this.positionVersion + 1;
+        this.positionVersion = version;
+        if (this.search == null) {
+            return;
+        }
+        byte[] snapshot = this.board.copyCells();
+        this.search.stop();
+        this.executor.execute(() -> {
+            this.search.reset(snapshot);
+            searchPosition(version, -1);
+        });
+    }
+
+    /**
+     * Plays a move on the root of the search, then searches the new position until its time
+     * is spent, the game ends or another move is played. Runs on the background thread.
+     *
+     * @param version number of moves played once the move is played
+     * @param move    index of a cell of the removed group, -1 to search the current root
+     */
+    private void searchPosition(int version, int move) {
+        if (move != -1) {
+            this.search.advance(move);
+        }
+        this.searchedVersion = version;
+
+        long end = System.nanoTime() + this.searchTime * 1000000L;
+        while (this.positionVersion == version && System.nanoTime() - end < 0
+                && this.search.getRootBoard().getNbPlayableGroups() > 0) {
+            this.search.search(Math.min(SLICE_TIME, (end - System.nanoTime()) / 1000000L + 1));
+        }
+    }
+
+    /**
+     * Returns a move for the current position of the game, without waiting: the first move of the best game
+     * found by the search, or the largest group if the search has not found a game of the current position yet.
+     * The first hint starts the search.
+     *
+     * @return index of a cell of the group to remove, -1 if the game is over
+     */
+    public int getHint() {
+        if (this.board.getNbPlayableGroups() == 0) {
+            return -1;
+        }
+        if (this.search == null) {
+            start();
+            return getLargestGroup();
+        }
+        // the search cannot move past the position of the game, which only changes on this thread
+        if (this.searchedVersion == this.positionVersion) {
+            int move = this.search.getBestMove();
+            if (move != -1) {
+                return move;
+            }
+        }
+        return getLargestGroup();
+    }
+
+    /**
+     * Returns a cell of the largest group of the board of the game.
+     *
+     * @return index of a cell of the group, -1 if no group can be removed
+     */
+    private int getLargestGroup() {
+        int best = -1;
+        for (int groupID = 0; groupID < this.board.getNbGroups(); groupID++) {
+            int size = this.board.getGroupSize(groupID);
+            if (size >= 2 && (best == -1 || size > this.board.getGroupSize(best))) {
+                best = groupID;
+            }
+        }
+        return best == -1 ? -1 : this.board.getGroupStart(best);
+    }
+
+    /**
+     * Stops the search and its threads. The engine cannot be used afterwards.
+     */
+    public void shutdown() {
+        this.positionVersion = -1;
+        if (this.search == null) {
+            return;
+        }
+        this.search.stop();
+        this.executor.execute(this.search::shutdown);
+        this.executor.shutdown();
+    }
+}
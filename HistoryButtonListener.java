@@ -0,0 +1,41 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+/**
+ * The <code>HistoryButtonListener</code> class contains the listener for the undo and redo buttons of the SameGame game window.
+ * It undoes the last move, or plays again the last move undone.
+ * 
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class HistoryButtonListener implements ActionListener {
+    /** reference to the game window whose moves are undone */
+    private GameFrame gameFrame;
+    /** true to redo a move, false to undo one */
+    private boolean redo;
+
+    /** 
+     * Constructor of the listener associated with a given game window.
+     * @param gameFrame the game window whose moves are undone
+     * @param redo true to redo a move, false to undo one
+     */ 
+    public HistoryButtonListener(GameFrame gameFrame, boolean redo) {
+        super();
+        this.gameFrame = gameFrame;
+        this.redo = redo;
+    }
+    
+    /** 
+     * Method triggered when the button is clicked or the shortcut is typed.
+     * Undoes or redoes a move.
+     * @param e the element that was clicked
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (this.redo) {
+            this.gameFrame.redoMove();
+        } else {
+            this.gameFrame.undoMove();
+        }
+    }
+}
@@ -2,6 +2,8 @@ import javax.swing.*;
 import java.awt.*;
 import javax.swing.border.EmptyBorder;
 import java.io.*;
+import java.nio.file.NoSuchFileException;
+import java.util.Random;
 
 /**
  * The <code>Menu</code> class is used to create a main menu for the SameGame.
@@ -28,6 +30,16 @@ public class Menu extends JFrame {
     private JRadioButton randomMapRadioButton;
     /** Indicates if random mode is selected (true) or file mode (false) */
     private boolean isRandomMode;
+    /** Panel containing the random map radio button and its dimensions */
+    private JPanel panelRandomMapSet;
+    /** Spinner choosing the number of columns of a random map */
+    private JSpinner nbColsSpinner;
+    /** Spinner choosing the number of rows of a random map */
+    private JSpinner nbRowsSpinner;
+    /** Check box to paint the grid with a single panel instead of one component per cell */
+    private JCheckBox singlePanelCheckBox;
+    /** Indicates if the grid is painted with a single panel */
+    private boolean isSinglePanelMode;
     
     /** Panel containing elements related to file loading */
     private JPanel panelGameFileSet;
@@ -37,6 +49,10 @@ public class Menu extends JFrame {
     private Boolean goodFile;
     /** Array representing the pattern loaded from the file */
     private static int[][] filePattern;
+    /** Puzzles of the board archive chosen as file, null if the file is a single pattern */
+    private PuzzleDatabase puzzleDatabase;
+    /** Spinner choosing the puzzle of the board archive */
+    private JSpinner puzzleSpinner;
     
     /** Button to start a new game */
     private JButton startButton;
@@ -44,6 +60,13 @@ public class Menu extends JFrame {
     /** Event listener for menu button interactions */
     private MenuButtonListener MenuButtonListener;
 
+    /** Default number of columns of a random map */
+    private static final int DEFAULT_NB_COLS = 15;
+    /** Default number of rows of a random map */
+    private static final int DEFAULT_NB_ROWS = 10;
+    /** Largest number of columns or rows of a random map */
+    private static final int MAX_DIMENSION = 1000;
+
     /**
      * Menu window constructor.
      * Initializes default attributes (random mode enabled, no valid file loaded)
@@ -52,6 +75,7 @@ public class Menu extends JFrame {
     public Menu() {
         this.goodFile = false;
         this.isRandomMode = true;
+        this.isSinglePanelMode = false;
         this.setFrame();
     	System.out.println(this.panel.getLayout());
     }
@@ -66,14 +90,14 @@ public class Menu extends JFrame {
         this.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         this.setLocationRelativeTo(null);
         
-        this.panel = new JPanel(new GridLayout(4, 1, 10, 20));
+        this.panel = new JPanel(new GridLayout(5, 1, 10, 20));
         this.panel.setBorder(new EmptyBorder(15, 15, 15, 15));
         
         this.welcomeLabel = new JLabel("The SameGame", SwingConstants.CENTER);
         this.welcomeLabel.setFont(new Font("Arial", Font.BOLD, 20));
         this.panel.add(this.welcomeLabel);
         
-        this.panelGameFileSet = new JPanel(new GridLayout(1, 2));
+        this.panelGameFileSet = new JPanel(new GridLayout(1, 3));
         
         this.searchGameRadioButton = new JRadioButton("Search Game Set", false);
         this.selectFileButton = new JButton("Select File");
@@ -92,8 +116,24 @@ public class Menu extends JFrame {
         
         this.panelGameFileSet.add(this.searchGameRadioButton);
         this.panelGameFileSet.add(this.selectFileButton);
+        // only used when the chosen file is a board archive
+        this.puzzleSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 0, 1));
+        this.puzzleSpinner.setEnabled(false);
+        this.panelGameFileSet.add(this.puzzleSpinner);
         this.panel.add(this.panelGameFileSet);
-        this.panel.add(this.randomMapRadioButton);
+
+        this.panelRandomMapSet = new JPanel(new GridLayout(1, 4));
+        this.nbColsSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_NB_COLS, 1, MAX_DIMENSION, 1));
+        this.nbRowsSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_NB_ROWS, 1, MAX_DIMENSION, 1));
+        this.panelRandomMapSet.add(this.randomMapRadioButton);
+        this.panelRandomMapSet.add(this.nbColsSpinner);
+        this.panelRandomMapSet.add(new JLabel("x", SwingConstants.CENTER));
+        this.panelRandomMapSet.add(this.nbRowsSpinner);
+        this.panel.add(this.panelRandomMapSet);
+        
+        this.singlePanelCheckBox = new JCheckBox("Single panel view", false);
+        this.singlePanelCheckBox.addActionListener(this.MenuButtonListener);
+        this.panel.add(this.singlePanelCheckBox);
         
         this.startButton = new JButton("Start Game");
         this.startButton.setFont(new Font("Arial", Font.BOLD, 16));
@@ -135,6 +175,53 @@ public class Menu extends JFrame {
         return this.randomMapRadioButton;
     }
 
+    /**
+     * Returns the number of columns chosen for a random map.
+     * @return The number of columns
+     */
+    public int getNbColsChoice() {
+        return (Integer) this.nbColsSpinner.getValue();
+    }
+
+    /**
+     * Returns the number of rows chosen for a random map.
+     * @return The number of rows
+     */
+    public int getNbRowsChoice() {
+        return (Integer) this.nbRowsSpinner.getValue();
+    }
+
+    /**
+     * Returns the number of the puzzle chosen in the board archive.
+     * @return The identifier of the puzzle
+     */
+    public int getPuzzleChoice() {
+        return (Integer) this.puzzleSpinner.getValue();
+    }
+
+    /**
+     * Sets the puzzles of the board archive chosen as file, and lets the player choose one of them.
+     * @param database The puzzles of the archive, or null if the file is not an archive
+     */
+    public void setPuzzleDatabase(PuzzleDatabase database) {
+        this.puzzleDatabase = database;
+        if (database != null && database.getNbBoards() > 0) {
+            this.puzzleSpinner.setModel(new SpinnerNumberModel(0, 0, database.getNbBoards() - 1, 1));
+            this.puzzleSpinner.setEnabled(true);
+        } else {
+            this.puzzleSpinner.setModel(new SpinnerNumberModel(0, 0, 0, 1));
+            this.puzzleSpinner.setEnabled(false);
+        }
+    }
+
+    /**
+     * Returns the check box for the single panel view.
+     * @return The check box to paint the grid with a single panel
+     */
+    public JCheckBox getSinglePanelCheckBox() {
+        return this.singlePanelCheckBox;
+    }
+
     /**
      * Returns the button for selecting a pattern file.
      * @return The button to choose a pattern file
@@ -175,6 +262,22 @@ public class Menu extends JFrame {
         return this.isRandomMode;
     }
 
+    /**
+     * Sets how the grid is painted.
+     * @param mode true to paint the grid with a single panel, false for one component per cell
+     */
+    public void setSinglePanelMode(boolean mode) {
+        this.isSinglePanelMode = mode;
+    }
+
+    /**
+     * Checks if the grid is painted with a single panel.
+     * @return true if single panel mode is enabled, false otherwise
+     */
+    public boolean isSinglePanelMode() {
+        return this.isSinglePanelMode;
+    }
+
     /**
      * Changes the color of the file selection button.
      * @param c The new color to apply to the button
@@ -234,14 +337,25 @@ public class Menu extends JFrame {
         if (this.isRandomMode()) {
             
             this.dispose();
-            GameFrame gameFrame = new GameFrame();
+            GameFrame gameFrame = new GameFrame(new GameBoard(this.getNbColsChoice(), this.getNbRowsChoice(), new Random()), this.isSinglePanelMode());
             gameFrame.setVisible(true);
 
         } else if (!this.isRandomMode() && this.isGoodFile()) {
 
-            int[][] gamePattern = this.getFilePattern();
+            GameBoard board;
+            if (this.puzzleDatabase != null) {
+                try {
+                    board = this.puzzleDatabase.getBoard(this.getPuzzleChoice());
+                } catch (IOException e) {
+                    System.out.println("Error reading the puzzle.");
+                    this.showErrorLabel();
+                    return;
+                }
+            } else {
+                board = new GameBoard(this.getFilePattern());
+            }
             this.dispose();
-            GameFrame gameFrame = new GameFrame(gamePattern);
+            GameFrame gameFrame = new GameFrame(board, this.isSinglePanelMode());
             gameFrame.setVisible(true);
 
         } else if (!this.isRandomMode() && !this.isGoodFile()) {
@@ -258,6 +372,8 @@ public class Menu extends JFrame {
         JFileChooser fileChooser = new JFileChooser();
         
         fileChooser.setCurrentDirectory(new File(".").getAbsoluteFile()); // game directory 
+        // a directory opens the pattern library of its files
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
 
         int result = fileChooser.showOpenDialog(this);
 
@@ -273,90 +389,128 @@ public class Menu extends JFrame {
 
             File selectedFile = fileChooser.getSelectedFile();
 
-            try {
-                boolean FileVerif = validateFile(selectedFile);
-
-                if (FileVerif) {
-                    setChooseFileButtonColor(new Color(50,200,100));
-                    setGoodFile(true);
-                    hideErrorLabel();
-                } else {
-                    setChooseFileButtonColor(new Color(200,50,100));
-                    setFilePattern(null);
-                    setGoodFile(false);
-                }
-                
-            } catch (IOException ex) {
-                System.out.println("File not found.");
-                setChooseFileButtonColor(new Color(200, 50, 100));
-                setGoodFile(false);
+            if (selectedFile.isDirectory()) {
+                openLibrary(selectedFile);
+            } else {
+                applyFile(selectedFile);
+            }
+        }
+    }
+
+    /**
+     * Validates a chosen file and changes the color of the file choice button based on its validity.
+     * @param selectedFile file chosen by the player
+     */
+    public void applyFile(File selectedFile) {
+        try {
+            boolean FileVerif = validateFile(selectedFile);
+
+            if (FileVerif) {
+                setChooseFileButtonColor(new Color(50,200,100));
+                setGoodFile(true);
+                hideErrorLabel();
+            } else {
+                setChooseFileButtonColor(new Color(200,50,100));
                 setFilePattern(null);
+                setGoodFile(false);
             }
             
+        } catch (IOException ex) {
+            System.out.println("File not found.");
+            setChooseFileButtonColor(new Color(200, 50, 100));
+            setGoodFile(false);
+            setFilePattern(null);
+        }
+    }
+
+    /**
+     * Indexes the pattern files of a directory and its subdirectories in the background,
+     * then lets the player choose one of the valid patterns.
+     * The file choice button is disabled during the scan.
+     * @param directory directory chosen by the player
+     */
+    public void openLibrary(File directory) {
+        setGoodFile(false);
+        setChooseFileButtonColor(new Color(200,200,200));
+        this.selectFileButton.setEnabled(false);
+        this.selectFileButton.setText("Scanning...");
+
+        Thread scanner = new Thread(() -> {
+            PatternLibrary library;
+            try {
+                library = PatternLibrary.scan(new String[] {directory.getPath()}, Runtime.getRuntime().availableProcessors());
+            } catch (IOException e) {
+                System.out.println("Error reading the directory: " + e.getMessage());
+                library = null;
+            }
+            PatternLibrary scanned = library;
+            SwingUtilities.invokeLater(() -> chooseLibraryPattern(scanned));
+        }, "pattern-library");
+        scanner.setDaemon(true);
+        scanner.start();
+    }
+
+    /**
+     * Lists the valid patterns of a library, reports the invalid files, and opens the pattern chosen by the player.
+     * @param library index of the directory, null if it could not be read
+     */
+    public void chooseLibraryPattern(PatternLibrary library) {
+        this.selectFileButton.setEnabled(true);
+        this.selectFileButton.setText("Select File");
+        if (library == null || library.getPatterns().length == 0) {
+            setChooseFileButtonColor(new Color(200,50,100));
+            return;
+        }
+
+        PatternInfo[] entries = library.getEntries();
+        for (int i = 0; i < entries.length; i++) {
+            if (!entries[i].isValid()) {
+                System.out.println(entries[i].getFile() + ":" + entries[i].getErrorLine() + ":"
+                        + entries[i].getErrorColumn() + ": " + entries[i].getError());
+            }
+        }
+        PatternInfo[] patterns = library.getPatterns();
+        Object choice = JOptionPane.showInputDialog(this,
+                patterns.length + " patterns, " + library.getNbInvalid() + " invalid files",
+                "Pattern library", JOptionPane.PLAIN_MESSAGE, null, patterns, patterns[0]);
+        if (choice == null) {
+            setChooseFileButtonColor(new Color(200,50,100));
+        } else {
+            applyFile(((PatternInfo) choice).getFile().toFile());
         }
     }
 
     /**
      * Returns true if the file parameter is validated according to the game standards, false otherwise.
+     * The file must contain at least one line, all lines having the same length,
+     * and only the characters R, V and B, or be a board in the binary format.
+     * A board archive is valid if it holds at least one puzzle, chosen with the puzzle spinner.
      * @return true if the file is valid, false otherwise.
      * @param file file to validate
      */
     public boolean validateFile(File file) throws IOException {
-        String line;
-        int linecpt = 0;
-
-        int[][] tempPattern = new int[10][15];
+        int[][] tempPattern;
 
+        setPuzzleDatabase(null);
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-        
-            try {
-                while ((line = reader.readLine()) != null) {
-                    linecpt++;
-
-                    if (line.length() != 15) {
-                        return false;
-                    }
-
-                    for (int i = 0; i < line.length(); i++) {
-                        char c = line.charAt(i);
-                        
-                        if (c != 'R' && c != 'V' && c != 'B') {
-                            return false;
-                        }
-
-                        if (c == 'R') {
-                            tempPattern[linecpt-1][i] = 0;
-                        } else if (c == 'V') {
-                            tempPattern[linecpt-1][i] = 1;
-                        } else {
-                            tempPattern[linecpt-1][i] = 2;
-                        }
-                    }
-
-                    if (linecpt > 10) {
-                        return false;
-                    }
-                }
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    System.out.println("Error closing the export file.");    
-                    return false;    
-                }
-            } catch (IOException e) {
-                System.out.println("Error reading the export file.");
-                return false;
-            } catch (ArrayIndexOutOfBoundsException e) {
-                System.out.println("Error reading the export file.");
-                return false;
+            if (BoardArchive.isBoardArchive(file.toPath())) {
+                PuzzleDatabase database = new PuzzleDatabase(file.toPath());
+                setPuzzleDatabase(database);
+                return database.getNbBoards() > 0;
             }
-        } catch (FileNotFoundException e) {
+            tempPattern = PatternFile.load(file.toPath());
+        } catch (PatternFormatException e) {
+            System.out.println("Wrong file: " + e.getMessage());
+            return false;
+        } catch (NoSuchFileException e) {
             System.out.println("Error opening the export file.");
             return false;
+        } catch (IOException e) {
+            System.out.println("Error reading the export file.");
+            return false;
         }
         
-        if (linecpt == 10) {
+        if (tempPattern != null) {
             setFilePattern(tempPattern);
             return true;
         }
@@ -375,6 +529,8 @@ public class Menu extends JFrame {
         
         return "Menu [mode=" + mode 
                + ", fileValid=" + fileStatus
+               + ", size=" + this.getNbColsChoice() + "x" + this.getNbRowsChoice()
+               + ", singlePanel=" + this.isSinglePanelMode
                + "]";
     }
 }
@@ -2,6 +2,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import javax.swing.JRadioButton;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 
 /**
  * The <code>MenuButtonListener</code> class contains listeners for the buttons in the main menu of SameGame.
@@ -27,7 +28,7 @@ public class MenuButtonListener implements ActionListener {
     /**
      * Method triggered when an action occurs (button or radio button click).
      * Handles the selection of grid generation mode (random or via pattern file),
-     * starting a new game, and opening a file selector to load a pattern.
+     * the single panel view option, starting a new game, and opening a file selector to load a pattern.
      *
      * @param e the element that was clicked
      */
@@ -42,6 +43,13 @@ public class MenuButtonListener implements ActionListener {
                 this.menu.setRandomMode(false);
             }
         
+        } else if (e.getSource() instanceof JCheckBox) {
+            JCheckBox source = (JCheckBox) e.getSource();
+            
+            if (source == this.menu.getSinglePanelCheckBox()) {
+                this.menu.setSinglePanelMode(source.isSelected());
+            }
+        
         } else if (e.getSource() instanceof JButton) {
             JButton source = (JButton)e.getSource();
             
@@ -0,0 +1,139 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The <code>MetricsHistogram</code> class counts observed values in buckets with fixed upper bounds,
+ * like a Prometheus histogram. The counts are lock-free adders, so many threads can observe values
+ * at the same time without waiting for each other, and quantiles are estimated from the buckets.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class MetricsHistogram {
+
+    /** Upper bounds of the buckets, inclusive, in increasing order */
+    private final long[] bounds;
+
+    /** Number of values of each bucket, the last one counting the values above every bound */
+    private final LongAdder[] counts;
+
+    /** Sum of the values observed */
+    private final LongAdder sum;
+
+    /**
+     * Constructor of an empty histogram.
+     *
+     * @param bounds upper bounds of the buckets, inclusive, in increasing order
+     */
+    public MetricsHistogram(long... bounds) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("bounds not in increasing order");
+            }
+        }
+        this.bounds = bounds.clone();
+        this.counts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] = new LongAdder();
+        }
+        this.sum = new LongAdder();
+    }
+
+    /**
+     * Adds a value to its bucket.
+     *
+     * @param value value observed
+     */
+    public void observe(long value) {
+        int bucket = Arrays.binarySearch(this.bounds, value);
+        if (bucket < 0) {
+            bucket = -bucket - 1;
+        }
+        this.counts[bucket].increment();
+        this.sum.add(value);
+    }
+
+    /**
+     * Returns the cumulative counts of the buckets: the number of values at most each bound,
+     * then the number of all the values. The counts are read one by one while values may be
+     * observed, but they are always increasing.
+     *
+     * @return cumulative counts, one more than the bounds
+     */
+    private long[] getCumulativeCounts() {
+        long[] cumulative = new long[this.counts.length];
+        long total = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            total += this.counts[i].sum();
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Estimates a quantile of the values, by linear interpolation inside the bucket holding it.
+     * A quantile above the last bound is estimated as the last bound.
+     *
+     * @param quantile quantile, between 0 and 1
+     * @return estimated value, 0 if no value was observed
+     */
+    public double getQuantile(double quantile) {
+        return getQuantile(getCumulativeCounts(), quantile);
+    }
+
+    /**
+     * Estimates a quantile of the values from cumulative counts.
+     *
+     * @param cumulative cumulative counts of the buckets
+     * @param quantile   quantile, between 0 and 1
+     * @return estimated value, 0 if no value was observed
+     */
+    private double getQuantile(long[] cumulative, double quantile) {
+        long total = cumulative[cumulative.length - 1];
+        if (total == 0) {
+            return 0;
+        }
+        double rank = quantile * total;
+        int bucket = 0;
+        while (bucket < this.bounds.length && cumulative[bucket] < rank) {
+            bucket++;
+        }
+        if (bucket == this.bounds.length) {
+            return this.bounds[this.bounds.length - 1];
+        }
+        long lower = bucket == 0 ? 0 : this.bounds[bucket - 1];
+        long below = bucket == 0 ? 0 : cumulative[bucket - 1];
+        long inBucket = cumulative[bucket] - below;
+        return lower + (this.bounds[bucket] - lower) * (inBucket == 0 ? 1.0 : (rank - below) / inBucket);
+    }
+
+    /**
+     * Writes the histogram in the Prometheus text format, followed by a gauge of its estimated quantiles.
+     *
+     * @param out       text receiving the metric
+     * @param name      name of the metric
+     * @param help      description of the metric
+     * @param unit      value of one unit of the metric in the unit of the observed values,
+     *                  for example 1e9 for a metric in seconds observing nanoseconds
+     * @param quantiles quantiles to estimate, between 0 and 1
+     */
+    public void write(StringBuilder out, String name, String help, double unit, double... quantiles) {
+        long[] cumulative = getCumulativeCounts();
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        for (int i = 0; i < this.bounds.length; i++) {
+            out.append(name).append("_bucket{le=\"").append(this.bounds[i] / unit).append("\"} ")
+                    .append(cumulative[i]).append('\n');
+        }
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative[this.bounds.length]).append('\n');
+        out.append(name).append("_sum ").append(this.sum.sum() / unit).append('\n');
+        out.append(name).append("_count ").append(cumulative[this.bounds.length]).append('\n');
+
+        out.append("# HELP ").append(name).append("_quantile Estimated quantiles of ").append(name).append('\n');
+        out.append("# TYPE ").append(name).append("_quantile gauge\n");
+        for (int i = 0; i < quantiles.length; i++) {
+            out.append(name).append("_quantile{quantile=\"").append(quantiles[i]).append("\"} ")
+                    .append(getQuantile(cumulative, quantiles[i]) / unit).append('\n');
+        }
+    }
+}
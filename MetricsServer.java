@@ -0,0 +1,110 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * The <code>MetricsServer</code> class serves the metrics of <code>GameMetrics</code> over HTTP, in the
+ * Prometheus text format, at <code>http://localhost:port/metrics</code>. It listens on the loopback
+ * interface only, for a collector running on the same machine, and answers on a single background thread.
+ * <p>
+ * The game starts a server when the system property <code>samegame.metrics</code> gives its port:
+ * <code>java -Dsamegame.metrics=9400 main</code>. <code>BatchScorer</code> starts one with its
+ * <code>-metrics port</code> option.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class MetricsServer {
+
+    /** Path of the metrics */
+    public static final String PATH = "/metrics";
+
+    /** Content type of the Prometheus text format */
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** HTTP server */
+    private final HttpServer server;
+
+    /**
+     * Constructor of a server, which starts listening and enables the metrics.
+     *
+     * @param port port on the loopback interface, 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public MetricsServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext(PATH, this::handle);
+        this.server.setExecutor(Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        GameMetrics.enable();
+        this.server.start();
+    }
+
+    /**
+     * Starts a server on the port given by the system property <code>samegame.metrics</code>, if it is set.
+     * An invalid port or a port in use is reported, and the game runs without metrics.
+     *
+     * @return server started, null if the property is not set or the server cannot start
+     */
+    public static MetricsServer startFromProperty() {
+        String port = System.getProperty("samegame.metrics");
+        if (port == null) {
+            return null;
+        }
+        try {
+            return new MetricsServer(Integer.parseInt(port));
+        } catch (NumberFormatException | IOException e) {
+            System.err.println("cannot serve the metrics on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return port on the loopback interface
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Answers a request with the current metrics.
+     *
+     * @param exchange request and its answer
+     * @throws IOException if the answer cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder text = new StringBuilder(4096);
+            GameMetrics.write(text);
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Stops the server. The metrics are still recorded.
+     */
+    public void stop() {
+        this.server.stop(0);
+    }
+}
@@ -0,0 +1,392 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>MonteCarloTreeSearch</code> class is an anytime search engine for a SameGame position,
+ * based on Single-Player Monte Carlo Tree Search. Each iteration walks down a tree of positions,
+ * choosing at every node the child with the best selection value, extends the tree, finishes the
+ * game with random moves and records its score in every node of the path.
+ * <p>
+ * The selection value of a child adds three terms, computed on scores divided by the best score found:
+ * the mean score of its games, the UCT exploration term <code>C * sqrt(ln(N) / n)</code> and the
+ * single-player term <code>sqrt(variance + D / n)</code>, which favors the children whose games have
+ * a high spread, since only the best game matters when maximizing a score.
+ * <p>
+ * All the threads of the engine share one tree. A thread going through a node counts as a game of
+ * score 0 until its game ends (virtual loss), so the other threads explore other children meanwhile.
+ * After a real move is played with <code>advance</code>, the subtree of that move becomes the new
+ * tree and its statistics are kept.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class MonteCarloTreeSearch {
+
+    /** Default weight of the exploration term */
+    public static final double DEFAULT_EXPLORATION = 0.3;
+
+    /** Default constant added to the variance of the children with few games */
+    public static final double DEFAULT_DEVIATION = 0.01;
+
+    /** Number of games a node must have played before it is expanded */
+    private static final int EXPANSION_VISITS = 2;
+
+    /** Board of the position at the root of the tree */
+    private final GameBoard rootBoard;
+
+    /** Root of the tree */
+    private SearchNode root;
+
+    /** Points earned by the real moves played before the root position */
+    private int rootScore;
+
+    /** Number of threads searching the tree */
+    private final int parallelism;
+
+    /** Pool running the search threads */
+    private final ForkJoinPool pool;
+
+    /** Seed of the random games */
+    private final long seed;
+
+    /** Number of searches run, used to give each search its own seeds */
+    private long nbSearches;
+
+    /** Weight of the exploration term of the selection value */
+    private double explorationConstant;
+
+    /** Constant added to the variance in the single-player term of the selection value */
+    private double deviationConstant;
+
+    /** Number of games played since the engine was created */
+    private final AtomicLong nbIterations;
+
+    /** Best score found, including the points of the real moves */
+    private volatile int bestScore;
+
+    /** Moves of the best game found, from the root position */
+    private int[] bestLine;
+
+    /** Number of the running search, used to stop it */
+    private volatile long searchNumber;
+
+    /** Number of the last search asked to stop */
+    private volatile long stoppedSearch;
+
+    /**
+     * Constructor of an engine using all the cores of the machine.
+     *
+     * @param start starting position, left unchanged
+     * @param seed  seed of the random games
+     */
+    public MonteCarloTreeSearch(GameBoard start, long seed) {
+        this(start, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor of an engine.
+     *
+     * @param start       starting position, left unchanged
+     * @param seed        seed of the random games
+     * @param parallelism number of threads searching the tree
+     */
+    public MonteCarloTreeSearch(GameBoard start, long seed, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("invalid parallelism " + parallelism);
+        }
+        this.rootBoard = new GameBoard(start);
+        this.rootBoard.updateGroups();
+        this.root = new SearchNode(null, -1, 0);
+        this.rootScore = 0;
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism);
+        this.seed = seed;
+        this.nbSearches = 0;
+        this.explorationConstant = DEFAULT_EXPLORATION;
+        this.deviationConstant = DEFAULT_DEVIATION;
+        this.nbIterations = new AtomicLong();
+        this.bestScore = 0;
+        this.bestLine = new int[0];
+        this.searchNumber = 0;
+        this.stoppedSearch = -1;
+    }
+
+    /**
+     * Sets the weight of the exploration term of the selection value.
+     *
+     * @param explorationConstant weight, at least 0
+     */
+    public void setExplorationConstant(double explorationConstant) {
+        this.explorationConstant = explorationConstant;
+    }
+
+    /**
+     * Sets the constant added to the variance in the single-player term of the selection value.
+     *
+     * @param deviationConstant constant, at least 0
+     */
+    public void setDeviationConstant(double deviationConstant) {
+        this.deviationConstant = deviationConstant;
+    }
+
+    /**
+     * Returns the number of games played since the engine was created.
+     *
+     * @return number of iterations
+     */
+    public long getNbIterations() {
+        return this.nbIterations.get();
+    }
+
+    /**
+     * Returns the board of the root position. It must not be modified.
+     *
+     * @return board of the root position
+     */
+    public GameBoard getRootBoard() {
+        return this.rootBoard;
+    }
+
+    /**
+     * Returns the root of the tree.
+     *
+     * @return root node
+     */
+    public SearchNode getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Searches the tree with all the threads of the engine during a given time.
+     *
+     * @param timeBudget duration of the search in milliseconds
+     */
+    public void search(long timeBudget) {
+        runThreads(System.nanoTime() + timeBudget * 1000000L, true, Long.MAX_VALUE);
+    }
+
+    /**
+     * Searches the tree with all the threads of the engine until a number of games is played.
+     *
+     * @param iterations number of games to play
+     */
+    public void searchIterations(long iterations) {
+        runThreads(0, false, iterations);
+    }
+
+    /**
+     * Runs the search threads until the deadline or the number of games is reached.
+     *
+     * @param deadline   time at which the threads stop, in nanoseconds
+     * @param timed      true if the deadline applies
+     * @param iterations number of games to play
+     */
+    private void runThreads(long deadline, boolean timed, long iterations) {
+        AtomicLong remaining = new AtomicLong(iterations);
+        long searchSeed = this.seed + this.nbSearches * this.parallelism;
+        long number = this.nbSearches;
+        this.nbSearches++;
+        this.searchNumber = number;
+
+        this.pool.invoke(new ParallelRange(0, this.parallelism, worker -> {
+            GameBoard board = new GameBoard(this.rootBoard);
+            int[] line = new int[board.getCptCasesAvailable() + 1];
+            SplittableRandom random = new SplittableRandom(searchSeed + worker);
+            while ((!timed || System.nanoTime() - deadline < 0) && this.stoppedSearch != number
+                    && remaining.getAndDecrement() > 0) {
+                iterate(board, line, random);
+            }
+        }));
+    }
+
+    /**
+     * Asks the running search to return as soon as its threads finish their current game.
+     * It may be called from any thread, and has no effect on the searches started afterwards.
+     */
+    public void stop() {
+        this.stoppedSearch = this.searchNumber;
+    }
+
+    /**
+     * Plays one game: selection and expansion in the tree, random moves until the end of the game,
+     * then update of the statistics of the nodes of the path.
+     *
+     * @param board  board of the thread
+     * @param line   buffer of the thread receiving the moves of the game
+     * @param random random generator of the thread
+     */
+    private void iterate(GameBoard board, int[] line, SplittableRandom random) {
+        board.copyFrom(this.rootBoard);
+        SearchNode node = this.root;
+        int score = this.rootScore;
+        int length = 0;
+        node.addVirtualLoss();
+
+        while (true) {
+            SearchNode[] children = node.getChildren();
+            if (children == null) {
+                if (node != this.root && node.getVisits() < EXPANSION_VISITS) {
+                    break;
+                }
+                children = node.expand(board);
+            }
+            if (children.length == 0) {
+                break;
+            }
+            node = select(node, children);
+            node.addVirtualLoss();
+            board.play(node.getMove());
+            score += node.getPoints();
+            line[length++] = node.getMove();
+        }
+
+        int move;
+        while ((move = board.getRandomMove(random)) != -1) {
+            line[length++] = move;
+            score += GameBoard.getMoveScore(board.play(move));
+        }
+
+        for (SearchNode visited = node; visited != null; visited = visited.getParent()) {
+            visited.update(score);
+        }
+        if (score > this.bestScore) {
+            recordBest(line, length, score);
+        }
+        this.nbIterations.incrementAndGet();
+        GameMetrics.solverNodesSearched(length);
+    }
+
+    /**
+     * Chooses the child with the best selection value. A child without any game is chosen first.
+     *
+     * @param parent   node whose child is chosen
+     * @param children children of the node
+     * @return chosen child
+     */
+    private SearchNode select(SearchNode parent, SearchNode[] children) {
+        double scale = Math.max(1, this.bestScore);
+        double logVisits = Math.log(Math.max(1, parent.getVisits()));
+        SearchNode best = children[0];
+        double bestValue = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < children.length; i++) {
+            SearchNode child = children[i];
+            int visits = child.getVisits();
+            if (visits == 0) {
+                return child;
+            }
+            double mean = child.getScoreSum() / visits / scale;
+            double variance = Math.max(0, child.getSquareSum() / visits / (scale * scale) - mean * mean);
+            double value = mean
+                    + this.explorationConstant * Math.sqrt(logVisits / visits)
+                    + Math.sqrt(variance + this.deviationConstant / visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Records a game as the best one found if no thread found a better one meanwhile.
+     *
+     * @param line   moves of the game, from the root position
+     * @param length number of moves
+     * @param score  score of the game
+     */
+    private synchronized void recordBest(int[] line, int length, int score) {
+        if (score > this.bestScore) {
+            this.bestLine = Arrays.copyOf(line, length);
+            this.bestScore = score;
+        }
+    }
+
+    /**
+     * Returns the first move of the best game found from the root position.
+     *
+     * @return index of a cell of the group to remove, -1 if no game was found
+     */
+    public synchronized int getBestMove() {
+        if (this.bestLine.length == 0) {
+            return -1;
+        }
+        return this.bestLine[0];
+    }
+
+    /**
+     * Returns the best game found from the root position.
+     *
+     * @return moves of the game and the points they earn from the root position
+     */
+    public synchronized Solution getBestSolution() {
+        return new Solution(this.bestLine.clone(), this.bestScore - this.rootScore);
+    }
+
+    /**
+     * Plays a real move on the root position. The subtree of the move becomes the tree, so the
+     * statistics gathered for the new position are kept. Must not be called during a search.
+     *
+     * @param move index of a cell of the group to remove, on the root board
+     * @throws IllegalArgumentException if the cell does not belong to a group of at least two cells
+     */
+    public synchronized void advance(int move) {
+        if (move < 0 || move >= this.rootBoard.getNbCols() * this.rootBoard.getNbRows()
+                || this.rootBoard.getGemTypeAt(move) == GameBoard.EMPTY
+                || this.rootBoard.getGroupSize(this.rootBoard.getGroupID(move)) < 2) {
+            throw new IllegalArgumentException("no group to remove at " + move);
+        }
+        int groupID = this.rootBoard.getGroupID(move);
+
+        SearchNode next = null;
+        SearchNode[] children = this.root.getChildren();
+        if (children != null) {
+            for (int i = 0; i < children.length && next == null; i++) {
+                if (this.rootBoard.getGroupID(children[i].getMove()) == groupID) {
+                    next = children[i];
+                }
+            }
+        }
+        boolean onBestLine = this.bestLine.length > 0 && this.rootBoard.getGroupID(this.bestLine[0]) == groupID;
+
+        int points = GameBoard.getMoveScore(this.rootBoard.play(move));
+        this.rootScore += points;
+        if (next == null) {
+            next = new SearchNode(null, move, points);
+        } else {
+            next.detach();
+        }
+        this.root = next;
+
+        if (onBestLine) {
+            this.bestLine = Arrays.copyOfRange(this.bestLine, 1, this.bestLine.length);
+        } else {
+            this.bestLine = new int[0];
+            this.bestScore = this.rootScore;
+        }
+    }
+
+    /**
+     * Replaces the tree by a new one searching from another position, of the same size as the first one.
+     * The statistics gathered are lost. Must not be called during a search.
+     *
+     * @param cells gem types of the cells of the new position, as given by <code>GameBoard.copyCells</code>
+     */
+    public synchronized void reset(byte[] cells) {
+        this.rootBoard.copyCellsFrom(cells);
+        this.rootBoard.updateGroups();
+        this.root = new SearchNode(null, -1, 0);
+        this.rootScore = 0;
+        this.bestScore = 0;
+        this.bestLine = new int[0];
+    }
+
+    /**
+     * Stops the threads of the engine. The engine cannot be used afterwards.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+
+/**
+ * The <code>MoveHistory</code> class keeps the moves of a game so they can be undone and redone.
+ * Each move is kept as a <code>MoveRecord</code>, whose size is proportional to the move, so the
+ * history of a long game on a large board takes much less memory than copies of the board.
+ * Undoing or redoing a move takes a time proportional to the move, not to the board.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class MoveHistory {
+
+    /** Moves played, the last one at the end */
+    private final ArrayList<MoveRecord> played;
+
+    /** Moves undone, the last one undone at the end */
+    private final ArrayList<MoveRecord> undone;
+
+    /**
+     * Constructor of an empty history.
+     */
+    public MoveHistory() {
+        this.played = new ArrayList<MoveRecord>();
+        this.undone = new ArrayList<MoveRecord>();
+    }
+
+    /**
+     * Adds a move just played. The moves undone can no longer be redone.
+     *
+     * @param record changes made by the move
+     */
+    public void add(MoveRecord record) {
+        this.played.add(record);
+        this.undone.clear();
+    }
+
+    /**
+     * Checks if a move can be undone.
+     *
+     * @return true if a move was played and not undone
+     */
+    public boolean canUndo() {
+        return !this.played.isEmpty();
+    }
+
+    /**
+     * Checks if a move can be redone.
+     *
+     * @return true if a move was undone and no move was played since
+     */
+    public boolean canRedo() {
+        return !this.undone.isEmpty();
+    }
+
+    /**
+     * Returns the number of moves played and not undone.
+     *
+     * @return number of moves
+     */
+    public int getNbMoves() {
+        return this.played.size();
+    }
+
+    /**
+     * Undoes the last move played on a board.
+     *
+     * @param board board on which the moves of the history were played
+     * @return the move undone, null if there is none
+     */
+    public MoveRecord undo(GameBoard board) {
+        if (this.played.isEmpty()) {
+            return null;
+        }
+        MoveRecord record = this.played.remove(this.played.size() - 1);
+        board.undo(record);
+        this.undone.add(record);
+        return record;
+    }
+
+    /**
+     * Plays again the last move undone on a board.
+     *
+     * @param board board on which the moves of the history were played
+     * @return the move redone, null if there is none
+     * @throws IllegalStateException if the board was modified since the move was undone
+     */
+    public MoveRecord redo(GameBoard board) {
+        if (this.undone.isEmpty()) {
+            return null;
+        }
+        MoveRecord record = this.undone.get(this.undone.size() - 1);
+        if (board.play(record.getMove()) != record.getNbCells()) {
+            throw new IllegalStateException("the board does not match the history");
+        }
+        this.undone.remove(this.undone.size() - 1);
+        this.played.add(record);
+        return record;
+    }
+}
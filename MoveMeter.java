@@ -0,0 +1,64 @@
+/**
+ * The <code>MoveMeter</code> class measures the moves played by one thread and records them in <code>GameMetrics</code>.
+ * A game keeps its meter, started before each move and stopped after it, so measuring a move allocates nothing.
+ * <p>
+ * When the metrics are not recorded, a meter does not read any clock. Otherwise every move is timed,
+ * and the memory allocated is measured on one move out of <code>ALLOCATION_SAMPLING</code>, because reading
+ * it costs as much as reading the clock.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class MoveMeter {
+
+    /** Number of moves per move whose allocated memory is measured */
+    private static final int ALLOCATION_SAMPLING = 16;
+
+    /** Time at which the current move started, in nanoseconds, or -1 if it is not measured */
+    private long startTime;
+
+    /** Bytes allocated by the thread when the current move started, or -1 if they are not measured */
+    private long startBytes;
+
+    /** Number of moves started while the metrics are recorded */
+    private long nbMoves;
+
+    /**
+     * Constructor of a meter.
+     */
+    public MoveMeter() {
+        this.startTime = -1;
+        this.startBytes = -1;
+        this.nbMoves = 0;
+    }
+
+    /**
+     * Starts measuring a move.
+     */
+    public void start() {
+        if (!GameMetrics.isEnabled()) {
+            this.startTime = -1;
+            return;
+        }
+        this.startBytes = this.nbMoves++ % ALLOCATION_SAMPLING == 0 ? GameMetrics.getThreadAllocatedBytes() : -1;
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Stops measuring the current move and records it, if a group was removed.
+     *
+     * @param groupSize number of cells removed, less than 2 if no group was removed
+     */
+    public void stop(int groupSize) {
+        if (this.startTime < 0) {
+            return;
+        }
+        long duration = System.nanoTime() - this.startTime;
+        this.startTime = -1;
+        if (groupSize < 2) {
+            return;
+        }
+        long allocatedBytes = this.startBytes < 0 ? -1 : GameMetrics.getThreadAllocatedBytes() - this.startBytes;
+        GameMetrics.movePlayed(groupSize, duration, allocatedBytes);
+    }
+}
@@ -0,0 +1,134 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The <code>MovePhaseEvent</code> class is a Java Flight Recorder event timing a phase of a move:
+ * the lookup of the group, its removal, the fall of the gems, the removal of the empty columns,
+ * the relabeling of the groups, the check of the end of the game, or the repaint of the grid.
+ * <p>
+ * The events are only recorded when a recording enables them, for example with
+ * <code>java -XX:StartFlightRecording:filename=game.jfr main</code>. Otherwise <code>start</code> returns null
+ * without allocating or reading the clock, so timing the phases costs a test per phase and moves stay
+ * allocation-free. A phase is timed as follows:
+ * <pre>
+ * MovePhaseEvent event = MovePhaseEvent.start(MovePhaseEvent.GRAVITY, nbCols, nbRows);
+ * ... phase ...
+ * MovePhaseEvent.stop(event);
+ * MovePhaseEvent.record(event, groupSize, nbAffectedColumns);
+ * </pre>
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+@Name("samegame.MovePhase")
+@Label("Move Phase")
+@Category("SameGame")
+@Description("Duration of a phase of a move")
+@StackTrace(false)
+public class MovePhaseEvent extends Event {
+
+    /** Phase looking for the cells of the group played */
+    public static final String GROUP_LOOKUP = "group lookup";
+
+    /** Phase removing the cells of the group */
+    public static final String REMOVAL = "removal";
+
+    /** Phase making the gems fall, like <code>GameLogic.updateFallCase</code> */
+    public static final String GRAVITY = "gravity";
+
+    /** Phase removing the empty columns, like <code>GameLogic.updateEmptyCol</code> */
+    public static final String COLUMN_COMPACTION = "column compaction";
+
+    /** Phase relabeling the groups, like <code>GameLogic.updateGroupCaseByID</code> */
+    public static final String RELABEL = "relabel";
+
+    /** Phase checking the end of the game, like <code>GameLogic.getGameEnd</code> */
+    public static final String END_CHECK = "end check";
+
+    /** Phase refreshing and painting the cells of the grid */
+    public static final String REPAINT = "repaint";
+
+    /** Type of the event, telling whether a recording enables it */
+    private static final EventType TYPE = EventType.getEventType(MovePhaseEvent.class);
+
+    /** Name of the phase */
+    @Label("Phase")
+    private String phase;
+
+    /** Number of columns of the board */
+    @Label("Board Columns")
+    private int boardColumns;
+
+    /** Number of rows of the board */
+    @Label("Board Rows")
+    private int boardRows;
+
+    /** Number of cells of the group played, 0 if the phase does not depend on a group */
+    @Label("Group Size")
+    private int groupSize;
+
+    /** Number of columns read or modified by the phase */
+    @Label("Affected Columns")
+    private int affectedColumns;
+
+    /**
+     * Constructor of an event, which must then be begun.
+     *
+     * @param phase        name of the phase, one of the constants of the class
+     * @param boardColumns number of columns of the board
+     * @param boardRows    number of rows of the board
+     */
+    public MovePhaseEvent(String phase, int boardColumns, int boardRows) {
+        this.phase = phase;
+        this.boardColumns = boardColumns;
+        this.boardRows = boardRows;
+    }
+
+    /**
+     * Starts timing a phase, if a recording enables the events.
+     *
+     * @param phase        name of the phase, one of the constants of the class
+     * @param boardColumns number of columns of the board
+     * @param boardRows    number of rows of the board
+     * @return begun event, or null if no recording enables the events
+     */
+    public static MovePhaseEvent start(String phase, int boardColumns, int boardRows) {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        MovePhaseEvent event = new MovePhaseEvent(phase, boardColumns, boardRows);
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Stops timing a phase.
+     *
+     * @param event event returned by <code>start</code>, possibly null
+     */
+    public static void stop(MovePhaseEvent event) {
+        if (event != null) {
+            event.end();
+        }
+    }
+
+    /**
+     * Records a stopped event, if it lasted longer than the threshold of the recording.
+     *
+     * @param event           event returned by <code>start</code>, possibly null
+     * @param groupSize       number of cells of the group played, 0 if the phase does not depend on a group
+     * @param affectedColumns number of columns read or modified by the phase
+     */
+    public static void record(MovePhaseEvent event, int groupSize, int affectedColumns) {
+        if (event != null && event.shouldCommit()) {
+            event.groupSize = groupSize;
+            event.affectedColumns = affectedColumns;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * The <code>MoveRecord</code> class describes the changes made by a move on a board, so the move can be undone:
+ * the removed cells and their gem type, and the columns removed because they became empty.
+ * The cells that fell are not stored, since their place before the move follows from the removed cells,
+ * so a record only takes space proportional to the move, whatever the size of the board.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class MoveRecord {
+
+    /** Gem type of the removed group */
+    private final byte gemType;
+
+    /** Indices of the removed cells, on the board before the move; the first one is the cell played */
+    private final int[] cells;
+
+    /** Positions of the removed columns on the board before the move, in ascending order */
+    private final int[] removedColumns;
+
+    /** Identifiers of the removed columns, in the same order */
+    private final int[] removedColumnIds;
+
+    /**
+     * Constructor of a record.
+     *
+     * @param gemType          gem type of the removed group
+     * @param cells            indices of the removed cells on the board before the move, the cell played first
+     * @param removedColumns   positions of the removed columns on the board before the move, in ascending order
+     * @param removedColumnIds identifiers of the removed columns
+     */
+    public MoveRecord(byte gemType, int[] cells, int[] removedColumns, int[] removedColumnIds) {
+        this.gemType = gemType;
+        this.cells = cells;
+        this.removedColumns = removedColumns;
+        this.removedColumnIds = removedColumnIds;
+    }
+
+    /**
+     * Returns the cell played.
+     *
+     * @return index of the cell on the board before the move
+     */
+    public int getMove() {
+        return this.cells[0];
+    }
+
+    /**
+     * Returns the gem type of the removed group.
+     *
+     * @return gem type
+     */
+    public byte getGemType() {
+        return this.gemType;
+    }
+
+    /**
+     * Returns the removed cells. The array must not be modified.
+     *
+     * @return indices of the cells on the board before the move
+     */
+    public int[] getCells() {
+        return this.cells;
+    }
+
+    /**
+     * Returns the number of removed cells.
+     *
+     * @return size of the removed group
+     */
+    public int getNbCells() {
+        return this.cells.length;
+    }
+
+    /**
+     * Returns the positions of the removed columns. The array must not be modified.
+     *
+     * @return positions on the board before the move, in ascending order
+     */
+    public int[] getRemovedColumns() {
+        return this.removedColumns;
+    }
+
+    /**
+     * Returns the identifiers of the removed columns. The array must not be modified.
+     *
+     * @return column identifiers, in the order of the positions
+     */
+    public int[] getRemovedColumnIds() {
+        return this.removedColumnIds;
+    }
+
+    /**
+     * Returns the points earned by the move.
+     *
+     * @return score of the move
+     */
+    public int getScore() {
+        return GameBoard.getMoveScore(this.cells.length);
+    }
+}
@@ -0,0 +1,385 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The <code>NestedMonteCarloSolver</code> class looks for a move sequence with a high score using
+ * a Nested Monte Carlo Search. A search of level 0 is a random playout; a search of level n tries every
+ * playable group, evaluates each resulting board with a search of level n - 1, and follows the best
+ * sequence found so far, one move at a time.
+ * <p>
+ * Every search evaluates the moves of a step in parallel on a fork/join pool: the searches of level 2 and above
+ * run a search of the level below per move, and the searches of level 1 run a playout per move. A playout runs
+ * in a board and a buffer owned by the worker thread, and does not allocate apart from its random generator.
+ * Each evaluation has its own random seed derived from the solver seed, so the result only depends on the seed,
+ * not on the number of threads, as long as the time budget is not reached.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class NestedMonteCarloSolver {
+
+    /** Level of the search */
+    private final int level;
+
+    /** Time budget of a resolution in milliseconds, 0 for a single search */
+    private final long timeBudget;
+
+    /** Seed of the random playouts */
+    private final long seed;
+
+    /** Pool evaluating the moves of the searches */
+    private final ForkJoinPool pool;
+
+    /** Board on which each thread plays its playouts */
+    private final ThreadLocal<GameBoard> threadBoards;
+
+    /** Moves of the playouts of each thread: number of moves, then the moves */
+    private final ThreadLocal<int[]> threadLines;
+
+    /** Solver finishing exactly the positions with few cells, null to search them with playouts */
+    private EndgameSolver endgameSolver;
+
+    /** Time at which the running resolution stops, in nanoseconds */
+    private volatile long deadline;
+
+    /** true if the running resolution has a time budget */
+    private volatile boolean timed;
+
+    /**
+     * Constructor of a solver using all the cores of the machine.
+     *
+     * @param level      level of the search, at least 1
+     * @param timeBudget time budget of a resolution in milliseconds, 0 for a single search
+     * @param seed       seed of the random playouts
+     */
+    public NestedMonteCarloSolver(int level, long timeBudget, long seed) {
+        this(level, timeBudget, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor of a solver.
+     *
+     * @param level       level of the search, at least 1
+     * @param timeBudget  time budget of a resolution in milliseconds, 0 for a single search
+     * @param seed        seed of the random playouts
+     * @param parallelism number of threads evaluating the moves
+     */
+    public NestedMonteCarloSolver(int level, long timeBudget, long seed, int parallelism) {
+        if (level < 1) {
+            throw new IllegalArgumentException("invalid search level " + level);
+        }
+        if (timeBudget < 0) {
+            throw new IllegalArgumentException("invalid time budget " + timeBudget);
+        }
+        this.level = level;
+        this.timeBudget = timeBudget;
+        this.seed = seed;
+        this.pool = new ForkJoinPool(parallelism);
+        this.threadBoards = new ThreadLocal<GameBoard>();
+        this.threadLines = new ThreadLocal<int[]>();
+    }
+
+    /**
+     * Returns the level of the search.
+     *
+     * @return level of the search
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Sets the solver finishing the positions with few remaining cells. When a search of level 1
+     * reaches such a position, it computes the best finish exactly instead of running playouts.
+     *
+     * @param endgameSolver exact solver, null to search every position with playouts
+     */
+    public void setEndgameSolver(EndgameSolver endgameSolver) {
+        this.endgameSolver = endgameSolver;
+    }
+
+    /**
+     * Searches for the move sequence with the best score from a board.
+     * With a time budget, searches with new seeds are started until the budget is spent,
+     * and a search still running when it is reached returns the best sequence it found so far.
+     *
+     * @param start starting board, left unchanged
+     * @return best sequence found, empty if no group can be removed
+     */
+    public Solution solve(GameBoard start) {
+        GameBoard root = new GameBoard(start);
+        root.updateGroups();
+        this.timed = this.timeBudget > 0;
+        this.deadline = System.nanoTime() + this.timeBudget * 1000000L;
+
+        Solution best = new Solution(new int[0], 0);
+        for (long iteration = 0; ; iteration++) {
+            Solution solution = search(root, this.level, mix(this.seed + iteration));
+            if (solution.getScore() > best.getScore()) {
+                best = solution;
+            }
+            if (!this.timed || isExpired() || root.getNbPlayableGroups() == 0) {
+                return best;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the time budget of the running resolution is spent.
+     *
+     * @return true if the searches must stop
+     */
+    private boolean isExpired() {
+        return this.timed && System.nanoTime() - this.deadline >= 0;
+    }
+
+    /**
+     * Runs a search of a given level from a board.
+     *
+     * @param position board to search from, left unchanged
+     * @param level    level of the search
+     * @param seed     seed of the random playouts
+     * @return best sequence found from the board
+     */
+    private Solution search(GameBoard position, int level, long seed) {
+        if (level == 1) {
+            return searchLevelOne(position, seed);
+        }
+        return searchNested(position, level, seed);
+    }
+
+    /**
+     * Runs a search of level 2 or above: the moves of each step are evaluated in parallel
+     * by searches of the level below, and the best sequence found so far is followed.
+     *
+     * @param position board to search from, left unchanged
+     * @param level    level of the search
+     * @param seed     seed of the random playouts
+     * @return best sequence found from the board
+     */
+    private Solution searchNested(GameBoard position, int level, long seed) {
+        GameBoard current = new GameBoard(position);
+        int[] bestLine = new int[0];
+        int bestScore = 0;
+        int[] prefix = new int[position.getCptCasesAvailable()];
+        int depth = 0;
+        int prefixScore = 0;
+
+        while (current.getNbPlayableGroups() > 0 && !isExpired()) {
+            int[] moves = getPlayableMoves(current);
+            Solution[] results = new Solution[moves.length];
+            long stepSeed = mix(seed + depth);
+            GameBoard parent = current;
+
+            ParallelRange task = new ParallelRange(0, moves.length, k -> {
+                GameBoard child = new GameBoard(parent);
+                int points = GameBoard.getMoveScore(child.play(moves[k]));
+                Solution result = search(child, level - 1, mix(stepSeed + k));
+                results[k] = new Solution(result.getMoves(), points + result.getScore());
+            });
+            if (ForkJoinTask.getPool() == this.pool) {
+                task.invoke();
+            } else {
+                this.pool.invoke(task);
+            }
+            GameMetrics.solverNodesSearched(moves.length);
+
+            // the first best move is kept, so the result does not depend on the scheduling
+            for (int k = 0; k < moves.length; k++) {
+                if (prefixScore + results[k].getScore() > bestScore || bestLine.length == 0) {
+                    bestScore = prefixScore + results[k].getScore();
+                    bestLine = new int[depth + 1 + results[k].getNbMoves()];
+                    System.arraycopy(prefix, 0, bestLine, 0, depth);
+                    bestLine[depth] = moves[k];
+                    System.arraycopy(results[k].getMoves(), 0, bestLine, depth + 1, results[k].getNbMoves());
+                }
+            }
+
+            prefix[depth] = bestLine[depth];
+            prefixScore += GameBoard.getMoveScore(current.play(bestLine[depth]));
+            depth++;
+        }
+        return new Solution(bestLine, bestScore);
+    }
+
+    /**
+     * Runs a search of level 1: the moves of each step are evaluated in parallel by random playouts,
+     * and the best sequence found so far is followed. Only the score of a playout is kept: the playout
+     * of the best move is played again to get its moves, from the same seed.
+     *
+     * @param position board to search from, left unchanged
+     * @param seed     seed of the random playouts
+     * @return best sequence found from the board
+     */
+    private Solution searchLevelOne(GameBoard position, long seed) {
+        GameBoard current = new GameBoard(position);
+        int maxMoves = position.getCptCasesAvailable() / 2 + 1;
+        int[] bestLine = new int[maxMoves];
+        int[] moves = new int[maxMoves];
+        int[] scores = new int[maxMoves];
+        int[] lengths = new int[maxMoves];
+        int bestLength = 0;
+        int bestScore = 0;
+        int depth = 0;
+        int prefixScore = 0;
+
+        while (current.getNbPlayableGroups() > 0 && !isExpired()) {
+            if (this.endgameSolver != null && this.endgameSolver.canSolve(current)) {
+                Solution finish = this.endgameSolver.solve(current);
+                if (prefixScore + finish.getScore() > bestScore || bestLength <= depth) {
+                    bestScore = prefixScore + finish.getScore();
+                    System.arraycopy(finish.getMoves(), 0, bestLine, depth, finish.getNbMoves());
+                    bestLength = depth + finish.getNbMoves();
+                }
+                break;
+            }
+
+            int nbMoves = 0;
+            for (int groupID = 0; groupID < current.getNbGroups(); groupID++) {
+                if (current.getGroupSize(groupID) >= 2) {
+                    moves[nbMoves++] = current.getGroupStart(groupID);
+                }
+            }
+            long stepSeed = mix(seed + depth);
+            GameBoard parent = current;
+            ParallelRange task = new ParallelRange(0, nbMoves, k -> {
+                int[] line = getThreadLine(parent);
+                scores[k] = evaluate(parent, moves[k], mix(stepSeed + k), line);
+                lengths[k] = line[0];
+            });
+            if (ForkJoinTask.getPool() == this.pool) {
+                task.invoke();
+            } else {
+                this.pool.invoke(task);
+            }
+
+            // the first best move is kept, so the result does not depend on the scheduling
+            long nbNodes = 0;
+            int best = 0;
+            for (int k = 0; k < nbMoves; k++) {
+                nbNodes += 1 + lengths[k];
+                if (scores[k] > scores[best]) {
+                    best = k;
+                }
+            }
+            GameMetrics.solverNodesSearched(nbNodes);
+            if (prefixScore + scores[best] > bestScore || bestLength <= depth) {
+                int[] line = getThreadLine(current);
+                bestScore = prefixScore + evaluate(current, moves[best], mix(stepSeed + best), line);
+                bestLine[depth] = moves[best];
+                System.arraycopy(line, 1, bestLine, depth + 1, line[0]);
+                bestLength = depth + 1 + line[0];
+            }
+
+            prefixScore += GameBoard.getMoveScore(current.play(bestLine[depth]));
+            depth++;
+        }
+        return new Solution(Arrays.copyOf(bestLine, bestLength), bestScore);
+    }
+
+    /**
+     * Evaluates a move by a random playout, in the board of the calling thread.
+     *
+     * @param position board before the move, left unchanged
+     * @param move     index of a cell of the group to remove
+     * @param seed     seed of the playout
+     * @param line     array receiving the number of moves of the playout, then its moves
+     * @return points of the move and of the playout
+     */
+    private int evaluate(GameBoard position, int move, long seed, int[] line) {
+        GameBoard child = getThreadBoard(position);
+        child.copyFrom(position);
+        int points = GameBoard.getMoveScore(child.play(move));
+        return points + playout(child, new SplittableRandom(seed), line);
+    }
+
+    /**
+     * Plays random moves on a board until no group can be removed.
+     *
+     * @param board  board to play on, modified
+     * @param random random generator choosing the moves
+     * @param line   array receiving the number of moves played, then the moves
+     * @return score of the moves played
+     */
+    private static int playout(GameBoard board, SplittableRandom random, int[] line) {
+        int nbMoves = 0;
+        int total = 0;
+        int move;
+        while ((move = board.getRandomMove(random)) != -1) {
+            line[++nbMoves] = move;
+            total += GameBoard.getMoveScore(board.play(move));
+        }
+        line[0] = nbMoves;
+        return total;
+    }
+
+    /**
+     * Returns one cell of every playable group of a board.
+     *
+     * @param board board whose groups are up to date
+     * @return the moves, in group identifier order
+     */
+    private static int[] getPlayableMoves(GameBoard board) {
+        int[] moves = new int[board.getNbPlayableGroups()];
+        int k = 0;
+        for (int groupID = 0; groupID < board.getNbGroups() && k < moves.length; groupID++) {
+            if (board.getGroupSize(groupID) >= 2) {
+                moves[k++] = board.getGroupStart(groupID);
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the board of the calling thread for the playouts, created at the size of a board.
+     *
+     * @param board board giving the size
+     * @return board of the playouts
+     */
+    private GameBoard getThreadBoard(GameBoard board) {
+        GameBoard child = this.threadBoards.get();
+        if (child == null || child.getNbCols() != board.getNbCols() || child.getNbRows() != board.getNbRows()) {
+            child = new GameBoard(board.getNbCols(), board.getNbRows());
+            this.threadBoards.set(child);
+        }
+        return child;
+    }
+
+    /**
+     * Returns the playout buffer of the calling thread, large enough for any playout on a board.
+     *
+     * @param board board giving the size
+     * @return playout line
+     */
+    private int[] getThreadLine(GameBoard board) {
+        int length = board.getNbCols() * board.getNbRows() + 1;
+        int[] line = this.threadLines.get();
+        if (line == null || line.length != length) {
+            line = new int[length];
+            this.threadLines.set(line);
+        }
+        return line;
+    }
+
+    /**
+     * Mixes the bits of a seed, so that close seeds give unrelated random sequences.
+     *
+     * @param value seed to mix
+     * @return mixed seed
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Stops the threads of the solver. The solver cannot be used afterwards.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+}
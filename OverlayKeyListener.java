@@ -0,0 +1,33 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+/**
+ * The <code>OverlayKeyListener</code> class contains the listener for the key showing the performance overlay
+ * of the SameGame game window. It shows the overlay if it is hidden, and hides it otherwise.
+ * 
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class OverlayKeyListener implements ActionListener {
+    /** reference to the game window showing the overlay */
+    private GameFrame gameFrame;
+
+    /** 
+     * Constructor of the overlay key listener associated with a given game window.
+     * @param gameFrame the game window whose overlay must be toggled
+     */ 
+    public OverlayKeyListener(GameFrame gameFrame) {
+        super();
+        this.gameFrame = gameFrame;
+    }
+    
+    /** 
+     * Method triggered when the key is pressed.
+     * Shows or hides the performance overlay.
+     * @param e the key event
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        this.gameFrame.togglePerformanceOverlay();
+    }
+}
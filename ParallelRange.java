@@ -0,0 +1,50 @@
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * The <code>ParallelRange</code> class runs a task for every index of a range on a fork/join pool.
+ * The range is split in halves until a single index remains, so idle threads steal the
+ * remaining halves and all cores stay busy even when the tasks have very different costs.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class ParallelRange extends RecursiveAction {
+
+    /** First index of the range */
+    private final int from;
+
+    /** Index after the last index of the range */
+    private final int to;
+
+    /** Task run for every index */
+    private final IntConsumer task;
+
+    /**
+     * Constructor of the range.
+     *
+     * @param from first index of the range
+     * @param to   index after the last index of the range
+     * @param task task run for every index
+     */
+    public ParallelRange(int from, int to, IntConsumer task) {
+        this.from = from;
+        this.to = to;
+        this.task = task;
+    }
+
+    /**
+     * Runs the task for every index of the range, splitting it between the threads of the pool.
+     */
+    @Override
+    protected void compute() {
+        if (this.to - this.from <= 1) {
+            if (this.to > this.from) {
+                this.task.accept(this.from);
+            }
+            return;
+        }
+        int middle = (this.from + this.to) >>> 1;
+        invokeAll(new ParallelRange(this.from, middle, this.task), new ParallelRange(middle, this.to, this.task));
+    }
+}
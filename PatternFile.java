@@ -0,0 +1,156 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The <code>PatternFile</code> class reads the pattern files of the SameGame.
+ * A pattern file has one line per row and one character per column:
+ * 'R' for a ruby, 'V' for an emerald, 'B' for a diamond and 'E' for an empty cell. All the lines have the same length.
+ * The empty cells must be where a game can leave them: above the gems of their column, and the empty columns last,
+ * so a board exported during a game can be loaded again.
+ * Files in the binary format of <code>BoardFile</code> are read as well.
+ * <p>
+ * A file is read in one block, then its bytes are checked and decoded at once, without decoding characters.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class PatternFile {
+
+    /**
+     * Reads a pattern file.
+     *
+     * @param file file to read
+     * @return grid of gem types, indexed by [row][column], or null if the content of the file is not a valid pattern
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static int[][] read(File file) throws IOException {
+        try {
+            return load(file.toPath());
+        } catch (PatternFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a pattern file, telling where its content is not valid.
+     *
+     * @param file file to read
+     * @return grid of gem types, indexed by [row][column]
+     * @throws PatternFormatException if the content of the file is not a valid pattern
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static int[][] load(Path file) throws IOException {
+        if (BoardFile.isBoardFile(file)) {
+            int[][] map = BoardFile.read(file);
+            if (map == null) {
+                throw new PatternFormatException("invalid binary board", 1, 1);
+            }
+            return map;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new PatternFormatException("file too large", 1, 1);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // reads the whole file
+            }
+            buffer.flip();
+            return parse(buffer);
+        }
+    }
+
+    /**
+     * Decodes the content of a pattern file. Lines end with "\n", "\r\n" or "\r", the last one being optional.
+     *
+     * @param buffer bytes of the file, between the position and the limit
+     * @return grid of gem types, indexed by [row][column]
+     * @throws PatternFormatException if the bytes are not a valid pattern
+     */
+    public static int[][] parse(ByteBuffer buffer) throws PatternFormatException {
+        int[] cells = new int[Math.max(16, buffer.remaining())];
+        int nbCells = 0;
+        int lineLength = -1;
+        int line = 1;
+        int column = 1;
+
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n' || b == '\r') {
+                if (b == '\r' && buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+                    buffer.get();
+                }
+                endLine(line, column, lineLength);
+                lineLength = column - 1;
+                line++;
+                column = 1;
+                continue;
+            }
+
+            int gemType;
+            if (b == 'R') {
+                gemType = 0;
+            } else if (b == 'V') {
+                gemType = 1;
+            } else if (b == 'B') {
+                gemType = 2;
+            } else if (b == 'E') {
+                gemType = GameBoard.EMPTY;
+            } else {
+                String character = b >= 0x20 && b < 0x7F ? "'" + (char) b + "'" : String.format("byte 0x%02X", b & 0xFF);
+                throw new PatternFormatException("unexpected " + character + ", expected R, V, B or E", line, column);
+            }
+            if (lineLength != -1 && column > lineLength) {
+                throw new PatternFormatException("line longer than the first one, of " + lineLength + " cells",
+                        line, column);
+            }
+            cells[nbCells++] = gemType;
+            column++;
+        }
+        if (column > 1) {
+            endLine(line, column, lineLength);
+            lineLength = column - 1;
+        }
+        if (lineLength == -1) {
+            throw new PatternFormatException("empty file", 1, 1);
+        }
+
+        int nbRows = nbCells / lineLength;
+        int[][] map = new int[nbRows][];
+        for (int row = 0; row < nbRows; row++) {
+            map[row] = Arrays.copyOfRange(cells, row * lineLength, (row + 1) * lineLength);
+        }
+        int[] floating = GameBoard.findFloatingCell(map);
+        if (floating != null) {
+            String reason = map[floating[0]][floating[1]] == GameBoard.EMPTY ? "empty cell under a gem"
+                    : "gem in a column after an empty column";
+            throw new PatternFormatException(reason, floating[0] + 1, floating[1] + 1);
+        }
+        return map;
+    }
+
+    /**
+     * Checks the length of a line when its end is reached.
+     *
+     * @param line       line ending, from 1
+     * @param column     column after the last cell of the line
+     * @param lineLength length of the first line, -1 if the line is the first one
+     * @throws PatternFormatException if the line is empty or shorter than the first one
+     */
+    private static void endLine(int line, int column, int lineLength) throws PatternFormatException {
+        if (column == 1) {
+            throw new PatternFormatException("empty line", line, column);
+        }
+        if (lineLength != -1 && column - 1 < lineLength) {
+            throw new PatternFormatException("line shorter than the first one, of " + lineLength + " cells",
+                    line, column);
+        }
+    }
+}
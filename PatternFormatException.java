@@ -0,0 +1,61 @@
+import java.io.IOException;
+
+/**
+ * The <code>PatternFormatException</code> class is thrown when the content of a pattern file is not a valid pattern.
+ * It tells where the first error was found, so that the file can be fixed.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class PatternFormatException extends IOException {
+
+    /** Description of the error, without its position */
+    private final String reason;
+
+    /** Line of the error, from 1 */
+    private final int line;
+
+    /** Column of the error, from 1 */
+    private final int column;
+
+    /**
+     * Constructor of the exception.
+     *
+     * @param reason description of the error
+     * @param line   line of the error, from 1
+     * @param column column of the error, from 1
+     */
+    public PatternFormatException(String reason, int line, int column) {
+        super("line " + line + ", column " + column + ": " + reason);
+        this.reason = reason;
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Returns the description of the error, without its position.
+     *
+     * @return description of the error
+     */
+    public String getReason() {
+        return this.reason;
+    }
+
+    /**
+     * Returns the line of the error.
+     *
+     * @return line, from 1
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Returns the column of the error.
+     *
+     * @return column, from 1
+     */
+    public int getColumn() {
+        return this.column;
+    }
+}
@@ -0,0 +1,171 @@
+import java.nio.file.Path;
+
+/**
+ * The <code>PatternInfo</code> class is the entry of a pattern file in a <code>PatternLibrary</code>:
+ * the dimensions of the pattern, its number of gems of each type and its hash for a valid file,
+ * or the error found and its position for an invalid one.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class PatternInfo {
+
+    /** Pattern file */
+    private final Path file;
+
+    /** Number of columns, 0 if the file is invalid */
+    private final int nbCols;
+
+    /** Number of rows, 0 if the file is invalid */
+    private final int nbRows;
+
+    /** Number of gems of each type, null if the file is invalid */
+    private final int[] gemCounts;
+
+    /** Zobrist hash of the pattern, as given by <code>GameBoard.getHash</code> */
+    private final long hash;
+
+    /** Description of the error, null if the file is valid */
+    private final String error;
+
+    /** Line of the error, from 1, or 0 if the error has no position */
+    private final int errorLine;
+
+    /** Column of the error, from 1, or 0 if the error has no position */
+    private final int errorColumn;
+
+    /**
+     * Constructor of the entry of a valid file.
+     *
+     * @param file  pattern file
+     * @param board board of the pattern
+     */
+    public PatternInfo(Path file, GameBoard board) {
+        this.file = file;
+        this.nbCols = board.getNbCols();
+        this.nbRows = board.getNbRows();
+        this.gemCounts = new int[GameBoard.NB_GEM_TYPES];
+        for (int gemType = 0; gemType < GameBoard.NB_GEM_TYPES; gemType++) {
+            this.gemCounts[gemType] = board.getGemCount(gemType);
+        }
+        this.hash = board.getHash();
+        this.error = null;
+        this.errorLine = 0;
+        this.errorColumn = 0;
+    }
+
+    /**
+     * Constructor of the entry of an invalid file.
+     *
+     * @param file        pattern file
+     * @param error       description of the error
+     * @param errorLine   line of the error, from 1, or 0 if the error has no position
+     * @param errorColumn column of the error, from 1, or 0 if the error has no position
+     */
+    public PatternInfo(Path file, String error, int errorLine, int errorColumn) {
+        this.file = file;
+        this.nbCols = 0;
+        this.nbRows = 0;
+        this.gemCounts = null;
+        this.hash = 0;
+        this.error = error;
+        this.errorLine = errorLine;
+        this.errorColumn = errorColumn;
+    }
+
+    /**
+     * Returns the pattern file.
+     *
+     * @return path of the file
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Tells if the file holds a valid pattern.
+     *
+     * @return true if the file is valid
+     */
+    public boolean isValid() {
+        return this.error == null;
+    }
+
+    /**
+     * Returns the number of columns of the pattern.
+     *
+     * @return number of columns, 0 if the file is invalid
+     */
+    public int getNbCols() {
+        return this.nbCols;
+    }
+
+    /**
+     * Returns the number of rows of the pattern.
+     *
+     * @return number of rows, 0 if the file is invalid
+     */
+    public int getNbRows() {
+        return this.nbRows;
+    }
+
+    /**
+     * Returns the number of gems of a type in the pattern.
+     *
+     * @param gemType gem type, between 0 and GameBoard.NB_GEM_TYPES - 1
+     * @return number of gems, 0 if the file is invalid
+     */
+    public int getGemCount(int gemType) {
+        return this.gemCounts == null ? 0 : this.gemCounts[gemType];
+    }
+
+    /**
+     * Returns the hash of the pattern. Two files holding the same pattern have the same hash,
+     * but patterns of different dimensions may share it, so the dimensions must be compared too.
+     *
+     * @return Zobrist hash of the pattern, 0 if the file is invalid
+     */
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Returns the error found in the file.
+     *
+     * @return description of the error, null if the file is valid
+     */
+    public String getError() {
+        return this.error;
+    }
+
+    /**
+     * Returns the line of the error found in the file.
+     *
+     * @return line, from 1, or 0 if the file is valid or the error has no position
+     */
+    public int getErrorLine() {
+        return this.errorLine;
+    }
+
+    /**
+     * Returns the column of the error found in the file.
+     *
+     * @return column, from 1, or 0 if the file is valid or the error has no position
+     */
+    public int getErrorColumn() {
+        return this.errorColumn;
+    }
+
+    /**
+     * Returns the name of the file and the dimensions of the pattern, as shown in the menu.
+     *
+     * @return description of the entry
+     */
+    @Override
+    public String toString() {
+        if (!isValid()) {
+            return this.file.getFileName() + " (invalid)";
+        }
+        return this.file.getFileName() + " (" + this.nbCols + "x" + this.nbRows + ")";
+    }
+}
@@ -0,0 +1,246 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The <code>PatternLibrary</code> class is an index of the pattern files of a directory tree.
+ * The files are found recursively, then read and validated in parallel, each file in a single bulk read.
+ * The index keeps, for every file, the dimensions of its pattern, its number of gems of each type and
+ * its hash, or the first error found in the file with its line and column, so patterns can be listed,
+ * searched and checked without reading the files again.
+ * <p>
+ * Usage: <code>java PatternLibrary [-j jobs] path...</code> prints the index as tab-separated lines:
+ * <pre>
+ * file	cols	rows	rubies	emeralds	diamonds	hash
+ * </pre>
+ * and the errors on the error output, as <code>file:line:column: error</code>.
+ * The exit status is 1 if a file is invalid.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class PatternLibrary {
+
+    /** Entries of all the files, in the order of their paths */
+    private final PatternInfo[] entries;
+
+    /** Valid entries, in the order of their paths */
+    private final PatternInfo[] patterns;
+
+    /** Valid entries of each hash, in the order of their paths: boards of different dimensions may share a hash */
+    private final HashMap<Long, ArrayList<PatternInfo>> byHash;
+
+    /**
+     * Constructor of a library from its entries.
+     *
+     * @param entries entries of all the files, in the order of their paths
+     */
+    private PatternLibrary(PatternInfo[] entries) {
+        this.entries = entries;
+        ArrayList<PatternInfo> valid = new ArrayList<PatternInfo>();
+        this.byHash = new HashMap<Long, ArrayList<PatternInfo>>();
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].isValid()) {
+                valid.add(entries[i]);
+                this.byHash.computeIfAbsent(entries[i].getHash(), hash -> new ArrayList<PatternInfo>()).add(entries[i]);
+            }
+        }
+        this.patterns = valid.toArray(new PatternInfo[valid.size()]);
+    }
+
+    /**
+     * Finds, reads and validates the pattern files of files and directories.
+     *
+     * @param paths files and directories, whose files are found recursively
+     * @param jobs  number of files read at the same time
+     * @return index of the files
+     * @throws IOException if a path does not exist or a directory cannot be listed
+     */
+    public static PatternLibrary scan(String[] paths, int jobs) throws IOException {
+        File[] files = listFiles(paths);
+        PatternInfo[] entries = new PatternInfo[files.length];
+        ForkJoinPool pool = new ForkJoinPool(jobs);
+        try {
+            pool.invoke(new ParallelRange(0, files.length, i -> entries[i] = validate(files[i].toPath())));
+        } finally {
+            pool.shutdown();
+        }
+        return new PatternLibrary(entries);
+    }
+
+    /**
+     * Reads and validates a pattern file.
+     *
+     * @param file pattern file, in the text format or in the binary format of <code>BoardFile</code>
+     * @return entry of the file, holding the error if the file cannot be read or is not a valid pattern
+     */
+    public static PatternInfo validate(Path file) {
+        try {
+            return new PatternInfo(file, new GameBoard(PatternFile.load(file)));
+        } catch (PatternFormatException e) {
+            return new PatternInfo(file, e.getReason(), e.getLine(), e.getColumn());
+        } catch (IOException e) {
+            return new PatternInfo(file, "cannot read the file: " + e, 0, 0);
+        }
+    }
+
+    /**
+     * Lists the files of files and directories: the given files, and the files found recursively
+     * in the given directories, hidden files excepted, sorted by path.
+     *
+     * @param paths files and directories
+     * @return files found
+     * @throws IOException if a path does not exist or a directory cannot be listed
+     */
+    public static File[] listFiles(String[] paths) throws IOException {
+        ArrayList<File> files = new ArrayList<File>();
+        for (int i = 0; i < paths.length; i++) {
+            File path = new File(paths[i]);
+            if (path.isDirectory()) {
+                addDirectory(path, files);
+            } else if (path.isFile()) {
+                files.add(path);
+            } else {
+                throw new IOException("no such file or directory: " + paths[i]);
+            }
+        }
+        return files.toArray(new File[files.size()]);
+    }
+
+    /**
+     * Adds the files of a directory and of its subdirectories, sorted by name.
+     *
+     * @param directory directory to list
+     * @param files     list receiving the files
+     * @throws IOException if the directory cannot be listed
+     */
+    private static void addDirectory(File directory, ArrayList<File> files) throws IOException {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            throw new IOException("cannot list directory " + directory);
+        }
+        Arrays.sort(children);
+        for (int i = 0; i < children.length; i++) {
+            if (children[i].isHidden()) {
+                continue;
+            }
+            if (children[i].isDirectory()) {
+                addDirectory(children[i], files);
+            } else if (children[i].isFile()) {
+                files.add(children[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the entries of all the files. The array must not be modified.
+     *
+     * @return entries, in the order of the paths
+     */
+    public PatternInfo[] getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * Returns the entries of the valid files. The array must not be modified.
+     *
+     * @return valid entries, in the order of the paths
+     */
+    public PatternInfo[] getPatterns() {
+        return this.patterns;
+    }
+
+    /**
+     * Returns the number of invalid files.
+     *
+     * @return number of files that cannot be read or are not valid patterns
+     */
+    public int getNbInvalid() {
+        return this.entries.length - this.patterns.length;
+    }
+
+    /**
+     * Finds a pattern by its dimensions and its hash, for example to find whether a pattern is already
+     * in the library. The hash alone does not tell a pattern from the same cells in a grid of other
+     * dimensions, such as a row and a column of the same gems.
+     *
+     * @param nbCols number of columns of the pattern
+     * @param nbRows number of rows of the pattern
+     * @param hash   Zobrist hash of the pattern, as given by <code>GameBoard.getHash</code>
+     * @return first valid entry with these dimensions and this hash, in the order of the paths, or null if there is none
+     */
+    public PatternInfo findByHash(int nbCols, int nbRows, long hash) {
+        ArrayList<PatternInfo> candidates = this.byHash.get(hash);
+        if (candidates == null) {
+            return null;
+        }
+        for (PatternInfo candidate : candidates) {
+            if (candidate.getNbCols() == nbCols && candidate.getNbRows() == nbRows) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Prints the usage of the command and exits.
+     */
+    private static void usage() {
+        System.err.println("usage: java PatternLibrary [-j jobs] path...");
+        System.exit(2);
+    }
+
+    /**
+     * Entry point printing the index of pattern files and directories.
+     *
+     * @param args options followed by the files and directories to index
+     */
+    public static void main(String[] args) {
+        int jobs = Runtime.getRuntime().availableProcessors();
+
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i += 2) {
+                if (i + 1 >= args.length || !args[i].equals("-j")) {
+                    usage();
+                }
+                jobs = Integer.parseInt(args[i + 1]);
+            }
+        } catch (NumberFormatException e) {
+            usage();
+        }
+        if (i == args.length || jobs < 1) {
+            usage();
+        }
+
+        long start = System.nanoTime();
+        PatternLibrary library = null;
+        try {
+            library = scan(Arrays.copyOfRange(args, i, args.length), jobs);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+        long time = (System.nanoTime() - start) / 1000000L;
+
+        System.out.println("file\tcols\trows\trubies\temeralds\tdiamonds\thash");
+        PatternInfo[] entries = library.getEntries();
+        for (int j = 0; j < entries.length; j++) {
+            PatternInfo entry = entries[j];
+            if (entry.isValid()) {
+                System.out.println(entry.getFile() + "\t" + entry.getNbCols() + "\t" + entry.getNbRows()
+                        + "\t" + entry.getGemCount(0) + "\t" + entry.getGemCount(1) + "\t" + entry.getGemCount(2)
+                        + "\t" + String.format("%016x", entry.getHash()));
+            } else {
+                System.err.println(entry.getFile() + ":" + entry.getErrorLine() + ":" + entry.getErrorColumn()
+                        + ": " + entry.getError());
+            }
+        }
+        System.err.println(entries.length + " files, " + library.getNbInvalid() + " invalid, " + time + " ms");
+        System.exit(library.getNbInvalid() == 0 ? 0 : 1);
+    }
+}
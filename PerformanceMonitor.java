@@ -0,0 +1,229 @@
+import java.util.Arrays;
+import javax.swing.SwingUtilities;
+
+/**
+ * The <code>PerformanceMonitor</code> class measures how fast a game window answers the player:
+ * the paint passes per second, the time from a click to the end of the repaint of its move,
+ * and the number of repaint requests a move makes.
+ * <p>
+ * The listeners tell the monitor when a click starts and ends, and the cells tell it when they are
+ * painted or asked to repaint. A paint pass paints every cell waiting for it in a single event, so the
+ * first cell painted schedules an event that runs once the pass is over, which ends the pass. Nothing is
+ * measured while the monitor is disabled, and an enabled monitor only allocates one event per paint pass.
+ * All the methods must be called on the Swing event thread.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class PerformanceMonitor {
+
+    /** Number of the last moves whose latency is kept */
+    private static final int NB_LATENCIES = 256;
+
+    /** true if the monitor measures */
+    private boolean enabled;
+
+    /** Time at which the click being measured started, in nanoseconds, -1 if there is none */
+    private long clickTime;
+
+    /** true if the click being measured played a move, which is measured until its repaint */
+    private boolean clickPlayed;
+
+    /** Repaint requests made since the click being measured started */
+    private int clickRepaintRequests;
+
+    /** true if the end of the current paint pass is scheduled */
+    private boolean passScheduled;
+
+    /** Task ending the current paint pass */
+    private final Runnable passEnd;
+
+    /** Number of paint passes */
+    private long nbPaintPasses;
+
+    /** Latencies of the last moves, in nanoseconds, as a circular buffer */
+    private long[] latencies;
+
+    /** Number of moves measured */
+    private long nbMoves;
+
+    /** Latency of the last move, in nanoseconds */
+    private long lastLatency;
+
+    /** Repaint requests of the last move */
+    private int lastRepaintRequests;
+
+    /** Repaint requests of all the moves measured */
+    private long totalRepaintRequests;
+
+    /**
+     * Constructor of a disabled monitor.
+     */
+    public PerformanceMonitor() {
+        this.passEnd = this::paintPassFinished;
+        this.latencies = new long[NB_LATENCIES];
+        reset();
+    }
+
+    /**
+     * Forgets every measure.
+     */
+    private void reset() {
+        this.clickTime = -1;
+        this.clickPlayed = false;
+        this.clickRepaintRequests = 0;
+        this.nbPaintPasses = 0;
+        this.nbMoves = 0;
+        this.lastLatency = 0;
+        this.lastRepaintRequests = 0;
+        this.totalRepaintRequests = 0;
+    }
+
+    /**
+     * Starts or stops the measures. Starting forgets the previous measures.
+     *
+     * @param enabled true to measure
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            reset();
+        }
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns true if the monitor measures.
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Called when a click on the grid starts being handled.
+     */
+    public void clickStarted() {
+        if (!this.enabled) {
+            return;
+        }
+        this.clickTime = System.nanoTime();
+        this.clickPlayed = false;
+        this.clickRepaintRequests = 0;
+    }
+
+    /**
+     * Called when a click on the grid is handled. A click that played a move is measured
+     * until the end of the paint pass repainting it.
+     *
+     * @param played true if the click played a move
+     */
+    public void clickFinished(boolean played) {
+        if (!this.enabled || this.clickTime < 0) {
+            return;
+        }
+        if (played) {
+            this.clickPlayed = true;
+        } else {
+            this.clickTime = -1;
+        }
+    }
+
+    /**
+     * Called when a cell or a region of the grid is asked to repaint.
+     */
+    public void repaintRequested() {
+        if (this.enabled && this.clickTime >= 0) {
+            this.clickRepaintRequests++;
+        }
+    }
+
+    /**
+     * Called when a cell or a region of the grid starts being painted.
+     */
+    public void paintStarted() {
+        if (this.enabled && !this.passScheduled) {
+            this.passScheduled = true;
+            this.nbPaintPasses++;
+            SwingUtilities.invokeLater(this.passEnd);
+        }
+    }
+
+    /**
+     * Ends a paint pass, and the measure of the move it repainted.
+     */
+    private void paintPassFinished() {
+        this.passScheduled = false;
+        if (!this.enabled || this.clickTime < 0 || !this.clickPlayed) {
+            return;
+        }
+        this.lastLatency = System.nanoTime() - this.clickTime;
+        this.lastRepaintRequests = this.clickRepaintRequests;
+        this.latencies[(int) (this.nbMoves % NB_LATENCIES)] = this.lastLatency;
+        this.nbMoves++;
+        this.totalRepaintRequests += this.clickRepaintRequests;
+        this.clickTime = -1;
+    }
+
+    /**
+     * Returns the number of paint passes since the monitor was enabled.
+     *
+     * @return number of paint passes
+     */
+    public long getNbPaintPasses() {
+        return this.nbPaintPasses;
+    }
+
+    /**
+     * Returns the number of moves measured since the monitor was enabled.
+     *
+     * @return number of moves
+     */
+    public long getNbMoves() {
+        return this.nbMoves;
+    }
+
+    /**
+     * Returns the time from the click of the last move to the end of its repaint.
+     *
+     * @return latency in nanoseconds, 0 if no move was measured
+     */
+    public long getLastLatency() {
+        return this.lastLatency;
+    }
+
+    /**
+     * Returns a quantile of the latencies of the last moves, at most NB_LATENCIES of them.
+     *
+     * @param quantile quantile, between 0 and 1
+     * @return latency in nanoseconds, 0 if no move was measured
+     */
+    public long getLatencyQuantile(double quantile) {
+        int count = (int) Math.min(this.nbMoves, NB_LATENCIES);
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(this.latencies, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(quantile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, rank))];
+    }
+
+    /**
+     * Returns the number of repaint requests made by the last move, from its click to the end of its repaint.
+     *
+     * @return number of repaint requests
+     */
+    public int getLastRepaintRequests() {
+        return this.lastRepaintRequests;
+    }
+
+    /**
+     * Returns the mean number of repaint requests per move.
+     *
+     * @return mean number of repaint requests, 0 if no move was measured
+     */
+    public double getMeanRepaintRequests() {
+        return this.nbMoves == 0 ? 0 : (double) this.totalRepaintRequests / this.nbMoves;
+    }
+}
@@ -0,0 +1,133 @@
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * The <code>PerformanceOverlay</code> class is a small panel drawn on top of the grid, showing the measures
+ * of a <code>PerformanceMonitor</code>: the repaint rate, the latency of the last move and the 99th percentile
+ * of the last moves, from the click to the end of the repaint, the repaint requests per move, and the heap usage.
+ * <p>
+ * The panel refreshes itself every REFRESH_TIME. It is opaque, so refreshing it does not repaint
+ * the cells below it, which would count as paint passes of the game.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class PerformanceOverlay extends JComponent {
+
+    /** Time between two refreshes of the measures, in milliseconds */
+    private static final int REFRESH_TIME = 500;
+
+    /** Inner margin of the panel, in pixels */
+    private static final int MARGIN = 6;
+
+    /** Number of lines of text */
+    private static final int NB_LINES = 4;
+
+    /** Bytes in a megabyte */
+    private static final long MEGABYTE = 1024 * 1024;
+
+    /** Background color of the panel */
+    private static final Color BACKGROUND = new Color(30, 30, 30);
+
+    /** Color of the text */
+    private static final Color FOREGROUND = new Color(120, 255, 120);
+
+    /** Monitor whose measures are shown */
+    private final PerformanceMonitor monitor;
+
+    /** Timer refreshing the measures */
+    private final Timer refreshTimer;
+
+    /** Lines of text shown */
+    private final String[] lines;
+
+    /** Number of paint passes at the previous refresh */
+    private long lastNbPaintPasses;
+
+    /** Time of the previous refresh, in nanoseconds */
+    private long lastRefreshTime;
+
+    /**
+     * Constructor of a hidden overlay.
+     *
+     * @param monitor monitor whose measures are shown
+     */
+    public PerformanceOverlay(PerformanceMonitor monitor) {
+        this.monitor = monitor;
+        this.lines = new String[NB_LINES];
+        this.refreshTimer = new Timer(REFRESH_TIME, event -> refresh());
+        this.setOpaque(true);
+        this.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        FontMetrics metrics = getFontMetrics(getFont());
+        this.setSize(metrics.stringWidth("repaint requests/move 00000 (mean 00000.0)") + 2 * MARGIN,
+                NB_LINES * metrics.getHeight() + 2 * MARGIN);
+        this.setVisible(false);
+    }
+
+    /**
+     * Shows the overlay and starts the measures, or hides it and stops them.
+     *
+     * @param shown true to show the overlay
+     */
+    public void setShown(boolean shown) {
+        this.monitor.setEnabled(shown);
+        if (shown) {
+            this.lastNbPaintPasses = 0;
+            this.lastRefreshTime = System.nanoTime();
+            refresh();
+            this.refreshTimer.start();
+        } else {
+            this.refreshTimer.stop();
+        }
+        this.setVisible(shown);
+    }
+
+    /**
+     * Stops refreshing the overlay, when its window is closed.
+     */
+    public void dispose() {
+        this.refreshTimer.stop();
+        this.monitor.setEnabled(false);
+    }
+
+    /**
+     * Reads the measures and repaints the overlay.
+     */
+    private void refresh() {
+        long now = System.nanoTime();
+        long nbPaintPasses = this.monitor.getNbPaintPasses();
+        double elapsed = Math.max(1, now - this.lastRefreshTime) / 1e9;
+        double repaintRate = (nbPaintPasses - this.lastNbPaintPasses) / elapsed;
+        this.lastNbPaintPasses = nbPaintPasses;
+        this.lastRefreshTime = now;
+
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+
+        this.lines[0] = String.format("repaints/s %.1f", repaintRate);
+        this.lines[1] = String.format("move latency %.1f ms (p99 %.1f ms)",
+                this.monitor.getLastLatency() / 1e6, this.monitor.getLatencyQuantile(0.99) / 1e6);
+        this.lines[2] = String.format("repaint requests/move %d (mean %.1f)",
+                this.monitor.getLastRepaintRequests(), this.monitor.getMeanRepaintRequests());
+        this.lines[3] = String.format("heap %d / %d MB", usedHeap / MEGABYTE, runtime.maxMemory() / MEGABYTE);
+        repaint();
+    }
+
+    /**
+     * Draws the measures on a dark background.
+     * @param g the graphics object.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        g.setColor(FOREGROUND);
+        g.setFont(getFont());
+        FontMetrics metrics = g.getFontMetrics();
+        for (int i = 0; i < NB_LINES; i++) {
+            if (this.lines[i] != null) {
+                g.drawString(this.lines[i], MARGIN, MARGIN + i * metrics.getHeight() + metrics.getAscent());
+            }
+        }
+    }
+}
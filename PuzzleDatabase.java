@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The <code>PuzzleDatabase</code> class is a read-only store of puzzles: a board archive, written by a
+ * <code>BoardArchiveWriter</code>, mapped in memory. A puzzle is found by its identifier through the index
+ * of the archive, then decoded straight from the mapped pages, without reading the other puzzles or
+ * copying the file into the heap, so the cost of loading a puzzle does not depend on the size of the archive.
+ * Only the pages of the puzzles read are loaded by the system, and they are shared with the other
+ * processes reading the same file.
+ * <p>
+ * A mapping is limited to 2 GB, so large archives are mapped in chunks of CHUNK_SIZE bytes. Each mapping goes
+ * up to 2 GB past the start of its chunk, so a board starting in a chunk always ends in the same mapping.
+ * <p>
+ * A database can be read by many threads at the same time. The mapping is released when the database is
+ * garbage collected.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class PuzzleDatabase {
+
+    /** Distance between the starts of two mappings, in bytes */
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    /** Mappings of the file, the i-th starting at i * CHUNK_SIZE */
+    private final MappedByteBuffer[] chunks;
+
+    /** Position of the index in the file */
+    private final long indexPosition;
+
+    /** Number of puzzles */
+    private final int nbBoards;
+
+    /**
+     * Constructor of a database, mapping an archive and checking its header and its end.
+     *
+     * @param file board archive
+     * @throws IOException if the file cannot be opened or mapped, or is not an archive
+     */
+    public PuzzleDatabase(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            BoardArchive.checkSize(size, file);
+            this.chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+            for (int i = 0; i < this.chunks.length; i++) {
+                long start = i * CHUNK_SIZE;
+                this.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(size - start, Integer.MAX_VALUE));
+            }
+            // the mappings stay valid once the channel is closed
+
+            BoardArchive.checkHeader(this.chunks[0].duplicate(), file);
+            long trailer = size - BoardArchive.TRAILER_SIZE;
+            this.indexPosition = getLong(trailer);
+            this.nbBoards = chunkOf(trailer + Long.BYTES).getInt(offsetOf(trailer + Long.BYTES));
+            BoardArchive.checkIndex(this.indexPosition, this.nbBoards, size, file);
+        }
+    }
+
+    /**
+     * Returns the number of puzzles of the database.
+     *
+     * @return number of puzzles
+     */
+    public int getNbBoards() {
+        return this.nbBoards;
+    }
+
+    /**
+     * Reads a puzzle.
+     *
+     * @param id identifier of the puzzle, between 0 and getNbBoards() - 1
+     * @return grid of gem types, indexed by [row][column]
+     * @throws IOException if the puzzle is not a valid board
+     * @throws IndexOutOfBoundsException if there is no puzzle with this identifier
+     */
+    public int[][] read(int id) throws IOException {
+        if (id < 0 || id >= this.nbBoards) {
+            throw new IndexOutOfBoundsException("no puzzle " + id + " in a database of " + this.nbBoards);
+        }
+        long entry = this.indexPosition + (long) id * Long.BYTES;
+        long start = getLong(entry);
+        long end = id + 1 < this.nbBoards ? getLong(entry + Long.BYTES) : this.indexPosition;
+        BoardArchive.checkBoard(id, start, end, this.indexPosition);
+        if (offsetOf(start) + (end - start) > chunkOf(start).capacity()) {
+            throw new IOException("corrupted board archive index at board " + id);
+        }
+
+        // a view of the board in the mapping, so the threads do not share a position
+        ByteBuffer board = chunkOf(start).duplicate();
+        board.limit((int) (offsetOf(start) + (end - start)));
+        board.position(offsetOf(start));
+        int[][] map = BoardFile.get(board);
+        if (map == null || board.hasRemaining()) {
+            throw new IOException("invalid puzzle " + id);
+        }
+        return map;
+    }
+
+    /**
+     * Creates the board of a puzzle.
+     *
+     * @param id identifier of the puzzle, between 0 and getNbBoards() - 1
+     * @return new board
+     * @throws IOException if the puzzle is not a valid board
+     * @throws IndexOutOfBoundsException if there is no puzzle with this identifier
+     */
+    public GameBoard getBoard(int id) throws IOException {
+        return new GameBoard(read(id));
+    }
+
+    /**
+     * Reads a number on 8 bytes of the file.
+     *
+     * @param position position of the first byte in the file
+     * @return number
+     */
+    private long getLong(long position) {
+        return chunkOf(position).getLong(offsetOf(position));
+    }
+
+    /**
+     * Returns the mapping holding a position of the file, and the bytes following it.
+     *
+     * @param position position in the file
+     * @return mapping whose chunk holds the position
+     */
+    private MappedByteBuffer chunkOf(long position) {
+        return this.chunks[(int) (position / CHUNK_SIZE)];
+    }
+
+    /**
+     * Returns the offset of a position of the file in the mapping holding it.
+     *
+     * @param position position in the file
+     * @return offset in <code>chunkOf(position)</code>
+     */
+    private int offsetOf(long position) {
+        return (int) (position % CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.Random;
+
+/**
+ * The <code>Replay</code> class is a recorded game: its starting board, given by a seed or by its cells,
+ * the moves played, and the score claimed at the end of the game.
+ * <p>
+ * In a replay file, a game is written as a header followed by its moves:
+ * <ul>
+ * <li>the magic bytes <code>SGRP</code> and the format version</li>
+ * <li>the kind of start: <code>0</code> for the cells of the board, <code>1</code> for a seed</li>
+ * <li>the number of columns and of rows, as varints</li>
+ * <li>the seed on 8 bytes, the highest first, or the cells row by row, packed 4 per byte on 2 bits, the lowest bits first
+ * (0 ruby, 1 emerald, 2 diamond, 3 empty)</li>
+ * <li>the moves, as varints: <code>index + 2</code> for the cell played, <code>1</code> for an undone move,
+ * <code>0</code> for the end of the game</li>
+ * <li>the claimed score, as a varint</li>
+ * </ul>
+ * Varints are unsigned LEB128: 7 bits per byte, the lowest bits first, the high bit set on every byte but the last.
+ * A file may hold many games one after the other.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class Replay {
+
+    /** Magic bytes starting each game */
+    public static final byte[] MAGIC = {'S', 'G', 'R', 'P'};
+
+    /** Version of the format */
+    public static final int VERSION = 1;
+
+    /** Kind of start where the cells of the board are stored */
+    public static final int START_CELLS = 0;
+
+    /** Kind of start where the board is generated from a seed */
+    public static final int START_SEED = 1;
+
+    /** Code of the end of the game in the moves */
+    public static final int CODE_END = 0;
+
+    /** Code of an undone move in the moves */
+    public static final int CODE_UNDO = 1;
+
+    /** Offset added to a cell index to code a move */
+    public static final int MOVE_OFFSET = 2;
+
+    /** Move of the <code>moves</code> array standing for an undone move */
+    public static final int UNDO = -1;
+
+    /** Number of columns of the board */
+    private final int nbCols;
+
+    /** Number of rows of the board */
+    private final int nbRows;
+
+    /** Seed generating the board, used if <code>map</code> is null */
+    private final long seed;
+
+    /** Gem types of the starting board, indexed by [row][column], null if the board comes from a seed */
+    private final int[][] map;
+
+    /** Moves of the game: indexes of the cells played, or UNDO */
+    private final int[] moves;
+
+    /** Score claimed at the end of the game */
+    private final int claimedScore;
+
+    /**
+     * Constructor of a replay.
+     *
+     * @param nbCols       number of columns
+     * @param nbRows       number of rows
+     * @param seed         seed generating the board, used if <code>map</code> is null
+     * @param map          gem types of the starting board, indexed by [row][column], or null
+     * @param moves        indexes of the cells played, or UNDO
+     * @param claimedScore score claimed at the end of the game
+     */
+    public Replay(int nbCols, int nbRows, long seed, int[][] map, int[] moves, int claimedScore) {
+        this.nbCols = nbCols;
+        this.nbRows = nbRows;
+        this.seed = seed;
+        this.map = map;
+        this.moves = moves;
+        this.claimedScore = claimedScore;
+    }
+
+    /**
+     * Returns the number of columns of the board.
+     *
+     * @return number of columns
+     */
+    public int getNbCols() {
+        return this.nbCols;
+    }
+
+    /**
+     * Returns the number of rows of the board.
+     *
+     * @return number of rows
+     */
+    public int getNbRows() {
+        return this.nbRows;
+    }
+
+    /**
+     * Returns the moves of the game. The array must not be modified.
+     *
+     * @return indexes of the cells played, or UNDO
+     */
+    public int[] getMoves() {
+        return this.moves;
+    }
+
+    /**
+     * Returns the score claimed at the end of the game.
+     *
+     * @return claimed score
+     */
+    public int getClaimedScore() {
+        return this.claimedScore;
+    }
+
+    /**
+     * Creates the starting board of the game.
+     *
+     * @return new board, with its groups up to date
+     */
+    public GameBoard createBoard() {
+        GameBoard board;
+        if (this.map == null) {
+            board = new GameBoard(this.nbCols, this.nbRows, new Random(this.seed));
+        } else {
+            board = new GameBoard(this.map);
+        }
+        board.updateGroups();
+        return board;
+    }
+
+    /**
+     * Plays the game again from its starting board, following the rules of the game.
+     *
+     * @return score obtained, or -1 if a move does not remove a group or undoes nothing
+     */
+    public int play() {
+        GameBoard board = createBoard();
+        int nbCells = this.nbCols * this.nbRows;
+        int score = 0;
+
+        // the moves are only recorded if some of them are undone, so most games are played without allocating
+        MoveHistory history = null;
+        for (int i = 0; i < this.moves.length && history == null; i++) {
+            if (this.moves[i] == UNDO) {
+                history = new MoveHistory();
+            }
+        }
+        if (history == null) {
+            for (int i = 0; i < this.moves.length; i++) {
+                if (this.moves[i] < 0 || this.moves[i] >= nbCells) {
+                    return -1;
+                }
+                int nbRemoved = board.play(this.moves[i]);
+                if (nbRemoved < 2) {
+                    return -1;
+                }
+                score += GameBoard.getMoveScore(nbRemoved);
+            }
+            return score;
+        }
+
+        for (int i = 0; i < this.moves.length; i++) {
+            if (this.moves[i] == UNDO) {
+                MoveRecord record = history.undo(board);
+                if (record == null) {
+                    return -1;
+                }
+                score -= record.getScore();
+            } else {
+                if (this.moves[i] < 0 || this.moves[i] >= nbCells) {
+                    return -1;
+                }
+                MoveRecord record = board.playRecorded(this.moves[i]);
+                if (record == null) {
+                    return -1;
+                }
+                history.add(record);
+                score += record.getScore();
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Checks that the claimed score is the score obtained by playing the game again.
+     *
+     * @return true if the game is valid and its score is the claimed one
+     */
+    public boolean verify() {
+        return play() == this.claimedScore;
+    }
+}
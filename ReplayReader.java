@@ -0,0 +1,175 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The <code>ReplayReader</code> class reads the games of a replay file one after the other,
+ * in the format described by <code>Replay</code>.
+ * The file is read by large blocks through a single buffer, so reading a game only costs the decoding of its bytes.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class ReplayReader implements Closeable {
+
+    /** Size of the read buffer, in bytes */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Largest number of cells of a board, so a corrupted header cannot allocate a huge map */
+    private static final int MAX_CELLS = 1 << 24;
+
+    /** Channel reading the file */
+    private final FileChannel channel;
+
+    /** Bytes read from the file and not decoded yet, between the position and the limit */
+    private final ByteBuffer buffer;
+
+    /** Moves of the game being read, reused from one game to the next */
+    private int[] moves;
+
+    /**
+     * Constructor of a reader, opening the file.
+     *
+     * @param file replay file
+     * @throws IOException if the file cannot be opened
+     */
+    public ReplayReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.flip();
+        this.moves = new int[256];
+    }
+
+    /**
+     * Reads the next game of the file.
+     *
+     * @return next game, or null at the end of the file
+     * @throws IOException if the file cannot be read, or holds a truncated or invalid game
+     */
+    public Replay next() throws IOException {
+        if (!this.buffer.hasRemaining() && !fill()) {
+            return null;
+        }
+        for (byte b : Replay.MAGIC) {
+            if (getByte() != (b & 0xFF)) {
+                throw new IOException("not a replay: bad magic bytes");
+            }
+        }
+        int version = getByte();
+        if (version != Replay.VERSION) {
+            throw new IOException("unsupported replay version " + version);
+        }
+        int start = getByte();
+        int nbCols = getVarint();
+        int nbRows = getVarint();
+        if (nbCols <= 0 || nbRows <= 0 || (long) nbCols * nbRows > MAX_CELLS) {
+            throw new IOException("invalid replay board size " + nbCols + "x" + nbRows);
+        }
+
+        long seed = 0;
+        int[][] map = null;
+        if (start == Replay.START_SEED) {
+            for (int i = 0; i < Long.BYTES; i++) {
+                seed = (seed << 8) | getByte();
+            }
+        } else if (start == Replay.START_CELLS) {
+            map = new int[nbRows][nbCols];
+            int packed = 0;
+            int nbPacked = 0;
+            for (int row = 0; row < nbRows; row++) {
+                for (int col = 0; col < nbCols; col++) {
+                    if (nbPacked == 0) {
+                        packed = getByte();
+                        nbPacked = 4;
+                    }
+                    map[row][col] = packed & 3;
+                    packed >>>= 2;
+                    nbPacked--;
+                }
+            }
+            int[] floating = GameBoard.findFloatingCell(map);
+            if (floating != null) {
+                throw new IOException("invalid replay start board: misplaced cell at row " + floating[0]
+                        + ", column " + floating[1]);
+            }
+        } else {
+            throw new IOException("invalid replay start " + start);
+        }
+
+        int nbMoves = 0;
+        int code;
+        while ((code = getVarint()) != Replay.CODE_END) {
+            if (nbMoves == this.moves.length) {
+                this.moves = Arrays.copyOf(this.moves, 2 * nbMoves);
+            }
+            this.moves[nbMoves++] = code == Replay.CODE_UNDO ? Replay.UNDO : code - Replay.MOVE_OFFSET;
+        }
+        int claimedScore = getVarint();
+        return new Replay(nbCols, nbRows, seed, map, Arrays.copyOf(this.moves, nbMoves), claimedScore);
+    }
+
+    /**
+     * Reads the next byte of the file.
+     *
+     * @return byte, between 0 and 255
+     * @throws IOException if the file cannot be read or ends
+     */
+    private int getByte() throws IOException {
+        if (!this.buffer.hasRemaining() && !fill()) {
+            throw new EOFException("truncated replay");
+        }
+        return this.buffer.get() & 0xFF;
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @return value, between 0 and Integer.MAX_VALUE
+     * @throws IOException if the file cannot be read, ends, or the varint does not fit in an int
+     */
+    private int getVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = getByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("invalid replay varint");
+    }
+
+    /**
+     * Reads the next block of the file into the empty buffer.
+     *
+     * @return false at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    private boolean fill() throws IOException {
+        this.buffer.clear();
+        int read;
+        do {
+            read = this.channel.read(this.buffer);
+        } while (read == 0);
+        this.buffer.flip();
+        return read > 0;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>ReplayVerifier</code> class is a headless entry point that plays again the games of replay files
+ * and checks their claimed scores, for example to find the games of cheaters in an archive.
+ * <p>
+ * The games are read by batches, and the games of a batch are played in parallel while the reading goes on
+ * with the next batch. A line is printed for every game whose claimed score is wrong:
+ * <pre>
+ * file	game	claimed	replayed
+ * </pre>
+ * where <code>game</code> is the number of the game in the file, from 0, and <code>replayed</code> is the score
+ * obtained by playing the game again, or INVALID if a move breaks the rules or the game cannot be played.
+ * A summary is printed on the error output at the end, and the exit status is 1 if a game is wrong.
+ * <p>
+ * Usage: <code>java ReplayVerifier [-j jobs] file...</code>
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class ReplayVerifier {
+
+    /** Number of games read before they are played */
+    private static final int BATCH_SIZE = 4096;
+
+    /** Pool playing the games */
+    private final ForkJoinPool pool;
+
+    /** Number of games verified */
+    private long nbGames;
+
+    /** Number of games whose claimed score is wrong */
+    private final AtomicInteger nbMismatches;
+
+    /**
+     * Constructor of a verifier.
+     *
+     * @param jobs number of threads playing the games
+     */
+    public ReplayVerifier(int jobs) {
+        this.pool = new ForkJoinPool(jobs);
+        this.nbGames = 0;
+        this.nbMismatches = new AtomicInteger();
+    }
+
+    /**
+     * Verifies all the games of a replay file, printing the wrong ones.
+     *
+     * @param file replay file
+     * @throws IOException if the file cannot be read or holds an invalid game
+     */
+    public void verify(Path file) throws IOException {
+        Replay[] batch = new Replay[BATCH_SIZE];
+        Replay[] next = new Replay[BATCH_SIZE];
+        long first = 0;
+        try (ReplayReader reader = new ReplayReader(file)) {
+            int size = readBatch(reader, batch);
+            while (size > 0) {
+                Replay[] games = batch;
+                long gameOffset = first;
+                ParallelRange task = new ParallelRange(0, size, i -> verifyGame(file, gameOffset + i, games[i]));
+                this.pool.execute(task);
+                // the next batch is read while this one is played
+                int nextSize;
+                try {
+                    nextSize = readBatch(reader, next);
+                } finally {
+                    task.join();
+                }
+                this.nbGames += size;
+                first += size;
+                batch = next;
+                next = games;
+                size = nextSize;
+            }
+        }
+    }
+
+    /**
+     * Reads a batch of games.
+     *
+     * @param reader reader of the file
+     * @param batch  array receiving the games
+     * @return number of games read, 0 at the end of the file
+     * @throws IOException if the file cannot be read or holds an invalid game
+     */
+    private static int readBatch(ReplayReader reader, Replay[] batch) throws IOException {
+        int size = 0;
+        Replay replay;
+        while (size < batch.length && (replay = reader.next()) != null) {
+            batch[size++] = replay;
+        }
+        return size;
+    }
+
+    /**
+     * Plays a game again and prints it if its claimed score is wrong.
+     *
+     * @param file   file of the game
+     * @param number number of the game in the file
+     * @param replay game
+     */
+    private void verifyGame(Path file, long number, Replay replay) {
+        int score;
+        try {
+            score = replay.play();
+        } catch (RuntimeException e) {
+            // a game the rules cannot play is reported without stopping the other games
+            score = -1;
+        }
+        if (score != replay.getClaimedScore()) {
+            this.nbMismatches.incrementAndGet();
+            String line = file + "\t" + number + "\t" + replay.getClaimedScore() + "\t"
+                    + (score == -1 ? "INVALID" : String.valueOf(score));
+            synchronized (System.out) {
+                System.out.println(line);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of games verified.
+     *
+     * @return number of games
+     */
+    public long getNbGames() {
+        return this.nbGames;
+    }
+
+    /**
+     * Returns the number of games whose claimed score is wrong.
+     *
+     * @return number of wrong games
+     */
+    public int getNbMismatches() {
+        return this.nbMismatches.get();
+    }
+
+    /**
+     * Stops the threads of the verifier.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Prints the usage of the command and exits.
+     */
+    private static void usage() {
+        System.err.println("usage: java ReplayVerifier [-j jobs] file...");
+        System.exit(2);
+    }
+
+    /**
+     * Entry point of the headless verifier.
+     *
+     * @param args options followed by the replay files
+     */
+    public static void main(String[] args) {
+        int jobs = Runtime.getRuntime().availableProcessors();
+
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i += 2) {
+                if (i + 1 >= args.length || !args[i].equals("-j")) {
+                    usage();
+                }
+                jobs = Integer.parseInt(args[i + 1]);
+            }
+        } catch (NumberFormatException e) {
+            usage();
+        }
+        if (i == args.length || jobs < 1) {
+            usage();
+        }
+
+        ReplayVerifier verifier = new ReplayVerifier(jobs);
+        long start = System.nanoTime();
+        System.out.println("file\tgame\tclaimed\treplayed");
+        try {
+            for (; i < args.length; i++) {
+                verifier.verify(Paths.get(args[i]));
+            }
+        } catch (IOException e) {
+            System.err.println(args[i] + ": " + e.getMessage());
+            System.exit(2);
+        }
+        verifier.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d games, %d mismatches, %.0f games/s%n",
+                verifier.getNbGames(), verifier.getNbMismatches(), verifier.getNbGames() / seconds);
+        System.exit(verifier.getNbMismatches() == 0 ? 0 : 1);
+    }
+}
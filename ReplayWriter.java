@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <code>ReplayWriter</code> class records a game in the format of <code>Replay</code> and appends it to a replay file.
+ * <p>
+ * The game is encoded in memory while it is played, a move taking one to three bytes, so recording a move
+ * never touches the disk. When the game is finished, its bytes are appended to the file by a single
+ * background thread, shared by all the writers: the calling thread never waits for the disk,
+ * and the games written to the same file never mix. A game that is never finished is not written,
+ * so the file only holds complete games.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class ReplayWriter {
+
+    /** Initial size of the buffer of a game, in bytes */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** Background thread appending the games to the files */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "replay-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Longest wait for the games being written when the program exits, in seconds */
+    private static final long EXIT_TIMEOUT = 5;
+
+    static {
+        // the thread is a daemon, so the games finished just before the program exits must be waited for
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            WRITER.shutdown();
+            try {
+                WRITER.awaitTermination(EXIT_TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "replay-writer-exit"));
+    }
+
+    /** File receiving the game */
+    private final Path file;
+
+    /** Bytes of the game recorded so far */
+    private ByteBuffer buffer;
+
+    /** true once the game is finished */
+    private boolean finished;
+
+    /**
+     * Constructor of a writer recording a game started from the cells of a board.
+     *
+     * @param file  file receiving the game, created if it does not exist
+     * @param start starting board of the game
+     */
+    public ReplayWriter(Path file, GameBoard start) {
+        this(file, Replay.START_CELLS, start.getNbCols(), start.getNbRows());
+        int nbRows = start.getNbRows();
+        int nbCols = start.getNbCols();
+        int packed = 0;
+        int nbPacked = 0;
+        for (int row = 0; row < nbRows; row++) {
+            for (int col = 0; col < nbCols; col++) {
+                packed |= (start.getGemType(col, row) & 3) << (2 * nbPacked);
+                nbPacked++;
+                if (nbPacked == 4) {
+                    putByte(packed);
+                    packed = 0;
+                    nbPacked = 0;
+                }
+            }
+        }
+        if (nbPacked > 0) {
+            putByte(packed);
+        }
+    }
+
+    /**
+     * Constructor of a writer recording a game started from a board generated by a seed,
+     * with <code>new GameBoard(nbCols, nbRows, new Random(seed))</code>.
+     *
+     * @param file   file receiving the game, created if it does not exist
+     * @param nbCols number of columns
+     * @param nbRows number of rows
+     * @param seed   seed generating the board
+     */
+    public ReplayWriter(Path file, int nbCols, int nbRows, long seed) {
+        this(file, Replay.START_SEED, nbCols, nbRows);
+        ensureCapacity(Long.BYTES);
+        this.buffer.putLong(seed);
+    }
+
+    /**
+     * Constructor writing the header of a game, up to the description of the starting board.
+     *
+     * @param file   file receiving the game
+     * @param start  kind of start, START_CELLS or START_SEED
+     * @param nbCols number of columns
+     * @param nbRows number of rows
+     */
+    private ReplayWriter(Path file, int start, int nbCols, int nbRows) {
+        this.file = file;
+        this.buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+        this.finished = false;
+        for (byte b : Replay.MAGIC) {
+            putByte(b);
+        }
+        putByte(Replay.VERSION);
+        putByte(start);
+        putVarint(nbCols);
+        putVarint(nbRows);
+    }
+
+    /**
+     * Records a move.
+     *
+     * @param move index of the cell played, on the board before the move
+     */
+    public void movePlayed(int move) {
+        checkNotFinished();
+        putVarint(move + Replay.MOVE_OFFSET);
+    }
+
+    /**
+     * Records that the last move was undone.
+     */
+    public void moveUndone() {
+        checkNotFinished();
+        putVarint(Replay.CODE_UNDO);
+    }
+
+    /**
+     * Ends the game and appends it to the file in the background. Nothing can be recorded afterwards.
+     *
+     * @param score score claimed at the end of the game
+     * @return completion of the writing, failing with an <code>UncheckedIOException</code> if the file cannot be written
+     */
+    public Future<?> finish(int score) {
+        checkNotFinished();
+        this.finished = true;
+        putVarint(Replay.CODE_END);
+        putVarint(score);
+        ByteBuffer game = this.buffer.flip();
+        this.buffer = null;
+        return WRITER.submit(() -> {
+            try (FileChannel channel = FileChannel.open(this.file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (game.hasRemaining()) {
+                    channel.write(game);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Throws an <code>IllegalStateException</code> if the game is finished.
+     */
+    private void checkNotFinished() {
+        if (this.finished) {
+            throw new IllegalStateException("replay already finished");
+        }
+    }
+
+    /**
+     * Appends a byte to the game.
+     *
+     * @param value byte, in its 8 lowest bits
+     */
+    private void putByte(int value) {
+        ensureCapacity(1);
+        this.buffer.put((byte) value);
+    }
+
+    /**
+     * Appends an unsigned varint to the game.
+     *
+     * @param value non-negative value
+     */
+    private void putVarint(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            this.buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.buffer.put((byte) value);
+    }
+
+    /**
+     * Doubles the buffer of the game until it has room for a given number of bytes.
+     *
+     * @param size number of bytes to append
+     */
+    private void ensureCapacity(int size) {
+        if (this.buffer.remaining() < size) {
+            int capacity = this.buffer.capacity();
+            while (capacity - this.buffer.position() < size) {
+                capacity *= 2;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(capacity);
+            larger.put(this.buffer.flip());
+            this.buffer = larger;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * The <code>SearchNode</code> class is a node of the tree built by <code>MonteCarloTreeSearch</code>.
+ * A node is the position reached by playing a move from its parent, and holds the statistics of the
+ * games played through it. The tree is shared by the search threads: the statistics are updated
+ * under the lock of the node and read without it, and the children are created once, by the first
+ * thread that needs them.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class SearchNode {
+
+    /** Empty list of children of a position where no group can be removed */
+    private static final SearchNode[] NO_CHILDREN = new SearchNode[0];
+
+    /** Move leading from the parent to this node, as the index of a cell on the board of the parent */
+    private final int move;
+
+    /** Points earned by the move */
+    private final int points;
+
+    /** Parent of the node, null for the root */
+    private SearchNode parent;
+
+    /** Children of the node, null until the node is expanded */
+    private volatile SearchNode[] children;
+
+    /** Number of games played through the node, including the ones still running */
+    private volatile int visits;
+
+    /** Sum of the scores of the finished games played through the node */
+    private volatile double scoreSum;
+
+    /** Sum of the squares of the scores of the finished games played through the node */
+    private volatile double squareSum;
+
+    /** Best score of the games played through the node */
+    private volatile int maxScore;
+
+    /**
+     * Constructor of a node.
+     *
+     * @param parent parent of the node, null for the root
+     * @param move   move leading from the parent to this node, -1 for the root
+     * @param points points earned by the move
+     */
+    public SearchNode(SearchNode parent, int move, int points) {
+        this.parent = parent;
+        this.move = move;
+        this.points = points;
+        this.maxScore = -1;
+    }
+
+    /**
+     * Returns the move leading from the parent to this node.
+     *
+     * @return index of a cell of the removed group, on the board of the parent
+     */
+    public int getMove() {
+        return this.move;
+    }
+
+    /**
+     * Returns the points earned by the move leading to this node.
+     *
+     * @return points of the move
+     */
+    public int getPoints() {
+        return this.points;
+    }
+
+    /**
+     * Returns the parent of the node.
+     *
+     * @return parent, null for the root
+     */
+    public SearchNode getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Detaches the node from its parent, so it becomes the root of its subtree.
+     */
+    public void detach() {
+        this.parent = null;
+    }
+
+    /**
+     * Returns the children of the node.
+     *
+     * @return children, null if the node is not expanded
+     */
+    public SearchNode[] getChildren() {
+        return this.children;
+    }
+
+    /**
+     * Creates the children of the node, one per playable group, if no thread did it yet.
+     *
+     * @param board board of the position of the node, whose groups are up to date
+     * @return children of the node
+     */
+    public SearchNode[] expand(GameBoard board) {
+        SearchNode[] created = this.children;
+        if (created != null) {
+            return created;
+        }
+        synchronized (this) {
+            if (this.children == null) {
+                int nbChildren = board.getNbPlayableGroups();
+                if (nbChildren == 0) {
+                    this.children = NO_CHILDREN;
+                } else {
+                    created = new SearchNode[nbChildren];
+                    int k = 0;
+                    for (int groupID = 0; groupID < board.getNbGroups() && k < nbChildren; groupID++) {
+                        int size = board.getGroupSize(groupID);
+                        if (size >= 2) {
+                            created[k++] = new SearchNode(this, board.getGroupStart(groupID), GameBoard.getMoveScore(size));
+                        }
+                    }
+                    this.children = created;
+                }
+            }
+            return this.children;
+        }
+    }
+
+    /**
+     * Records that a game goes through the node before its score is known. Until the game ends,
+     * it counts as a game of score 0 (a virtual loss), which makes the node less attractive to
+     * the other threads and spreads them over the tree.
+     */
+    public synchronized void addVirtualLoss() {
+        this.visits++;
+    }
+
+    /**
+     * Records the score of a game that went through the node, replacing its virtual loss.
+     *
+     * @param score score of the game
+     */
+    public synchronized void update(int score) {
+        this.scoreSum += score;
+        this.squareSum += (double) score * score;
+        if (score > this.maxScore) {
+            this.maxScore = score;
+        }
+    }
+
+    /**
+     * Returns the number of games played through the node, including the ones still running.
+     *
+     * @return number of visits
+     */
+    public int getVisits() {
+        return this.visits;
+    }
+
+    /**
+     * Returns the sum of the scores of the games played through the node.
+     *
+     * @return sum of the scores
+     */
+    public double getScoreSum() {
+        return this.scoreSum;
+    }
+
+    /**
+     * Returns the sum of the squares of the scores of the games played through the node.
+     *
+     * @return sum of the squared scores
+     */
+    public double getSquareSum() {
+        return this.squareSum;
+    }
+
+    /**
+     * Returns the best score of the games played through the node.
+     *
+     * @return best score, -1 if no game finished
+     */
+    public int getMaxScore() {
+        return this.maxScore;
+    }
+}
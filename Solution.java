@@ -0,0 +1,88 @@
+/**
+ * The <code>Solution</code> class is a sequence of moves found by a solver, with its score.
+ * Each move is the index of a cell of the removed group on the board as it is
+ * when the move is played, so the sequence is replayed with <code>GameBoard.play</code>.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class Solution {
+
+    /** Moves of the sequence, in the order they are played */
+    private final int[] moves;
+
+    /** Score of the sequence */
+    private final int score;
+
+    /**
+     * Constructor of a solution.
+     *
+     * @param moves moves of the sequence, in the order they are played
+     * @param score score of the sequence
+     */
+    public Solution(int[] moves, int score) {
+        this.moves = moves;
+        this.score = score;
+    }
+
+    /**
+     * Returns the moves of the sequence.
+     *
+     * @return indices of a cell of each removed group, in the order they are played
+     */
+    public int[] getMoves() {
+        return this.moves;
+    }
+
+    /**
+     * Returns the number of moves of the sequence.
+     *
+     * @return number of moves
+     */
+    public int getNbMoves() {
+        return this.moves.length;
+    }
+
+    /**
+     * Returns the score of the sequence.
+     *
+     * @return score
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * Replays the sequence on a copy of a board and returns the score obtained,
+     * which is how a solution submitted by a player is graded.
+     *
+     * @param board starting board, left unchanged
+     * @return score of the sequence, or -1 if a move does not remove a group
+     */
+    public int replay(GameBoard board) {
+        GameBoard copy = new GameBoard(board);
+        copy.updateGroups();
+        int total = 0;
+        int nbCells = copy.getNbCols() * copy.getNbRows();
+        for (int i = 0; i < this.moves.length; i++) {
+            if (this.moves[i] < 0 || this.moves[i] >= nbCells) {
+                return -1;
+            }
+            int nbRemoved = copy.play(this.moves[i]);
+            if (nbRemoved < 2) {
+                return -1;
+            }
+            total += GameBoard.getMoveScore(nbRemoved);
+        }
+        return total;
+    }
+
+    /**
+     * Returns a description of the solution, with its score and its number of moves.
+     * @return a string representation of the solution
+     */
+    @Override
+    public String toString() {
+        return "Solution [score=" + this.score + ", moves=" + this.moves.length + "]";
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * The <code>TranspositionTable</code> class stores a result for board positions identified by their
+ * Zobrist hash, so that search threads recognize a position reached through different move orders.
+ * <p>
+ * The table has a fixed size and never allocates once created. It is made of buckets of two entries;
+ * a position can only be stored in the bucket chosen by its hash. When a bucket is full, the new
+ * position replaces the entry with the lowest depth, which is the one whose result is the cheapest
+ * to compute again. Buckets are protected by a fixed set of locks, each shared by many buckets,
+ * so threads working on different positions rarely wait for each other.
+ *
+ * @version 1.1
+ * @author Loic Sainton and Mathis Pauron
+ */
+public class TranspositionTable {
+
+    /** Value returned by <code>get</code> when a position is not stored */
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    /** Number of entries in a bucket */
+    private static final int BUCKET_SIZE = 2;
+
+    /** Number of locks protecting the buckets */
+    private static final int NB_STRIPES = 256;
+
+    /** Hash of the position of each entry */
+    private final long[] keys;
+
+    /** Value of each entry */
+    private final int[] values;
+
+    /** Depth of each entry plus one, 0 for an empty entry */
+    private final int[] depths;
+
+    /** Mask giving the bucket of a hash */
+    private final int bucketMask;
+
+    /** Locks of the buckets, the bucket b being protected by the lock b % NB_STRIPES */
+    private final Object[] stripes;
+
+    /**
+     * Constructor of a table.
+     *
+     * @param capacity minimum number of entries, rounded up to a power of two
+     */
+    public TranspositionTable(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("invalid table capacity " + capacity);
+        }
+        int nbBuckets = 1;
+        while (nbBuckets * BUCKET_SIZE < capacity) {
+            nbBuckets *= 2;
+        }
+        this.keys = new long[nbBuckets * BUCKET_SIZE];
+        this.values = new int[nbBuckets * BUCKET_SIZE];
+        this.depths = new int[nbBuckets * BUCKET_SIZE];
+        this.bucketMask = nbBuckets - 1;
+        this.stripes = new Object[NB_STRIPES];
+        for (int i = 0; i < NB_STRIPES; i++) {
+            this.stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the number of entries of the table.
+     *
+     * @return capacity of the table
+     */
+    public int getCapacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Returns the first entry of the bucket of a hash.
+     * The low bits of the hash choose the bucket, so the high bits are mixed into them first.
+     *
+     * @param key hash of the position
+     * @return index of the first entry of the bucket
+     */
+    private int getBucket(long key) {
+        return (int) ((key ^ (key >>> 32)) & this.bucketMask) * BUCKET_SIZE;
+    }
+
+    /**
+     * Returns the lock of the bucket starting at an entry.
+     *
+     * @param bucket index of the first entry of the bucket
+     * @return lock of the bucket
+     */
+    private Object getStripe(int bucket) {
+        return this.stripes[(bucket / BUCKET_SIZE) % NB_STRIPES];
+    }
+
+    /**
+     * Returns the index of the entry of a position in its bucket.
+     *
+     * @param bucket index of the first entry of the bucket
+     * @param key    hash of the position
+     * @return index of the entry, -1 if the position is not stored
+     */
+    private int find(int bucket, long key) {
+        for (int i = bucket; i < bucket + BUCKET_SIZE; i++) {
+            if (this.depths[i] != 0 && this.keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the entry of a bucket that receives a new position: an empty entry,
+     * or else the entry with the lowest depth.
+     *
+     * @param bucket index of the first entry of the bucket
+     * @return index of the entry to replace
+     */
+    private int findReplaced(int bucket) {
+        int replaced = bucket;
+        for (int i = bucket; i < bucket + BUCKET_SIZE; i++) {
+            if (this.depths[i] < this.depths[replaced]) {
+                replaced = i;
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * Returns the value stored for a position.
+     *
+     * @param key hash of the position
+     * @return value stored, or MISSING if the position is not in the table
+     */
+    public int get(long key) {
+        int bucket = getBucket(key);
+        synchronized (getStripe(bucket)) {
+            int entry = find(bucket, key);
+            if (entry == -1) {
+                return MISSING;
+            }
+            return this.values[entry];
+        }
+    }
+
+    /**
+     * Stores the value of a position, replacing the value already stored for it.
+     *
+     * @param key   hash of the position
+     * @param value value to store
+     * @param depth importance of the entry, at least 0: when a bucket is full, the entry of lowest depth is replaced
+     */
+    public void put(long key, int value, int depth) {
+        int bucket = getBucket(key);
+        synchronized (getStripe(bucket)) {
+            int entry = find(bucket, key);
+            if (entry == -1) {
+                entry = findReplaced(bucket);
+            }
+            this.keys[entry] = key;
+            this.values[entry] = value;
+            this.depths[entry] = depth + 1;
+        }
+    }
+
+    /**
+     * Stores the value of a position only if no value greater than or equal to it is stored,
+     * as a single operation: of several threads storing the same position, only the ones
+     * that improve on the stored value succeed.
+     *
+     * @param key   hash of the position
+     * @param value value to store
+     * @param depth importance of the entry, at least 0: when a bucket is full, the entry of lowest depth is replaced
+     * @return true if the value was stored, false if the table already holds a value at least as large
+     */
+    public boolean putIfGreater(long key, int value, int depth) {
+        int bucket = getBucket(key);
+        synchronized (getStripe(bucket)) {
+            int entry = find(bucket, key);
+            if (entry != -1 && this.values[entry] >= value) {
+                return false;
+            }
+            if (entry == -1) {
+                entry = findReplaced(bucket);
+            }
+            this.keys[entry] = key;
+            this.values[entry] = value;
+            this.depths[entry] = depth + 1;
+            return true;
+        }
+    }
+
+    /**
+     * Removes every entry of the table.
+     */
+    public void clear() {
+        for (int i = 0; i < NB_STRIPES; i++) {
+            synchronized (this.stripes[i]) {
+                for (int bucket = i * BUCKET_SIZE; bucket < this.depths.length; bucket += NB_STRIPES * BUCKET_SIZE) {
+                    for (int entry = bucket; entry < bucket + BUCKET_SIZE; entry++) {
+                        this.depths[entry] = 0;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -7,12 +7,15 @@
 public class main {
     /**
      * Entry point of the application.
-     * Creates and displays the game menu.
+     * Creates and displays the game menu, after starting the metrics server
+     * if the system property <code>samegame.metrics</code> gives its port.
      * 
      * @param args command line arguments (not used)
      */
     public static void main(String[] args) {
 
+        MetricsServer.startFromProperty();
+
         Menu gameMenu = new Menu();
         gameMenu.setVisible(true);
         